@@ -0,0 +1,46 @@
+package edu.texas.social_computing.hospitals;
+
+import java.io.FileNotFoundException;
+
+/**
+ * Instances for the benchmarks, by name: {@code test_hos..._coup...} loads the CSV pair of that name from
+ * resources/, {@code generated_<residents>} generates a seeded instance with that many residents.
+ */
+final class BenchmarkInstances {
+
+    static final String RESOURCES = "resources/";
+
+    private BenchmarkInstances() {
+    }
+
+    static Instance load(String name) throws FileNotFoundException {
+        if (name.startsWith("generated_")) {
+            return generator(name).generate();
+        }
+        return FileImporter.importInstance(hospitalsFile(name), residentsFile(name));
+    }
+
+    static String hospitalsFile(String name) {
+        return RESOURCES + name + "_hospitals.csv";
+    }
+
+    static String residentsFile(String name) {
+        return RESOURCES + name + "_residents.csv";
+    }
+
+    // shaped like the bundled instances: 10 residents per hospital, a fifth of them in couples, lists of 10
+    static InstanceGenerator generator(String name) {
+        int numResidents = Integer.parseInt(name.substring("generated_".length()));
+        int numHospitals = Math.max(1, numResidents / 10);
+        return new InstanceGenerator(GeneratorConfig.builder()
+                .setSeed(numResidents)
+                .setNumHospitals(numHospitals)
+                .setNumLocations(Math.max(1, numHospitals / 5))
+                .setNumResidents(numResidents)
+                .setNumCouples(numResidents / 10)
+                .setListLength(Math.min(10, numHospitals))
+                .setMinCapacity(5)
+                .setMaxCapacity(15)
+                .build());
+    }
+}
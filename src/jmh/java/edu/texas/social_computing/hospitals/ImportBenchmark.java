@@ -0,0 +1,87 @@
+package edu.texas.social_computing.hospitals;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+/**
+ * Throughput of loading an instance, from CSV and from a snapshot. Generated instances are written to temporary
+ * files first. Run with {@code gradle jmh}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ImportBenchmark {
+
+    @Param({
+            "test_hos5_loc2_res16_coup3",
+            "test_hos300_loc50_res500_coup100",
+            "generated_10000",
+            "generated_100000"
+    })
+    public String instanceName;
+
+    private String hospitalsFile;
+    private String residentsFile;
+    private Path snapshot;
+    private Path directory;
+
+    @Setup
+    public void write() throws IOException {
+        directory = Files.createTempDirectory("import-benchmark");
+        if (instanceName.startsWith("generated_")) {
+            hospitalsFile = directory.resolve("hospitals.csv").toString();
+            residentsFile = directory.resolve("residents.csv").toString();
+            BenchmarkInstances.generator(instanceName).writeCsv(Paths.get(hospitalsFile), Paths.get(residentsFile));
+        } else {
+            hospitalsFile = BenchmarkInstances.hospitalsFile(instanceName);
+            residentsFile = BenchmarkInstances.residentsFile(instanceName);
+        }
+        snapshot = directory.resolve("instance.snapshot");
+        InstanceSnapshot.write(FileImporter.importInstance(hospitalsFile, residentsFile), snapshot);
+    }
+
+    @TearDown
+    public void delete() throws IOException {
+        for (Path path : Files.list(directory).toArray(Path[]::new)) {
+            Files.delete(path);
+        }
+        Files.delete(directory);
+    }
+
+    @Benchmark
+    public List<Hospital> importHospitals() throws IOException {
+        return FileImporter.importHospitals(hospitalsFile);
+    }
+
+    @Benchmark
+    public List<Resident> importResidents() throws IOException {
+        return FileImporter.importResidents(residentsFile);
+    }
+
+    @Benchmark
+    public Instance importInstance() throws IOException {
+        return FileImporter.importInstance(hospitalsFile, residentsFile);
+    }
+
+    @Benchmark
+    public Instance loadSnapshot() throws IOException {
+        return InstanceSnapshot.load(snapshot);
+    }
+}
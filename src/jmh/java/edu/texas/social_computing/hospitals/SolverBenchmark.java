@@ -0,0 +1,72 @@
+package edu.texas.social_computing.hospitals;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.FileNotFoundException;
+
+/**
+ * Throughput of the solvers and the stability validator. Run with {@code gradle jmh}; larger generated instances
+ * can be passed with {@code -p instanceName=generated_100000}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class SolverBenchmark {
+
+    @Param({
+            "test_hos5_loc2_res16_coup3",
+            "test_hos50_loc50_res100_coup50",
+            "test_hos50_loc50_res150_coup20",
+            "test_hos100_loc10_res200_coup50",
+            "test_hos300_loc50_res500_coup100",
+            "generated_1000",
+            "generated_10000"
+    })
+    public String instanceName;
+
+    private Instance instance;
+    private Matching matching;
+
+    @Setup(Level.Trial)
+    public void load() throws FileNotFoundException {
+        instance = BenchmarkInstances.load(instanceName);
+        matching = HRP.run(new Matching(instance), ResidentQueue.allOf(instance));
+    }
+
+    @Benchmark
+    public Matching hrp() {
+        return HRP.run(new Matching(instance), ResidentQueue.allOf(instance));
+    }
+
+    @Benchmark
+    public Matching hrpParallel() {
+        return ParallelHRP.run(instance);
+    }
+
+    @Benchmark
+    public Matching hrpp() {
+        return HRPP.run(instance);
+    }
+
+    @Benchmark
+    public Matching rhrp() {
+        return RHRP.run(new Matching(instance), ResidentQueue.allOf(instance));
+    }
+
+    @Benchmark
+    public StabilityReport validateStability() {
+        return StabilityValidator.validate(matching);
+    }
+}
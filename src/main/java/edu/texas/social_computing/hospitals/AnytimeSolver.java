@@ -0,0 +1,167 @@
+package edu.texas.social_computing.hospitals;
+
+import com.google.auto.value.AutoValue;
+
+import java.time.Duration;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Solves an instance within a time limit. A solve that finishes in time returns its matching as usual. While it
+ * runs, the solver keeps a copy of the best matching it has seen: the fewest defects, then the best by
+ * {@link MatchingScore#isBetterThan}. Once the time limit is up the solve stops at the next point it asks
+ * {@link SolverListener#shouldStop}, and the best copy, or the state the solve stopped in if that is better, is
+ * returned flagged incomplete.
+ * <p>
+ * A matching's defects are its proximity violations plus its residents and couples in blocking pairs.
+ * {@link StabilityValidator} only looks for blocking pairs of assigned residents, and the empty matching RHRP
+ * starts from has no proximity violations either, so here an unmatched single with a hospital on its list that
+ * would take it counts as a defect too, see {@link Result#getPlaceableUnmatchedCount()}. Ranking by proximity
+ * violations first would prefer that empty matching to any real one.
+ * <p>
+ * Copies are taken at those points, where no hospital is over-subscribed. Copying and scoring a matching costs
+ * time linear in the instance, so the solver spends at most a tenth of the solve on it: after a copy that took t,
+ * the next is taken no earlier than 9t later. HRP runs are asked every {@value HRP#PROPOSALS_PER_STOP_CHECK}
+ * proposals, so the solve overruns the time limit by at most that many proposals, or by one proximity repair
+ * iteration when its HRP runs are shorter than that, plus one last copy and score of the matching it stopped with.
+ */
+public final class AnytimeSolver {
+
+    // solve time per unit of time spent copying and scoring
+    private static final long SOLVE_TIME_PER_COPY_TIME = 9;
+    // longer limits are as good as none, and would overflow System.nanoTime() arithmetic
+    private static final Duration MAX_TIME_LIMIT = Duration.ofNanos(Long.MAX_VALUE / 2);
+
+    /**
+     * The matching of a finished {@link AnytimeSolver} solve, or the best one an incomplete solve found.
+     */
+    @AutoValue
+    public abstract static class Result {
+
+        /**
+         * @return the matching the solve finished with or, if it is incomplete, a copy of the best matching seen
+         * with the assignments of the solve at that point, full preference views and no rank progress. Either
+         * way the solve no longer touches it.
+         */
+        public abstract Matching getMatching();
+
+        public abstract MatchingScore getScore();
+
+        /**
+         * @return the unmatched singles with a hospital on their list that ranks them and has a free seat, or would
+         * drop its worst resident for them. A partner cannot move alone; a couple with one partner unmatched counts
+         * as a proximity violation.
+         */
+        public abstract int getPlaceableUnmatchedCount();
+
+        public abstract Termination getTermination();
+
+        /**
+         * @return true if the time limit stopped the solve before it finished
+         */
+        public abstract boolean isIncomplete();
+
+        public abstract Duration getElapsed();
+    }
+
+    private AnytimeSolver() {
+    }
+
+    public static Result run(Instance instance, PortfolioSolver.Solver solver, Duration timeLimit) {
+        checkArgument(!timeLimit.isNegative(), "negative time limit %s", timeLimit);
+        long start = System.nanoTime();
+        Duration limit = timeLimit.compareTo(MAX_TIME_LIMIT) > 0 ? MAX_TIME_LIMIT : timeLimit;
+        BestSoFar best = new BestSoFar(start + limit.toNanos());
+        Matching matching;
+        if (solver == PortfolioSolver.Solver.HRPP) {
+            matching = HRPP.run(instance, best);
+        } else {
+            ResidentQueue queue = ResidentQueue.fifo(instance.numResidents());
+            for (int r = 0; r < instance.numResidents(); r++) {
+                queue.add(r);
+            }
+            Matching fresh = new Matching(instance);
+            fresh.setListener(best);
+            matching = RHRP.run(fresh, queue);
+        }
+        matching.setListener(SolverListener.NONE);
+        Termination termination = matching.getTermination();
+        if (termination != Termination.STOPPED) {
+            return new AutoValue_AnytimeSolver_Result(matching, MatchingScore.of(matching),
+                    countPlaceableUnmatched(matching), termination, false,
+                    Duration.ofNanos(System.nanoTime() - start));
+        }
+        best.consider(matching);
+        best.matching.setTermination(termination);
+        return new AutoValue_AnytimeSolver_Result(best.matching, best.score, best.placeableUnmatched, termination,
+                true, Duration.ofNanos(System.nanoTime() - start));
+    }
+
+    private static int countPlaceableUnmatched(Matching matching) {
+        Instance instance = matching.getInstance();
+        PreferenceLists preferences = instance.residentPreferences();
+        int count = 0;
+        for (int r = 0; r < instance.numResidents(); r++) {
+            if (matching.hasAssignment(r) || instance.hasPartner(r)) {
+                continue;
+            }
+            for (int i = 0; i < preferences.length(r); i++) {
+                int h = preferences.get(r, i);
+                if (instance.isRanked(h, r)
+                        && (!matching.isFull(h) || matching.isRankedHigherThanWorstMatch(h, r))) {
+                    count++;
+                    break;
+                }
+            }
+        }
+        return count;
+    }
+
+    private static final class BestSoFar implements SolverListener {
+        private final long deadline;
+        private long nextCopy;
+        Matching matching;
+        MatchingScore score;
+        int placeableUnmatched;
+
+        BestSoFar(long deadline) {
+            this.deadline = deadline;
+            this.nextCopy = System.nanoTime();
+        }
+
+        @Override
+        public boolean shouldStop(Matching current) {
+            long now = System.nanoTime();
+            if (now - deadline >= 0) {
+                return true;
+            }
+            if (now - nextCopy >= 0) {
+                consider(current);
+                long end = System.nanoTime();
+                nextCopy = end + (end - now) * SOLVE_TIME_PER_COPY_TIME;
+            }
+            return false;
+        }
+
+        // keeps a copy of current if it scores at least as well as the best so far, the later one winning ties
+        void consider(Matching current) {
+            Matching copy = Matching.copyOfAssignments(current);
+            MatchingScore copyScore = MatchingScore.of(copy);
+            int copyPlaceable = countPlaceableUnmatched(copy);
+            if (score == null || !isBetter(score, placeableUnmatched, copyScore, copyPlaceable)) {
+                matching = copy;
+                score = copyScore;
+                placeableUnmatched = copyPlaceable;
+            }
+        }
+
+        private static boolean isBetter(MatchingScore score, int placeable, MatchingScore other, int otherPlaceable) {
+            long defects = (long) score.getProximityViolationCount() + score.getUnstableCount() + placeable;
+            long otherDefects = (long) other.getProximityViolationCount() + other.getUnstableCount() + otherPlaceable;
+            if (defects != otherDefects) {
+                return defects < otherDefects;
+            }
+            return score.isBetterThan(other);
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package edu.texas.social_computing.hospitals;
+
+import java.util.Arrays;
+
+/**
+ * The residents assigned to each hospital, kept as one indexed binary heap per hospital with the resident the
+ * hospital likes least on top. Gives the size and the worst resident in O(1), insertion and removal in
+ * O(log capacity), and the k-th worst in O(k^2) which is O(1) for the small k the solvers ask for.
+ * <p>
+ * A resident is worse than another if the hospital ranks it lower. All unranked residents tie, and the lower
+ * index loses the tie so the order is total.
+ */
+final class AssignmentHeaps {
+
+    private final int[][] heaps;
+    private final int[] sizes;
+    // per resident: the rank its current hospital gives it, and its position in that hospital's heap
+    private final int[] ranks;
+    private final int[] positions;
+
+    AssignmentHeaps(Instance instance) {
+        heaps = new int[instance.numHospitals()][];
+        sizes = new int[instance.numHospitals()];
+        for (int h = 0; h < heaps.length; h++) {
+            // room for the over-subscription the solvers allow before they evict
+            heaps[h] = new int[instance.capacityOf(h) + 2];
+        }
+        ranks = new int[instance.numResidents()];
+        positions = new int[instance.numResidents()];
+    }
+
+    int size(int h) {
+        return sizes[h];
+    }
+
+    /**
+     * @param rank the rank h gives r
+     */
+    void add(int h, int r, int rank) {
+        if (sizes[h] == heaps[h].length) {
+            heaps[h] = Arrays.copyOf(heaps[h], sizes[h] * 2);
+        }
+        ranks[r] = rank;
+        heaps[h][sizes[h]] = r;
+        positions[r] = sizes[h];
+        sizes[h]++;
+        siftUp(h, positions[r]);
+    }
+
+    void remove(int h, int r) {
+        int[] heap = heaps[h];
+        int position = positions[r];
+        int last = heap[--sizes[h]];
+        if (last == r) {
+            return;
+        }
+        heap[position] = last;
+        positions[last] = position;
+        siftDown(h, position);
+        siftUp(h, positions[last]);
+    }
+
+    /**
+     * @return the resident h likes least, or {@link Instance#NONE} if h has no residents
+     */
+    int worst(int h) {
+        return sizes[h] == 0 ? Instance.NONE : heaps[h][0];
+    }
+
+    /**
+     * @return the k-th worst (1 is the worst) resident of h, or {@link Instance#NONE} if h has fewer than k
+     */
+    int kthWorst(int h, int k) {
+        if (k > sizes[h] || k < 1) {
+            return Instance.NONE;
+        }
+        int[] heap = heaps[h];
+        // best first walk down from the root: the k-th heap position taken out of the frontier is the k-th worst
+        int[] frontier = new int[k + 1];
+        int frontierSize = 1;
+        frontier[0] = 0;
+        while (true) {
+            int best = 0;
+            for (int i = 1; i < frontierSize; i++) {
+                if (isWorse(heap[frontier[i]], heap[frontier[best]])) {
+                    best = i;
+                }
+            }
+            int position = frontier[best];
+            if (--k == 0) {
+                return heap[position];
+            }
+            frontier[best] = frontier[--frontierSize];
+            for (int child = 2 * position + 1; child <= 2 * position + 2 && child < sizes[h]; child++) {
+                frontier[frontierSize++] = child;
+            }
+        }
+    }
+
+    int[] residents(int h) {
+        return Arrays.copyOf(heaps[h], sizes[h]);
+    }
+
+    /**
+     * @return the rank the current hospital of r gives r. Only meaningful while r is assigned.
+     */
+    int rankOf(int r) {
+        return ranks[r];
+    }
+
+    boolean isWorse(int a, int b) {
+        return isWorse(ranks[a], a, ranks[b], b);
+    }
+
+    static boolean isWorse(int rankA, int a, int rankB, int b) {
+        return rankA > rankB || (rankA == rankB && a < b);
+    }
+
+    private void siftUp(int h, int position) {
+        int[] heap = heaps[h];
+        int r = heap[position];
+        while (position > 0) {
+            int parent = (position - 1) / 2;
+            if (!isWorse(r, heap[parent])) {
+                break;
+            }
+            heap[position] = heap[parent];
+            positions[heap[position]] = position;
+            position = parent;
+        }
+        heap[position] = r;
+        positions[r] = position;
+    }
+
+    private void siftDown(int h, int position) {
+        int[] heap = heaps[h];
+        int size = sizes[h];
+        int r = heap[position];
+        while (true) {
+            int child = 2 * position + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && isWorse(heap[child + 1], heap[child])) {
+                child++;
+            }
+            if (!isWorse(heap[child], r)) {
+                break;
+            }
+            heap[position] = heap[child];
+            positions[heap[position]] = position;
+            position = child;
+        }
+        heap[position] = r;
+        positions[r] = position;
+    }
+}
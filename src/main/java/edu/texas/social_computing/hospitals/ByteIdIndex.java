@@ -0,0 +1,95 @@
+package edu.texas.social_computing.hospitals;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Maps ids to their dense index like {@link IdInterner}, but is queried with a slice of a byte buffer, so the
+ * importers can resolve id references straight from the mapped file without decoding them into Strings first.
+ * Read-only once built, so it can be shared by parallel parsers.
+ */
+final class ByteIdIndex {
+
+    static final int NOT_FOUND = IdInterner.NOT_FOUND;
+
+    private final byte[][] ids;
+    // open addressing, slots hold an index into ids or NOT_FOUND
+    private final int[] slots;
+    private final int mask;
+
+    private ByteIdIndex(byte[][] ids) {
+        this.ids = ids;
+        int capacity = Integer.highestOneBit(Math.max(2, ids.length) * 2 - 1) * 2;
+        this.slots = new int[capacity];
+        this.mask = capacity - 1;
+        Arrays.fill(slots, NOT_FOUND);
+    }
+
+    /**
+     * @return the index of ids, where id i gets index i
+     * @throws IllegalArgumentException if an id occurs twice
+     */
+    static ByteIdIndex of(List<String> ids, String kind) {
+        byte[][] bytes = new byte[ids.size()][];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = ids.get(i).getBytes(StandardCharsets.UTF_8);
+        }
+        ByteIdIndex index = new ByteIdIndex(bytes);
+        for (int i = 0; i < bytes.length; i++) {
+            int slot = hash(bytes[i], 0, bytes[i].length) & index.mask;
+            while (index.slots[slot] != NOT_FOUND) {
+                if (Arrays.equals(bytes[index.slots[slot]], bytes[i])) {
+                    throw new IllegalArgumentException("duplicate " + kind + " id " + ids.get(i));
+                }
+                slot = (slot + 1) & index.mask;
+            }
+            index.slots[slot] = i;
+        }
+        return index;
+    }
+
+    /**
+     * @return the index of the id held in buffer[offset, offset + length), or {@link #NOT_FOUND}
+     */
+    int indexOf(ByteBuffer buffer, int offset, int length) {
+        int slot = hash(buffer, offset, length) & mask;
+        while (slots[slot] != NOT_FOUND) {
+            if (matches(ids[slots[slot]], buffer, offset, length)) {
+                return slots[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return NOT_FOUND;
+    }
+
+    private static boolean matches(byte[] id, ByteBuffer buffer, int offset, int length) {
+        if (id.length != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (id[i] != buffer.get(offset + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // FNV-1a, the same over a byte[] and the equivalent buffer slice
+    private static int hash(byte[] bytes, int offset, int length) {
+        int h = 0x811c9dc5;
+        for (int i = offset; i < offset + length; i++) {
+            h = (h ^ bytes[i]) * 0x01000193;
+        }
+        return h ^ (h >>> 16);
+    }
+
+    private static int hash(ByteBuffer buffer, int offset, int length) {
+        int h = 0x811c9dc5;
+        for (int i = offset; i < offset + length; i++) {
+            h = (h ^ buffer.get(i)) * 0x01000193;
+        }
+        return h ^ (h >>> 16);
+    }
+}
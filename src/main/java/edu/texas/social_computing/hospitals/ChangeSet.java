@@ -0,0 +1,75 @@
+package edu.texas.social_computing.hospitals;
+
+import com.google.auto.value.AutoValue;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Sets;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Late changes to an instance that was already solved, by id. Apply them with {@link Rematcher}.
+ */
+@AutoValue
+public abstract class ChangeSet {
+
+    /**
+     * Residents that leave the match. The partner of a withdrawn resident stays in as a single.
+     */
+    public abstract ImmutableSet<String> getWithdrawals();
+
+    /**
+     * Hospital id to its new capacity.
+     */
+    public abstract ImmutableMap<String, Integer> getCapacities();
+
+    /**
+     * Resident id to its new preference list, hospital ids best first.
+     */
+    public abstract ImmutableMap<String, ImmutableList<String>> getPreferenceEdits();
+
+    public static Builder builder() {
+        return new AutoValue_ChangeSet.Builder();
+    }
+
+    public boolean isEmpty() {
+        return getWithdrawals().isEmpty() && getCapacities().isEmpty() && getPreferenceEdits().isEmpty();
+    }
+
+    @AutoValue.Builder
+    public abstract static class Builder {
+        abstract ImmutableSet.Builder<String> withdrawalsBuilder();
+
+        abstract ImmutableMap.Builder<String, Integer> capacitiesBuilder();
+
+        abstract ImmutableMap.Builder<String, ImmutableList<String>> preferenceEditsBuilder();
+
+        public Builder withdraw(String residentId) {
+            withdrawalsBuilder().add(residentId);
+            return this;
+        }
+
+        public Builder setCapacity(String hospitalId, int capacity) {
+            capacitiesBuilder().put(hospitalId, capacity);
+            return this;
+        }
+
+        public Builder editPreferences(String residentId, Iterable<String> preferences) {
+            preferenceEditsBuilder().put(residentId, ImmutableList.copyOf(preferences));
+            return this;
+        }
+
+        abstract ChangeSet autoBuild();
+
+        public ChangeSet build() {
+            ChangeSet changes = autoBuild();
+            Sets.SetView<String> editedAndWithdrawn =
+                    Sets.intersection(changes.getWithdrawals(), changes.getPreferenceEdits().keySet());
+            checkArgument(editedAndWithdrawn.isEmpty(), "residents both withdrawn and edited: %s", editedAndWithdrawn);
+            changes.getCapacities().forEach((id, capacity) ->
+                    checkArgument(capacity >= 0, "negative capacity %s for hospital %s", capacity, id));
+            return changes;
+        }
+    }
+}
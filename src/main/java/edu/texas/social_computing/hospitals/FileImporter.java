@@ -1,65 +1,446 @@
 package edu.texas.social_computing.hospitals;
 
-import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
-import java.util.Scanner;
+import java.util.function.BiFunction;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
+/**
+ * Reads the hospital and resident CSVs.
+ * <p>
+ * Hospitals: {@code id,locationId,capacity,residentId residentId ...}
+ * <br>
+ * Residents: {@code id,hospitalId hospitalId ...,partnerId|none}
+ * <p>
+ * Files are memory-mapped and split into line-aligned chunks that are tokenized in parallel, straight from the
+ * mapped bytes. {@link #importInstance(String, String)} resolves every reference to a table index during the load
+ * and rejects dangling ones with the file and line they occur on.
+ */
 class FileImporter {
-    private static Scanner getScanner(String path) throws FileNotFoundException {
-        File file = new File(path);
-        Scanner sc;
-            sc = new Scanner(file);
-        return sc;
-    }
 
-    static List<Hospital> importHospitals(String path) throws FileNotFoundException {
-        Scanner sc = getScanner(path);
+    private static final String NO_PARTNER = "none";
+    // a chunk is not worth its own task below this size, and a mapping cannot exceed 2GB
+    private static final long MIN_CHUNK_BYTES = 1 << 20;
+    private static final long MAX_CHUNK_BYTES = 1 << 30;
 
+    static List<Hospital> importHospitals(String path) throws FileNotFoundException {
         List<Hospital> hospitals = new ArrayList<>();
+        for (HospitalRows rows : parse(path, HospitalRows::new)) {
+            for (int i = 0; i < rows.size(); i++) {
+                hospitals.add(Hospital.create(
+                        rows.ids.get(i), rows.locations[i], rows.capacities[i], rows.decodePreferences(i)));
+            }
+        }
+        return hospitals;
+    }
 
-        while (sc.hasNextLine()) {
-            String line = sc.nextLine();
-            String[] parts = line.split(",");
-            String id = parts[0];
-            Integer locationid = Integer.valueOf(parts[1]);
-            Integer capacity = Integer.valueOf(parts[2]);
-            String concatPrefs = parts[3];
-            List<String> preferences = Arrays.asList(concatPrefs.split(" "));
+    static List<Resident> importResidents(String path) throws FileNotFoundException {
+        List<Resident> residents = new ArrayList<>();
+        for (ResidentRows rows : parse(path, ResidentRows::new)) {
+            for (int i = 0; i < rows.size(); i++) {
+                residents.add(rows.hasPartner(i)
+                        ? Resident.create(rows.ids.get(i), rows.decodePartner(i), rows.decodePreferences(i))
+                        : Resident.create(rows.ids.get(i), rows.decodePreferences(i)));
+            }
+        }
+        return residents;
+    }
 
-            Hospital hospital = Hospital.create(id, locationid, capacity, preferences);
-            hospitals.add(hospital);
+    /**
+     * Loads both files into an {@link Instance}. Preference lists are resolved from the mapped bytes straight to
+     * int indices, and the tables share one String per id.
+     *
+     * @throws IllegalArgumentException on a malformed line, a duplicate id, or a reference to a hospital,
+     *                                  resident or partner that is not defined
+     */
+    static Instance importInstance(String hospitalsPath, String residentsPath) throws FileNotFoundException {
+        List<HospitalRows> hospitalChunks = parse(hospitalsPath, HospitalRows::new);
+        List<ResidentRows> residentChunks = parse(residentsPath, ResidentRows::new);
+
+        List<String> hospitalIds = concatIds(hospitalChunks);
+        List<String> residentIds = concatIds(residentChunks);
+        ByteIdIndex hospitalIndex = ByteIdIndex.of(hospitalIds, "hospital");
+        ByteIdIndex residentIndex = ByteIdIndex.of(residentIds, "resident");
+
+        PreferenceLists hospitalPreferences = resolvePreferences(hospitalChunks, residentIndex, "resident");
+        PreferenceLists residentPreferences = resolvePreferences(residentChunks, hospitalIndex, "hospital");
+        int[] partners = resolvePartners(residentChunks, residentIndex);
+
+        int[] locations = new int[hospitalIds.size()];
+        int[] capacities = new int[hospitalIds.size()];
+        int h = 0;
+        for (HospitalRows rows : hospitalChunks) {
+            System.arraycopy(rows.locations, 0, locations, h, rows.size());
+            System.arraycopy(rows.capacities, 0, capacities, h, rows.size());
+            h += rows.size();
         }
+        return Instance.create(hospitalIds, locations, capacities, hospitalPreferences,
+                residentIds, residentPreferences, partners);
+    }
 
-        return hospitals;
+    private static List<String> concatIds(List<? extends Rows> chunks) {
+        List<String> ids = new ArrayList<>();
+        chunks.forEach(rows -> ids.addAll(rows.ids));
+        return ids;
     }
 
-    static List<Resident> importResidents(String path) throws FileNotFoundException {
-        Scanner sc = getScanner(path);
+    private static PreferenceLists resolvePreferences(List<? extends Rows> chunks, ByteIdIndex index, String kind) {
+        return PreferenceLists.concat(chunks.parallelStream()
+                .map(rows -> rows.resolvePreferences(index, kind))
+                .collect(Collectors.toList()));
+    }
 
-        List<Resident> residents = new ArrayList<>();
+    private static int[] resolvePartners(List<ResidentRows> chunks, ByteIdIndex residentIndex) {
+        return chunks.stream()
+                .flatMapToInt(rows -> Arrays.stream(rows.resolvePartners(residentIndex)))
+                .toArray();
+    }
+
+    /**
+     * Maps the file and parses its line-aligned chunks in parallel.
+     *
+     * @return the parsed chunks, in file order
+     */
+    private static <R extends Rows> List<R> parse(String path, BiFunction<String, ByteBuffer, R> newRows)
+            throws FileNotFoundException {
+        List<MappedByteBuffer> buffers = mapChunks(path);
+        List<R> chunks = IntStream.range(0, buffers.size())
+                .parallel()
+                .mapToObj(i -> {
+                    R rows = newRows.apply(path, buffers.get(i));
+                    rows.parse();
+                    return rows;
+                })
+                .collect(Collectors.toList());
+        int firstLine = 1;
+        for (R rows : chunks) {
+            rows.firstLine = firstLine;
+            firstLine += rows.lines;
+        }
+        for (R rows : chunks) {
+            rows.throwIfFailed();
+        }
+        return chunks;
+    }
 
-        while (sc.hasNextLine()) {
-            String line = sc.nextLine();
-            String[] parts = line.split(",");
-            String id = parts[0];
-            String concatPrefs = parts[1];
-            List<String> preferences = Arrays.asList(concatPrefs.split(" "));
-            String partnerId = parts[2];
+    private static List<MappedByteBuffer> mapChunks(String path) throws FileNotFoundException {
+        try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+            long size = channel.size();
+            long numChunks = Math.max(
+                    Math.min(Runtime.getRuntime().availableProcessors(), size / MIN_CHUNK_BYTES),
+                    size / MAX_CHUNK_BYTES + 1);
+            List<MappedByteBuffer> buffers = new ArrayList<>();
+            long start = 0;
+            for (long i = 1; i <= numChunks; i++) {
+                long end = i == numChunks ? size : Math.max(start, nextLineStart(channel, size * i / numChunks));
+                if (end > start) {
+                    if (end - start > Integer.MAX_VALUE) {
+                        throw new IllegalArgumentException(path + ": line too long at byte " + start);
+                    }
+                    buffers.add(channel.map(FileChannel.MapMode.READ_ONLY, start, end - start));
+                }
+                start = end;
+            }
+            return buffers;
+        } catch (NoSuchFileException e) {
+            throw new FileNotFoundException(path);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
 
-            Resident resident;
-            if (partnerId.equals("none")) {
-                resident = Resident.create(id, preferences);
-            } else {
-                resident = Resident.create(id, partnerId, preferences);
+    private static long nextLineStart(FileChannel channel, long position) throws IOException {
+        ByteBuffer window = ByteBuffer.allocate(4096);
+        while (true) {
+            window.clear();
+            int read = channel.read(window, position);
+            if (read <= 0) {
+                return channel.size();
             }
+            for (int i = 0; i < read; i++) {
+                if (window.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+    }
 
-            residents.add(resident);
+    /**
+     * The lines of one chunk. Ids are decoded once per row; preference and partner references are kept as
+     * offset / length slices of the mapped buffer until they are resolved or decoded.
+     */
+    private abstract static class Rows {
+        final String path;
+        final ByteBuffer buffer;
+        final List<String> ids = new ArrayList<>();
+        // the chunk relative line of each row, blank lines are skipped
+        int[] rowLines = new int[16];
+        // row i's preferences are slices [preferenceStarts[i], preferenceStarts[i + 1])
+        int[] preferenceStarts = {0};
+        int[] sliceOffsets = new int[64];
+        int[] sliceLengths = new int[64];
+        int numSlices;
+        int lines;
+        int firstLine;
+
+        private int failedLine;
+        private String failure;
+        private final int[] fieldStarts;
+        private final int[] fieldEnds;
+        private byte[] scratch = new byte[64];
+
+        Rows(String path, ByteBuffer buffer, int numFields) {
+            this.path = path;
+            this.buffer = buffer;
+            this.fieldStarts = new int[numFields];
+            this.fieldEnds = new int[numFields];
         }
 
-        return residents;
+        int size() {
+            return ids.size();
+        }
+
+        /**
+         * Parses the fields of a non blank line, which are in fieldStart(i) / fieldEnd(i).
+         */
+        abstract void parseRow();
 
+        final void parse() {
+            int limit = buffer.limit();
+            int position = 0;
+            while (position < limit && failure == null) {
+                int end = position;
+                while (end < limit && buffer.get(end) != '\n') {
+                    end++;
+                }
+                int lineEnd = end > position && buffer.get(end - 1) == '\r' ? end - 1 : end;
+                lines++;
+                if (lineEnd > position && splitFields(position, lineEnd)) {
+                    int row = ids.size();
+                    rowLines = ensureCapacity(rowLines, row + 1);
+                    rowLines[row] = lines;
+                    parseRow();
+                    if (failure == null) {
+                        preferenceStarts = ensureCapacity(preferenceStarts, row + 2);
+                        preferenceStarts[row + 1] = numSlices;
+                    }
+                }
+                position = end + 1;
+            }
+        }
+
+        private boolean splitFields(int start, int end) {
+            int field = 0;
+            fieldStarts[0] = start;
+            for (int i = start; i < end; i++) {
+                if (buffer.get(i) == ',') {
+                    fieldEnds[field] = i;
+                    if (++field == fieldStarts.length) {
+                        return fail("expected " + fieldStarts.length + " fields");
+                    }
+                    fieldStarts[field] = i + 1;
+                }
+            }
+            fieldEnds[field] = end;
+            return field == fieldStarts.length - 1 || fail("expected " + fieldStarts.length + " fields");
+        }
+
+        int fieldStart(int i) {
+            return fieldStarts[i];
+        }
+
+        int fieldEnd(int i) {
+            return fieldEnds[i];
+        }
+
+        String decode(int start, int end) {
+            if (scratch.length < end - start) {
+                scratch = new byte[end - start];
+            }
+            for (int i = start; i < end; i++) {
+                scratch[i - start] = buffer.get(i);
+            }
+            return new String(scratch, 0, end - start, StandardCharsets.UTF_8);
+        }
+
+        int parseInt(int start, int end) {
+            boolean negative = start < end && buffer.get(start) == '-';
+            int i = negative ? start + 1 : start;
+            if (i == end) {
+                fail("expected a number");
+                return 0;
+            }
+            int value = 0;
+            for (; i < end; i++) {
+                int digit = buffer.get(i) - '0';
+                if (digit < 0 || digit > 9) {
+                    fail("expected a number");
+                    return 0;
+                }
+                value = value * 10 + digit;
+            }
+            return negative ? -value : value;
+        }
+
+        /**
+         * Records each space separated token of [start, end) as a slice.
+         */
+        void addSlices(int start, int end) {
+            int i = start;
+            while (i < end) {
+                while (i < end && buffer.get(i) == ' ') {
+                    i++;
+                }
+                int tokenStart = i;
+                while (i < end && buffer.get(i) != ' ') {
+                    i++;
+                }
+                if (i > tokenStart) {
+                    addSlice(tokenStart, i);
+                }
+            }
+        }
+
+        private void addSlice(int start, int end) {
+            sliceOffsets = ensureCapacity(sliceOffsets, numSlices + 1);
+            sliceLengths = ensureCapacity(sliceLengths, numSlices + 1);
+            sliceOffsets[numSlices] = start;
+            sliceLengths[numSlices] = end - start;
+            numSlices++;
+        }
+
+        List<String> decodePreferences(int row) {
+            List<String> preferences = new ArrayList<>(preferenceStarts[row + 1] - preferenceStarts[row]);
+            for (int s = preferenceStarts[row]; s < preferenceStarts[row + 1]; s++) {
+                preferences.add(decode(sliceOffsets[s], sliceOffsets[s] + sliceLengths[s]));
+            }
+            return preferences;
+        }
+
+        PreferenceLists resolvePreferences(ByteIdIndex index, String kind) {
+            int base = preferenceStarts[0];
+            int[] offsets = new int[size() + 1];
+            int[] members = new int[preferenceStarts[size()] - base];
+            for (int row = 0; row < size(); row++) {
+                for (int s = preferenceStarts[row]; s < preferenceStarts[row + 1]; s++) {
+                    members[s - base] = resolve(index, sliceOffsets[s], sliceLengths[s], row, kind);
+                }
+                offsets[row + 1] = preferenceStarts[row + 1] - base;
+            }
+            return PreferenceLists.of(offsets, members);
+        }
+
+        int resolve(ByteIdIndex index, int offset, int length, int row, String kind) {
+            int resolved = index.indexOf(buffer, offset, length);
+            if (resolved == ByteIdIndex.NOT_FOUND) {
+                throw new IllegalArgumentException(String.format("%s:%d: unknown %s %s",
+                        path, firstLine + rowLines[row] - 1, kind, decode(offset, offset + length)));
+            }
+            return resolved;
+        }
+
+        boolean equalsAscii(int start, int end, String value) {
+            if (end - start != value.length()) {
+                return false;
+            }
+            for (int i = start; i < end; i++) {
+                if (buffer.get(i) != value.charAt(i - start)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        boolean fail(String message) {
+            if (failure == null) {
+                failure = message;
+                failedLine = lines;
+            }
+            return false;
+        }
+
+        void throwIfFailed() {
+            if (failure != null) {
+                throw new IllegalArgumentException(
+                        String.format("%s:%d: %s", path, firstLine + failedLine - 1, failure));
+            }
+        }
+
+        static int[] ensureCapacity(int[] array, int size) {
+            return size <= array.length ? array : Arrays.copyOf(array, Math.max(size, array.length * 2));
+        }
+    }
+
+    private static final class HospitalRows extends Rows {
+        int[] locations = new int[16];
+        int[] capacities = new int[16];
+
+        HospitalRows(String path, ByteBuffer buffer) {
+            super(path, buffer, 4);
+        }
+
+        @Override
+        void parseRow() {
+            int row = ids.size();
+            locations = ensureCapacity(locations, row + 1);
+            capacities = ensureCapacity(capacities, row + 1);
+            locations[row] = parseInt(fieldStart(1), fieldEnd(1));
+            capacities[row] = parseInt(fieldStart(2), fieldEnd(2));
+            addSlices(fieldStart(3), fieldEnd(3));
+            ids.add(decode(fieldStart(0), fieldEnd(0)));
+        }
+    }
+
+    private static final class ResidentRows extends Rows {
+        // the partner id of each row as a slice of the buffer, offset -1 if it has none
+        int[] partnerOffsets = new int[16];
+        int[] partnerLengths = new int[16];
+
+        ResidentRows(String path, ByteBuffer buffer) {
+            super(path, buffer, 3);
+        }
+
+        @Override
+        void parseRow() {
+            int row = ids.size();
+            partnerOffsets = ensureCapacity(partnerOffsets, row + 1);
+            partnerLengths = ensureCapacity(partnerLengths, row + 1);
+            addSlices(fieldStart(1), fieldEnd(1));
+            boolean noPartner = equalsAscii(fieldStart(2), fieldEnd(2), NO_PARTNER);
+            partnerOffsets[row] = noPartner ? -1 : fieldStart(2);
+            partnerLengths[row] = fieldEnd(2) - fieldStart(2);
+            ids.add(decode(fieldStart(0), fieldEnd(0)));
+        }
+
+        boolean hasPartner(int row) {
+            return partnerOffsets[row] != -1;
+        }
+
+        String decodePartner(int row) {
+            return decode(partnerOffsets[row], partnerOffsets[row] + partnerLengths[row]);
+        }
+
+        int[] resolvePartners(ByteIdIndex residentIndex) {
+            int[] partners = new int[size()];
+            for (int row = 0; row < partners.length; row++) {
+                partners[row] = hasPartner(row)
+                        ? resolve(residentIndex, partnerOffsets[row], partnerLengths[row], row, "partner")
+                        : Instance.NONE;
+            }
+            return partners;
+        }
     }
 }
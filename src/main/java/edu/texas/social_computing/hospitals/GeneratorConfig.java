@@ -0,0 +1,125 @@
+package edu.texas.social_computing.hospitals;
+
+import com.google.auto.value.AutoValue;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Parameters of an {@link InstanceGenerator}. The same config, seed included, always generates the same instance.
+ */
+@AutoValue
+public abstract class GeneratorConfig {
+
+    // ZIPF keeps a weight per capacity in the range
+    static final int MAX_ZIPF_CAPACITY_RANGE = 1 << 20;
+
+    /**
+     * How capacities spread over [minCapacity, maxCapacity].
+     */
+    public enum CapacityDistribution {
+        /** every capacity in the range is equally likely */
+        UNIFORM,
+        /**
+         * minCapacity + k with probability proportional to 1 / (k + 1): mostly small hospitals and a few large
+         * ones, the same Zipf law residents pick popular hospitals by
+         */
+        ZIPF
+    }
+
+    public abstract long getSeed();
+
+    public abstract int getNumHospitals();
+
+    public abstract int getNumLocations();
+
+    public abstract int getNumResidents();
+
+    /**
+     * Residents 2i and 2i + 1 are partners for i < numCouples.
+     */
+    public abstract int getNumCouples();
+
+    /**
+     * Length of every resident's preference list. Hospitals rank exactly the residents that listed them.
+     */
+    public abstract int getListLength();
+
+    /**
+     * Capacities lie in [minCapacity, maxCapacity], spread as {@link #getCapacityDistribution()} says.
+     */
+    public abstract int getMinCapacity();
+
+    public abstract int getMaxCapacity();
+
+    public abstract CapacityDistribution getCapacityDistribution();
+
+    /**
+     * 0 makes every preference list independent and uniform. Towards 1 residents increasingly agree on which
+     * hospitals are popular and hospitals on which residents are strong.
+     */
+    public abstract double getCorrelation();
+
+    public static Builder builder() {
+        return new AutoValue_GeneratorConfig.Builder()
+                .setSeed(0)
+                .setNumLocations(1)
+                .setNumCouples(0)
+                .setListLength(10)
+                .setMinCapacity(1)
+                .setMaxCapacity(5)
+                .setCapacityDistribution(CapacityDistribution.UNIFORM)
+                .setCorrelation(0.5);
+    }
+
+    /**
+     * @return the name the bundled instances use for an instance of this shape, e.g. test_hos5_loc2_res16_coup3
+     */
+    public String getName() {
+        return String.format("test_hos%d_loc%d_res%d_coup%d",
+                getNumHospitals(), getNumLocations(), getNumResidents(), getNumCouples());
+    }
+
+    @AutoValue.Builder
+    public abstract static class Builder {
+        public abstract Builder setSeed(long seed);
+
+        public abstract Builder setNumHospitals(int numHospitals);
+
+        public abstract Builder setNumLocations(int numLocations);
+
+        public abstract Builder setNumResidents(int numResidents);
+
+        public abstract Builder setNumCouples(int numCouples);
+
+        public abstract Builder setListLength(int listLength);
+
+        public abstract Builder setMinCapacity(int minCapacity);
+
+        public abstract Builder setMaxCapacity(int maxCapacity);
+
+        public abstract Builder setCapacityDistribution(CapacityDistribution capacityDistribution);
+
+        public abstract Builder setCorrelation(double correlation);
+
+        abstract GeneratorConfig autoBuild();
+
+        public GeneratorConfig build() {
+            GeneratorConfig config = autoBuild();
+            checkArgument(config.getNumHospitals() > 0 && config.getNumResidents() >= 0,
+                    "need at least one hospital");
+            checkArgument(config.getNumLocations() > 0, "need at least one location");
+            checkArgument(config.getNumCouples() >= 0 && 2L * config.getNumCouples() <= config.getNumResidents(),
+                    "%s couples do not fit in %s residents", config.getNumCouples(), config.getNumResidents());
+            checkArgument(config.getListLength() >= 0 && config.getListLength() <= config.getNumHospitals(),
+                    "list length %s not in [0, %s]", config.getListLength(), config.getNumHospitals());
+            checkArgument(0 <= config.getMinCapacity() && config.getMinCapacity() <= config.getMaxCapacity(),
+                    "bad capacity range [%s, %s]", config.getMinCapacity(), config.getMaxCapacity());
+            checkArgument(config.getCapacityDistribution() != CapacityDistribution.ZIPF
+                            || (long) config.getMaxCapacity() - config.getMinCapacity() < MAX_ZIPF_CAPACITY_RANGE,
+                    "capacity range [%s, %s] too wide for ZIPF", config.getMinCapacity(), config.getMaxCapacity());
+            checkArgument(0 <= config.getCorrelation() && config.getCorrelation() <= 1,
+                    "correlation %s not in [0, 1]", config.getCorrelation());
+            return config;
+        }
+    }
+}
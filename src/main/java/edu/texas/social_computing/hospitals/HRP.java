@@ -1,15 +1,15 @@
 package edu.texas.social_computing.hospitals;
 
-import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 
 import java.io.FileNotFoundException;
 import java.util.*;
-import java.util.stream.Stream;
-
-import static com.google.common.collect.Lists.newArrayList;
 
 public class HRP {
+
+    // proposals between two questions to the listener whether to stop
+    static final int PROPOSALS_PER_STOP_CHECK = 1024;
+
     private HRP() {
     }
 
@@ -39,60 +39,111 @@ public class HRP {
                                ResidentTable residentTable,
                                Queue<Resident> freeResidents,
                                Matching existingMatching) {
-        Matching m = existingMatching;
-
-        Map<Hospital, List<String>> hospitalsPrefs = new HashMap<>();
-        for (Hospital hospital : hospitalTable.getAll()) {
-            hospitalsPrefs.put(hospital, newArrayList(hospital.getPreferences()));
+        ResidentQueue freeResidentIndices = ResidentQueue.fifo(residentTable.size());
+        while (!freeResidents.isEmpty()) {
+            freeResidentIndices.add(residentTable.indexOf(freeResidents.poll().getId()));
         }
+        return run(existingMatching, freeResidentIndices);
+    }
 
-        Map<Resident, List<String>> residentsPrefs = new HashMap<>();
-        for (Resident resident : residentTable.getAll()) {
-            residentsPrefs.put(resident, newArrayList(resident.getPreferences()));
+    public static Matching run(HospitalTable hospitalTable,
+                               ResidentTable residentTable,
+                               Queue<Resident> freeResidents) {
+        Matching m = new Matching(Instance.create(hospitalTable, residentTable));
+        return run(hospitalTable, residentTable, freeResidents, m);
+    }
+
+    /**
+     * Runs HRP on the residents (by index) in freeResidents, starting from an existing matching.
+     * <p>
+     * Residents only ever apply to hospitals in their current view that rank them (see
+     * {@link Instance#acceptableHospitals()}), so pairs that are not mutually acceptable never need deleting.
+     * Deleting the successors of a full hospital's worst resident is a per hospital cutoff rank: nobody ranked at
+     * or below it may apply for the rest of the run. The run keeps that state in the matching's
+     * {@link HRPSession}, so it costs only what it touches.
+     * <p>
+     * Every {@value #PROPOSALS_PER_STOP_CHECK} proposals the run asks its listener whether to stop (see
+     * {@link SolverListener#shouldStop}). If it does, the run returns with {@link Termination#STOPPED} and the
+     * residents it has not placed yet left in freeResidents.
+     */
+    static Matching run(Matching existingMatching, ResidentQueue freeResidents) {
+        Matching m = existingMatching;
+        HRPSession session = m.getHrpSession();
+        m.setTermination(Termination.CONVERGED);
+        try {
+            run(m, freeResidents, session);
+        } finally {
+            session.reset();
         }
+        return m;
+    }
+
+    private static void run(Matching m, ResidentQueue freeResidents, HRPSession session) {
+        Instance instance = m.getInstance();
+        PreferenceViews preferenceViews = m.getPreferenceViews();
+        SolverListener listener = m.getListener();
+        long proposals = 0;
 
         while (!freeResidents.isEmpty()) {
-            Resident currentResident = freeResidents.poll();
-            if (residentsPrefs.get(currentResident).isEmpty()) {
+            int currentResident = freeResidents.poll();
+            if (m.hasAssignment(currentResident)
+                    || !hasNextChoice(instance, preferenceViews, session, currentResident)) {
                 continue;
             }
-            List<String> currentResidentPref = residentsPrefs.get(currentResident);
-            Hospital hospital = hospitalTable.getHospitalById(currentResidentPref.get(0));
-            residentsPrefs.get(currentResident).remove(hospital.getId());
+            int hospital = instance.acceptableHospitals().get(currentResident, session.nextChoice(currentResident));
+            session.advance(currentResident);
 
             m.assign(currentResident, hospital);
+            listener.proposal(currentResident, hospital);
 
             if (m.isOverSubscribed(hospital)) {
-                Resident worstResident = m.getWorstAssignedResident(hospital);
-                m.unassign(worstResident, hospital);
-                if (!residentsPrefs.get(worstResident).isEmpty() && !worstResident.equals(currentResident)) {
-                    freeResidents.add(worstResident);
+                int worstResident = m.getWorstAssignedResident(hospital);
+                m.unassign(worstResident);
+                if (worstResident == currentResident) {
+                    listener.rejection(currentResident, hospital);
+                } else {
+                    listener.eviction(worstResident, hospital);
+                    if (hasNextChoice(instance, preferenceViews, session, worstResident)) {
+                        freeResidents.add(worstResident);
+                    }
                 }
             }
-            if (m.isFull(hospital)) {
-                List<String> badResidentIds = hospital.getWorseThanIds(m.getWorstAssignedResident(hospital));
-                List<String> nonRankedResidentIds = getNonRankedIds(hospital, residentTable.getAll());
-
-                Stream.of(badResidentIds, nonRankedResidentIds).flatMap(Collection::stream)
-                        .forEach(resId -> {
-                            hospitalsPrefs.remove(resId);
-                            Resident badResident = residentTable.getResidentById(resId);
-                            residentsPrefs.get(badResident).remove(hospital.getId());
-                        });
-
+            // a hospital without seats is full with nobody in it, and has no worst resident to cut off below
+            if (m.isFull(hospital) && m.getAssignmentCount(hospital) > 0) {
+                // delete the pair (r_l, h_j) for each successor r_l of the worst resident
+                int cutoffRank = instance.hospitalRankOf(hospital, m.getWorstAssignedResident(hospital));
+                int length = instance.hospitalPreferences().length(hospital);
+                int oldCutoffRank = session.cutoffRank(hospital);
+                int firstDeleted = oldCutoffRank == Instance.UNRANKED ? length : Math.min(oldCutoffRank + 1, length);
+                if (firstDeleted > cutoffRank + 1) {
+                    listener.pairsDeleted(hospital, firstDeleted - cutoffRank - 1);
+                }
+                session.setCutoffRank(hospital, cutoffRank);
             }
             // if currentResident has more applying to do, put back in Q
             if (!m.hasAssignment(currentResident)) {
                 freeResidents.add(currentResident);
             }
+            // no hospital is over-subscribed here, and everyone left to place is in the queue
+            if (++proposals % PROPOSALS_PER_STOP_CHECK == 0 && listener.shouldStop(m)) {
+                m.setTermination(Termination.STOPPED);
+                return;
+            }
         }
-        return m;
     }
 
-    public static Matching run(HospitalTable hospitalTable,
-                               ResidentTable residentTable,
-                               Queue<Resident> freeResidents) {
-        return run(hospitalTable, residentTable, freeResidents, new Matching());
+    private static boolean hasNextChoice(
+            Instance instance, PreferenceViews preferenceViews, HRPSession session, int r) {
+        PreferenceLists prefs = instance.acceptableHospitals();
+        int length = prefs.length(r);
+        while (session.nextChoice(r) < length) {
+            int h = prefs.get(r, session.nextChoice(r));
+            if (preferenceViews.contains(r, h) && instance.hospitalRankOf(h, r) < session.cutoffRank(h)) {
+                break;
+            }
+            session.advance(r);
+        }
+        return session.nextChoice(r) < length;
     }
 
     public static void main(String[] args) throws FileNotFoundException {
@@ -107,8 +158,11 @@ public class HRP {
         ResidentTable residentTable = ResidentTable.create(residents);
         System.out.println("generated tables");
 
-        // call HRP
-        Matching m = HRP.run(hospitalTable, residentTable, new ArrayDeque<>(residentTable.getAll()));
+        // call HRP, on as many threads as the optional third argument asks for
+        int workers = args.length > 2 ? Integer.parseInt(args[2]) : 1;
+        Matching m = workers > 1
+                ? ParallelHRP.run(Instance.create(hospitalTable, residentTable), workers)
+                : HRP.run(hospitalTable, residentTable, new ArrayDeque<>(residentTable.getAll()));
         System.out.println(m);
 
 
@@ -117,11 +171,4 @@ public class HRP {
                 .collect(ImmutableSet.toImmutableSet());
         System.out.println("Unassigned: " + unassignedIds);
     }
-
-    private static List<String> getNonRankedIds(Hospital h, List<Resident> residents) {
-        return residents.stream()
-                .filter(resident -> !h.isRanked(resident))
-                .map(Resident::getId)
-                .collect(ImmutableList.toImmutableList());
-    }
 }
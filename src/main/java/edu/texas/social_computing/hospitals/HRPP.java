@@ -1,139 +1,290 @@
 package edu.texas.social_computing.hospitals;
 
-import com.google.common.collect.Sets;
-import static com.google.common.base.Preconditions.checkState;
-
 import java.util.*;
+import java.util.function.IntConsumer;
+import java.util.function.Supplier;
 
 import static com.google.common.base.Preconditions.checkState;
 
 public class HRPP {
 
     public static Matching run(HospitalTable hospitalTable, ResidentTable residentTable) {
-        // run hospital-resident matching alg (couple agnostic)
-        Deque<Resident> initialQueue = new ArrayDeque<>(residentTable.getAll());
-        Matching matching = HRP.run(hospitalTable, residentTable, initialQueue);
+        return run(Instance.create(hospitalTable, residentTable));
+    }
+
+    public static Matching run(Instance instance) {
+        return run(instance, SolverListener.NONE);
+    }
+
+    public static Matching run(Instance instance, SolverListener listener) {
+        return run(instance, listener, HRPPCheckpoint.NONE);
+    }
+
+    /**
+     * Solves instance, resuming from checkpoint if it holds one and writing checkpoints while the proximity
+     * repair runs. The checkpoint is deleted once the solve finishes.
+     */
+    public static Matching run(Instance instance, SolverListener listener, HRPPCheckpoint checkpoint) {
+        return run(instance, listener, checkpoint, HRPPLimits.DEFAULT);
+    }
+
+    /**
+     * Like {@link #run(Instance, SolverListener, HRPPCheckpoint)}, stopping the proximity repair at limits. See
+     * {@link Matching#getTermination()} for whether it converged.
+     */
+    public static Matching run(Instance instance, SolverListener listener, HRPPCheckpoint checkpoint,
+                               HRPPLimits limits) {
+        return run(instance, listener, checkpoint, limits, () -> ResidentQueue.fifo(instance.numResidents()));
+    }
+
+    /**
+     * Solves instance with the order residents are picked in given by the queues newQueue creates, e.g.
+     * {@link ResidentQueue#shuffled} ones. The result depends on that order; see {@link PortfolioSolver}.
+     */
+    static Matching run(Instance instance, SolverListener listener, HRPPCheckpoint checkpoint, HRPPLimits limits,
+                        Supplier<ResidentQueue> newQueue) {
+        long solveStart = System.nanoTime();
+        Matching matching = new Matching(instance);
+        matching.setListener(listener);
+        ResidentQueue unmatchedQueue = newQueue.get();
+
+        boolean stopped = false;
+        if (!checkpoint.resume(matching, unmatchedQueue)) {
+            // run hospital-resident matching alg (couple agnostic)
+            ResidentQueue everyone = newQueue.get();
+            for (int r = 0; r < instance.numResidents(); r++) {
+                everyone.add(r);
+            }
+            stopped = runHRP(matching, everyone, SolverListener.Phase.INITIAL_HRP);
+
+            // check all couples for proximity violations (location mismatch)
+            unmatchedQueue.addAll(matching.getAllUnassigned());
+        }
+        if (stopped) {
+            stop(matching, Termination.STOPPED, 0);
+        } else {
+            repair(matching, unmatchedQueue, checkpoint, limits);
+        }
+        checkpoint.finished();
+
+        listener.phaseFinished(SolverListener.Phase.SOLVE, System.nanoTime() - solveStart);
+
+        return matching;
+    }
+
+    /**
+     * Settles the residents in queue into a matching that was stable before some change, see {@link Rematcher}.
+     * HRP and the singles check alternate until nobody is left to place, then the couples are repaired.
+     */
+    static Matching rematch(Matching matching, ResidentQueue queue) {
+        long start = System.nanoTime();
+        giveSinglesAnotherChance(matching, queue);
+        boolean stopped = false;
+        while (!stopped && !queue.isEmpty()) {
+            stopped = runHRP(matching, queue, SolverListener.Phase.REMATCH_HRP);
+            if (!stopped) {
+                giveSinglesAnotherChance(matching, queue);
+            }
+        }
+        if (stopped) {
+            stop(matching, Termination.STOPPED, 0);
+        } else {
+            repair(matching, queue, HRPPCheckpoint.NONE, HRPPLimits.DEFAULT);
+        }
+        matching.getListener().phaseFinished(SolverListener.Phase.SOLVE, System.nanoTime() - start);
+        return matching;
+    }
 
-        // check all couples for proximity violations (location mismatch)
-        Deque<Resident> unmatchedQueue = new ArrayDeque<>(matching.getAllUnassigned(residentTable.getAll()));
-        Deque<Resident> violatingResidentsQ = computeViolatingResidentQ(matching, residentTable);
+    // the proximity repair loop: runs until no couple violates the proximity constraint, or a limit stops it.
+    // Everything an iteration hands to the next is in the matching and the queue, which is what a checkpoint saves
+    // and the limits look at, at the top of the loop.
+    private static void repair(Matching matching, ResidentQueue unmatchedQueue, HRPPCheckpoint checkpoint,
+                               HRPPLimits limits) {
+        Instance instance = matching.getInstance();
+        PreferenceViews preferenceViews = matching.getPreferenceViews();
+        SolverListener listener = matching.getListener();
+        HRPSession session = matching.getHrpSession();
+        long firstProposal = session.proposalCount();
+        CycleDetector cycles = new CycleDetector();
+        long iterations = 0;
+        matching.setTermination(Termination.CONVERGED);
+        matching.unassignNDProximityViolators();
 
         // while (couple proximity violations exist)
-        while (!violatingResidentsQ.isEmpty()) {
+        while (matching.getProximityViolationCount() > 0) {
+            checkpoint.maybeWrite(matching, unmatchedQueue);
+            if (listener.shouldStop(matching)) {
+                stop(matching, Termination.STOPPED, iterations);
+                return;
+            }
+            if (limits.isDetectingCycles() && cycles.repeats(matching.getFingerprint())) {
+                stop(matching, Termination.CYCLE, iterations);
+                return;
+            }
+            if (iterations == limits.getMaxIterations()) {
+                stop(matching, Termination.ITERATION_BUDGET, iterations);
+                return;
+            }
+            if (session.proposalCount() - firstProposal >= limits.getMaxProposals()) {
+                stop(matching, Termination.PROPOSAL_BUDGET, iterations);
+                return;
+            }
+            iterations++;
+            listener.proximityViolations(matching.getProximityViolationCount());
 
             // pick non-dominant partner (not matched partner or partner with worse preference match)
-            Resident ndResident = violatingResidentsQ.poll();
-            Resident partner = residentTable.getResidentById(ndResident.getPartnerId());
+            int ndResident = matching.getNextNDProximityViolator();
+            int partner = instance.partnerOf(ndResident);
 
-            // remove all hospitals violating proximity constraint (make a copy dont modify original preference)
-            ndResident.setPrefsByLocation(matching.getAssignedHospital(partner).getLocationId(), hospitalTable);
+            // remove all hospitals violating proximity constraint (narrows the view, the original preferences are untouched)
+            preferenceViews.restrictToLocation(ndResident, matching.getAssignedLocation(partner));
 
             // put back in the queue
-            matching.unassign(ndResident, matching.getAssignedHospital(ndResident));
+            matching.unassign(ndResident);
             unmatchedQueue.add(ndResident);
 
             // try to match that person
-            HRP.run(hospitalTable, residentTable, unmatchedQueue, matching);
+            boolean stopped = runHRP(matching, unmatchedQueue, SolverListener.Phase.RESTRICTED_HRP);
 
             // reset non-dominant partner's preference list
-            ndResident.setPrefsByProgress(residentTable.getResidentRankProgress(ndResident));
+            preferenceViews.resetToProgress(ndResident, matching.getRankProgress(ndResident));
+            if (stopped) {
+                stop(matching, Termination.STOPPED, iterations);
+                return;
+            }
 
             // if matched -> good
             if (matching.hasAssignment(ndResident)) {
-                updateViolatingResidentQ(matching, residentTable, violatingResidentsQ);
-                giveSinglesAnotherChance(matching, residentTable, hospitalTable, unmatchedQueue);
+                matching.unassignNDProximityViolators();
+                giveSinglesAnotherChance(matching, unmatchedQueue);
                 continue;
             }
 
-            giveSinglesAnotherChance(matching, residentTable, hospitalTable, unmatchedQueue);
+            giveSinglesAnotherChance(matching, unmatchedQueue);
 
             // Task 2
             // if partners still not proximally matched
             // unmatch BOTH in the couple and add both back to the queue (now no one is dominant)
-            matching.unassign(ndResident, matching.getAssignedHospital(ndResident));
-            matching.unassign(partner, matching.getAssignedHospital(partner));
+            matching.unassign(ndResident);
+            matching.unassign(partner);
 
             // add both partners back to queue
             unmatchedQueue.add(ndResident);
             unmatchedQueue.add(partner);
 
             // start from dominant partner's next hospital preference (changing the rank pointer)
-            residentTable.incrementResidentRankProgress(partner);
-            partner.setPrefsByProgress(residentTable.getResidentRankProgress(partner));
+            matching.incrementRankProgress(partner);
+            preferenceViews.resetToProgress(partner, matching.getRankProgress(partner));
 
             // run again
-            HRP.run(hospitalTable, residentTable, unmatchedQueue, matching);
-
-            // check for proximity violations again ... could be some new ones
-            updateViolatingResidentQ(matching, residentTable, violatingResidentsQ);
+            if (runHRP(matching, unmatchedQueue, SolverListener.Phase.COUPLE_HRP)) {
+                stop(matching, Termination.STOPPED, iterations);
+                return;
+            }
+            matching.unassignNDProximityViolators();
 
             // make sure all unassigned residents (for whatever reason) are added back into the queue for consideration
-            unmatchedQueue.addAll(matching.getAllUnassigned(residentTable.getAll()));
+            unmatchedQueue.addAll(matching.getAllUnassigned());
 
             // give the singles another chance
-            giveSinglesAnotherChance(matching, residentTable, hospitalTable, unmatchedQueue);
-            printProgress(residentTable);
+            giveSinglesAnotherChance(matching, unmatchedQueue);
         }
-
-        System.out.println("Size of violating Q: " + violatingResidentsQ.size());
-
-        return matching;
     }
 
-    private static Deque<Resident> computeViolatingResidentQ(Matching matching, ResidentTable residentTable) {
-        Set<Resident> freeViolatingResidents = matching.getNDProximityViolators(residentTable.getAll(), residentTable);
-        return new ArrayDeque<>(freeViolatingResidents);
+    private static void stop(Matching matching, Termination termination, long iterations) {
+        matching.setTermination(termination);
+        matching.getListener().repairStopped(termination, iterations, matching.getProximityViolationCount());
     }
 
-    private static void updateViolatingResidentQ(
-            Matching matching, ResidentTable residentTable, Deque<Resident> violatingResidentsQ) {
-        Set<Resident> newViolators = new HashSet<>(computeViolatingResidentQ(matching, residentTable));
-        Set<Resident> oldViolators = new HashSet<>(violatingResidentsQ);
-        violatingResidentsQ.addAll(Sets.difference(newViolators, oldViolators));
+    /**
+     * Brent's cycle detection over the fingerprints the repair loop passes through: the fingerprint saved at each
+     * power of two is compared with every later one up to the next power. This is a heuristic: the fingerprint
+     * covers the assignments and rank progress but not the order of the proximity violations or the unmatched
+     * queue, which also steer the next iteration, so a repeated fingerprint can come from states that would go on
+     * differently.
+     */
+    private static final class CycleDetector {
+        private long saved;
+        private boolean hasSaved;
+        private long power = 1;
+        private long length;
+
+        boolean repeats(long fingerprint) {
+            if (!hasSaved) {
+                saved = fingerprint;
+                hasSaved = true;
+                return false;
+            }
+            length++;
+            if (fingerprint == saved) {
+                return true;
+            }
+            if (length == power) {
+                saved = fingerprint;
+                power <<= 1;
+                length = 0;
+            }
+            return false;
+        }
+
+        /**
+         * @return the number of iterations in the cycle, once {@link #repeats} found one
+         */
+        long length() {
+            return length;
+        }
     }
 
-    public static void giveSinglesAnotherChance(
-            Matching matching,
-            ResidentTable residentTable,
-            HospitalTable hospitalTable,
-            Queue<Resident> unmatchedQueue) {
-
-        residentTable.getAll().stream()
-                .filter(resident -> !resident.hasPartner())
-                .filter(matching::hasAssignment)
-                .filter(resident -> canDoBetter(matching, resident, hospitalTable))
-                .forEach(resident -> {
-                    matching.unassign(resident, matching.getAssignedHospital(resident));
-                    unmatchedQueue.add(resident);
-                });
+    // returns true if the listener stopped the run
+    private static boolean runHRP(Matching matching, ResidentQueue queue, SolverListener.Phase phase) {
+        SolverListener listener = matching.getListener();
+        listener.hrpRun(queue.size());
+        long start = System.nanoTime();
+        HRP.run(matching, queue);
+        listener.phaseFinished(phase, System.nanoTime() - start);
+        return matching.getTermination() == Termination.STOPPED;
     }
 
-    public static boolean canDoBetter(Matching matching, Resident resident, HospitalTable hospitalTable) {
-        Hospital assignedHospital = matching.getAssignedHospital(resident);
-        int rankOfAssigned = resident.rankOf(assignedHospital);
-        checkState(rankOfAssigned < resident.getPreferences().size(),
-                "%s >= %s", rankOfAssigned, resident.getPreferences().size());
+    public static void giveSinglesAnotherChance(Matching matching, ResidentQueue unmatchedQueue) {
+        SolverListener listener = matching.getListener();
+        long start = System.nanoTime();
+        forEachSingleThatCanDoBetter(matching, resident -> {
+            matching.unassign(resident);
+            unmatchedQueue.add(resident);
+            listener.singleRequeued(resident);
+        });
+        listener.phaseFinished(SolverListener.Phase.SINGLES_RECHECK, System.nanoTime() - start);
+    }
 
-        for(int i=0; i<rankOfAssigned; i++) {
-            Hospital nextHospital = hospitalTable.getHospitalById(resident.getPreferences().get(i));
-            if(matching.isRankedHigherThanWorstMatch(nextHospital, resident.getId())) {
-                return true;
+    /**
+     * Calls action on every assigned single that prefers a hospital which would take it over its worst resident.
+     * Only the singles affected by assignments made since the last call are checked.
+     */
+    static void forEachSingleThatCanDoBetter(Matching matching, IntConsumer action) {
+        for (int resident : matching.drainSinglesToRecheck()) {
+            if (matching.hasAssignment(resident) && canDoBetter(matching, resident)) {
+                action.accept(resident);
             }
         }
-        return false;
     }
 
-    private static void printProgress(ResidentTable residentTable) {
-        Optional<Integer> totalRank = residentTable.getAll().stream()
-                .map(residentTable::getResidentRankProgress)
-                .reduce((rank1, rank2) -> rank1 + rank2);
-
-        Optional<Integer> maxtotalRank = residentTable.getAll().stream()
-                .map(res -> res.getInitialPreferences().size())
-                .reduce((size1, size2) -> size1 + size2);
-
-        if (totalRank.get() % 10 == 0) {
-            System.out.println(totalRank.get() + "/" + maxtotalRank.get());
+    public static boolean canDoBetter(Matching matching, int resident) {
+        Instance instance = matching.getInstance();
+        PreferenceViews preferenceViews = matching.getPreferenceViews();
+        int assigned = matching.getAssignedHospital(resident);
+        checkState(preferenceViews.contains(resident, assigned),
+                "%s not in view of %s", assigned, resident);
+
+        // walk the view in place, up to the assigned hospital
+        int[] preferences = instance.residentPreferences().members();
+        int offset = instance.residentPreferences().start(resident);
+        int rankOfAssigned = instance.residentRankOf(resident, assigned);
+        for (int i = preferenceViews.start(resident); i < rankOfAssigned; i++) {
+            int h = preferences[offset + i];
+            if (preferenceViews.contains(resident, h) && matching.isRankedHigherThanWorstMatch(h, resident)) {
+                return true;
+            }
         }
+        return false;
     }
 }
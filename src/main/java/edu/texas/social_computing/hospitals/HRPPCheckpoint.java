@@ -0,0 +1,234 @@
+package edu.texas.social_computing.hospitals;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Periodic checkpoints of an {@link HRPP} solve, so a solve that dies can resume where it was instead of starting
+ * over. Pass one to {@link HRPP#run(Instance, SolverListener, HRPPCheckpoint)}: the solve resumes from the file
+ * if there is one for the same instance, writes the file at most once per interval at the top of the proximity
+ * repair loop, and deletes it when it finishes.
+ * <p>
+ * A checkpoint holds everything the repair loop carries from one iteration to the next: the assignments, rank
+ * progress and preference views of every resident, the violating couples in order, the unmatched queue and the
+ * changes the next singles check starts from. A resumed solve therefore takes the same steps, and ends in the
+ * same matching, as one that was never interrupted.
+ * <p>
+ * The file is written through a memory mapping of a temporary file next to it, forced to disk and then moved
+ * over the previous checkpoint, so the file at the path is always a complete checkpoint. Big endian ints:
+ * <pre>
+ * header: MAGIC, VERSION, numHospitals, numResidents, fingerprint (high, low),
+ *         violationCount, queueSize, dirtyHospitalCount, dirtyResidentCount
+ * assignments[numResidents], -1 for none
+ * rankProgress[numResidents], viewStarts[numResidents], viewLocationFilters[numResidents]
+ * proximityViolations[violationCount], couple keys oldest first
+ * queue[queueSize], dirtyHospitals[dirtyHospitalCount], dirtyResidents[dirtyResidentCount]
+ * </pre>
+ * The fingerprint is a hash of the instance, so a checkpoint of another instance is rejected rather than
+ * resumed from. A checkpoint is used by one solve at a time.
+ */
+public final class HRPPCheckpoint {
+
+    /**
+     * Never writes or resumes from a checkpoint.
+     */
+    public static final HRPPCheckpoint NONE = new HRPPCheckpoint(null, Long.MAX_VALUE);
+
+    static final int MAGIC = 0x48525043; // "HRPC"
+    static final int VERSION = 1;
+    private static final int HEADER_INTS = 10;
+
+    private final Path path;
+    private final long intervalNanos;
+    private long nextWrite;
+    // of the instance being solved, computed once per solve
+    private long fingerprint;
+
+    private HRPPCheckpoint(Path path, long intervalNanos) {
+        this.path = path;
+        this.intervalNanos = intervalNanos;
+    }
+
+    /**
+     * @param interval time between two checkpoints. Zero writes one every iteration of the repair loop.
+     */
+    public static HRPPCheckpoint every(Path path, Duration interval) {
+        checkArgument(!interval.isNegative(), "negative interval %s", interval);
+        return new HRPPCheckpoint(path, interval.toNanos());
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * Starts a solve: loads the checkpoint, if there is one, into a fresh matching and an empty queue.
+     *
+     * @return false if there is no checkpoint to resume from
+     * @throws IllegalArgumentException if the file is not a checkpoint of this version, or of another instance
+     */
+    boolean resume(Matching matching, ResidentQueue queue) {
+        if (path == null) {
+            return false;
+        }
+        startInterval();
+        Instance instance = matching.getInstance();
+        fingerprint = fingerprint(instance);
+        if (!Files.exists(path)) {
+            return false;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            checkArgument(channel.size() >= HEADER_INTS * Integer.BYTES, "%s is not a checkpoint", path);
+            IntBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).asIntBuffer();
+            checkArgument(in.get() == MAGIC, "%s is not a checkpoint", path);
+            checkArgument(in.get() == VERSION, "unsupported checkpoint version in %s", path);
+            int numHospitals = in.get();
+            int numResidents = in.get();
+            long savedFingerprint = ((long) in.get() << 32) | (in.get() & 0xFFFFFFFFL);
+            checkArgument(numHospitals == instance.numHospitals() && numResidents == instance.numResidents()
+                    && savedFingerprint == fingerprint, "%s is a checkpoint of another instance", path);
+            int violationCount = in.get();
+            int queueSize = in.get();
+            int dirtyHospitalCount = in.get();
+            int dirtyResidentCount = in.get();
+            checkArgument(in.remaining() == 4L * numResidents + violationCount + queueSize + dirtyHospitalCount
+                    + dirtyResidentCount, "truncated checkpoint %s", path);
+
+            int[] assignments = ints(in, numResidents, Matching.UNASSIGNED, numHospitals - 1);
+            int[] rankProgress = ints(in, numResidents, 0, Integer.MAX_VALUE);
+            int[] viewStarts = ints(in, numResidents, 0, Integer.MAX_VALUE);
+            int[] viewLocationFilters = ints(in, numResidents, Integer.MIN_VALUE, Integer.MAX_VALUE);
+            int[] violations = ints(in, violationCount, 0, numResidents - 1);
+            int[] queued = ints(in, queueSize, 0, numResidents - 1);
+            int[] dirtyHospitals = ints(in, dirtyHospitalCount, 0, numHospitals - 1);
+            int[] dirtyResidents = ints(in, dirtyResidentCount, 0, numResidents - 1);
+            matching.restore(assignments, rankProgress, viewStarts, viewLocationFilters, violations,
+                    dirtyHospitals, dirtyResidents);
+            for (int r : queued) {
+                queue.add(r);
+            }
+            return true;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Writes a checkpoint if the interval has passed since the last one, or since the solve started.
+     */
+    void maybeWrite(Matching matching, ResidentQueue queue) {
+        if (path != null && System.nanoTime() - nextWrite >= 0) {
+            long start = System.nanoTime();
+            write(matching, queue);
+            matching.getListener().phaseFinished(SolverListener.Phase.CHECKPOINT, System.nanoTime() - start);
+            startInterval();
+        }
+    }
+
+    /**
+     * Deletes the checkpoint of a finished solve.
+     */
+    void finished() {
+        if (path != null) {
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private void startInterval() {
+        nextWrite = System.nanoTime() + intervalNanos;
+    }
+
+    private void write(Matching matching, ResidentQueue queue) {
+        Instance instance = matching.getInstance();
+        PreferenceViews views = matching.getPreferenceViews();
+        int numResidents = instance.numResidents();
+        int[] violations = matching.getProximityViolationOrder();
+        int[] queued = queue.toArray();
+        int[] dirtyHospitals = matching.getDirtyHospitals();
+        int[] dirtyResidents = matching.getDirtyResidents();
+        long numInts = HEADER_INTS + 4L * numResidents + violations.length + queued.length + dirtyHospitals.length
+                + dirtyResidents.length;
+        checkArgument(numInts <= Integer.MAX_VALUE / Integer.BYTES, "checkpoint of %s ints too large", numInts);
+
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, numInts * Integer.BYTES);
+            IntBuffer out = buffer.asIntBuffer();
+            out.put(MAGIC).put(VERSION).put(instance.numHospitals()).put(numResidents)
+                    .put((int) (fingerprint >>> 32)).put((int) fingerprint)
+                    .put(violations.length).put(queued.length).put(dirtyHospitals.length).put(dirtyResidents.length);
+            for (int r = 0; r < numResidents; r++) {
+                out.put(matching.getAssignedHospital(r));
+            }
+            for (int r = 0; r < numResidents; r++) {
+                out.put(matching.getRankProgress(r));
+            }
+            for (int r = 0; r < numResidents; r++) {
+                out.put(views.start(r));
+            }
+            for (int r = 0; r < numResidents; r++) {
+                out.put(views.locationFilter(r));
+            }
+            out.put(violations).put(queued).put(dirtyHospitals).put(dirtyResidents);
+            buffer.force();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        try {
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private int[] ints(IntBuffer in, int count, int min, int max) {
+        int[] values = new int[count];
+        in.get(values);
+        for (int value : values) {
+            checkArgument(value >= min && value <= max, "bad value %s in checkpoint %s", value, path);
+        }
+        return values;
+    }
+
+    // FNV-1a over everything a solve depends on
+    private static long fingerprint(Instance instance) {
+        long hash = 0xcbf29ce484222325L;
+        for (int h = 0; h < instance.numHospitals(); h++) {
+            hash = mix(hash, instance.locationOf(h));
+            hash = mix(hash, instance.capacityOf(h));
+        }
+        for (int r = 0; r < instance.numResidents(); r++) {
+            hash = mix(hash, instance.partnerOf(r));
+        }
+        for (PreferenceLists lists : new PreferenceLists[]{instance.hospitalPreferences(),
+                instance.residentPreferences()}) {
+            for (int o = 0; o < lists.size(); o++) {
+                hash = mix(hash, lists.end(o));
+            }
+            int[] members = lists.members();
+            for (int i = 0; i < lists.totalLength(); i++) {
+                hash = mix(hash, members[i]);
+            }
+        }
+        return hash;
+    }
+
+    private static long mix(long hash, int value) {
+        return (hash ^ value) * 0x100000001b3L;
+    }
+}
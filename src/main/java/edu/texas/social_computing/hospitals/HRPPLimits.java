@@ -0,0 +1,62 @@
+package edu.texas.social_computing.hospitals;
+
+import com.google.auto.value.AutoValue;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Bounds on HRPP's proximity repair loop, which is not guaranteed to end: couples can keep evicting each other.
+ * The limits are checked at the top of the loop, so the matching is left between iterations, with the non-dominant
+ * partners of the remaining violations unassigned. {@link Matching#getTermination()} tells which limit, if any,
+ * stopped the solve.
+ */
+@AutoValue
+public abstract class HRPPLimits {
+
+    /**
+     * No budgets, only cycle detection. Cycle detection is a heuristic (see {@link #isDetectingCycles()}), so it can
+     * stop a solve that would still have converged; turn it off to rule that out.
+     */
+    public static final HRPPLimits DEFAULT = builder().build();
+
+    public abstract long getMaxIterations();
+
+    /**
+     * @return how many proposals HRP may make within the repair loop before it stops, at the top of the next
+     * iteration, so the last iteration may go over. The initial HRP run is not counted.
+     */
+    public abstract long getMaxProposals();
+
+    /**
+     * @return whether to stop once the loop looks to be back in a state it was in before, by
+     * {@link Matching#getFingerprint()}. Brent's algorithm finds the cycle in time proportional to its length plus
+     * the iterations before it, with a single saved fingerprint. The fingerprint leaves out the order of the
+     * proximity violations and the unmatched queue, so this can mistake a state for one it only resembles.
+     */
+    public abstract boolean isDetectingCycles();
+
+    public static Builder builder() {
+        return new AutoValue_HRPPLimits.Builder()
+                .setMaxIterations(Long.MAX_VALUE)
+                .setMaxProposals(Long.MAX_VALUE)
+                .setDetectingCycles(true);
+    }
+
+    @AutoValue.Builder
+    public abstract static class Builder {
+        public abstract Builder setMaxIterations(long maxIterations);
+
+        public abstract Builder setMaxProposals(long maxProposals);
+
+        public abstract Builder setDetectingCycles(boolean detectingCycles);
+
+        abstract HRPPLimits autoBuild();
+
+        public HRPPLimits build() {
+            HRPPLimits limits = autoBuild();
+            checkArgument(limits.getMaxIterations() >= 0, "negative iteration budget %s", limits.getMaxIterations());
+            checkArgument(limits.getMaxProposals() >= 0, "negative proposal budget %s", limits.getMaxProposals());
+            return limits;
+        }
+    }
+}
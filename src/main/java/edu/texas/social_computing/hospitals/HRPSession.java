@@ -0,0 +1,80 @@
+package edu.texas.social_computing.hospitals;
+
+import java.util.Arrays;
+
+/**
+ * The state of one {@link HRP} run: how far each resident got down its acceptable hospitals, and the cutoff rank
+ * of each full hospital. A {@link Matching} keeps one session for every HRP run on it, which HRPP makes many of,
+ * so a run costs the residents and hospitals it touches instead of allocating and filling arrays over the whole
+ * instance. Each run still starts clean: {@link #reset()} undoes exactly the entries the run touched.
+ */
+final class HRPSession {
+
+    private final int[] nextChoice;
+    private final int[] cutoffRanks;
+    private final int[] touchedResidents;
+    private int touchedResidentCount;
+    private final boolean[] hospitalTouched;
+    private final int[] touchedHospitals;
+    private int touchedHospitalCount;
+    // over every run of the session, never reset
+    private long proposalCount;
+
+    HRPSession(int numResidents, int numHospitals) {
+        nextChoice = new int[numResidents];
+        touchedResidents = new int[numResidents];
+        cutoffRanks = new int[numHospitals];
+        Arrays.fill(cutoffRanks, Instance.UNRANKED);
+        hospitalTouched = new boolean[numHospitals];
+        touchedHospitals = new int[numHospitals];
+    }
+
+    /**
+     * @return the position in r's acceptable hospitals of the next one r has not applied to yet
+     */
+    int nextChoice(int r) {
+        return nextChoice[r];
+    }
+
+    void advance(int r) {
+        proposalCount++;
+        if (nextChoice[r]++ == 0) {
+            touchedResidents[touchedResidentCount++] = r;
+        }
+    }
+
+    /**
+     * @return the rank at and below which h deleted every pair, or {@link Instance#UNRANKED} if it deleted none
+     */
+    int cutoffRank(int h) {
+        return cutoffRanks[h];
+    }
+
+    void setCutoffRank(int h, int rank) {
+        if (!hospitalTouched[h]) {
+            hospitalTouched[h] = true;
+            touchedHospitals[touchedHospitalCount++] = h;
+        }
+        cutoffRanks[h] = rank;
+    }
+
+    /**
+     * @return the proposals of every run so far, one per {@link #advance}
+     */
+    long proposalCount() {
+        return proposalCount;
+    }
+
+    void reset() {
+        for (int i = 0; i < touchedResidentCount; i++) {
+            nextChoice[touchedResidents[i]] = 0;
+        }
+        touchedResidentCount = 0;
+        for (int i = 0; i < touchedHospitalCount; i++) {
+            int h = touchedHospitals[i];
+            cutoffRanks[h] = Instance.UNRANKED;
+            hospitalTouched[h] = false;
+        }
+        touchedHospitalCount = 0;
+    }
+}
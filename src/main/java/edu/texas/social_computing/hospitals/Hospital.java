@@ -14,38 +14,21 @@ public abstract class Hospital {
 
     public abstract int getCapacity();
 
-    public abstract ImmutableList<String> getPreferences();
+    /**
+     * @return the ids of the residents h ranks, best first. Immutable.
+     */
+    public abstract List<String> getPreferences();
 
     public static Hospital create(String id, int locationId, int capacity, Iterable<String> preferences) {
         return new AutoValue_Hospital(
                 id, locationId, capacity, ImmutableList.copyOf(preferences));
     }
 
-    // This currently includes a cheesy way to assign (probably) unique
-    // very poor ranks to unranked residents. This is a band-aid for
-    // getting ranks for residents that have a hospital on their
-    // preference list which does not have that resident on its list.
-    public int rankOf(Resident resident) {
-        return isRanked(resident)
-                ? getPreferences().indexOf(resident.getId())
-                : Integer.MAX_VALUE - stringToCharSum(resident.getId());
-    }
-
-    public boolean isRanked(Resident resident) {
-        return getPreferences().contains(resident.getId());
-    }
-
-    private static int stringToCharSum(String s) {
-        return s.chars().reduce((a, b) -> a + b).orElse(0);
-    }
-
     /**
-     * @param resident
-     * @return all residents in the preference list worse than provided resident
+     * Creates a {@link Hospital} whose preferences are a view over an {@link Instance}'s
+     * {@link PreferenceLists}, which the instance keeps anyway, instead of a list of its own.
      */
-    public List<String> getWorseThanIds(Resident resident) {
-        return getPreferences().contains(resident.getId())
-                ? getPreferences().subList(rankOf(resident) + 1, getPreferences().size())
-                : ImmutableList.of();
+    static Hospital view(String id, int locationId, int capacity, List<String> preferences) {
+        return new AutoValue_Hospital(id, locationId, capacity, preferences);
     }
 }
@@ -2,33 +2,73 @@ package edu.texas.social_computing.hospitals;
 
 import com.google.common.collect.ImmutableList;
 
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
 import static com.google.common.base.Preconditions.checkArgument;
 
+/**
+ * The hospitals of an instance, by id and by dense index. Immutable, so any number of solves can share it.
+ */
 public class HospitalTable {
 
-    private Map<String, Hospital> hospitalMap = new HashMap<>();
+    private final IdInterner hospitalIds;
+    private final ImmutableList<Hospital> hospitals;
 
     public static HospitalTable create(Iterable<Hospital> hospitals) {
-        return new HospitalTable(hospitals);
+        IdInterner hospitalIds = new IdInterner();
+        for (Hospital h : hospitals) {
+            checkArgument(hospitalIds.indexOf(h.getId()) == IdInterner.NOT_FOUND, "duplicate hospital %s", h.getId());
+            hospitalIds.intern(h.getId());
+        }
+        return new HospitalTable(hospitalIds, ImmutableList.copyOf(hospitals));
     }
 
-    private HospitalTable(Iterable<Hospital> hospitals) {
-        hospitals.forEach(this::add);
+    private HospitalTable(IdInterner hospitalIds, ImmutableList<Hospital> hospitals) {
+        this.hospitalIds = hospitalIds;
+        this.hospitals = hospitals;
     }
 
-    public void add(Hospital h) {
-        checkArgument(!hospitalMap.containsKey(h.getId()));
-        hospitalMap.put(h.getId(), h);
+    /**
+     * @return a copy of this table with some hospitals replaced by others with the same id. Shares the id index.
+     */
+    HospitalTable withReplaced(Map<Integer, Hospital> replacements) {
+        List<Hospital> copy = new ArrayList<>(hospitals);
+        replacements.forEach((h, hospital) -> {
+            checkArgument(hospital.getId().equals(copy.get(h).getId()));
+            copy.set(h, hospital);
+        });
+        return new HospitalTable(hospitalIds, ImmutableList.copyOf(copy));
     }
 
     public Hospital getHospitalById(String id) {
-        return hospitalMap.get(id);
+        int index = indexOf(id);
+        return index == IdInterner.NOT_FOUND ? null : hospitals.get(index);
     }
 
+    /**
+     * @return the hospital with the given dense index, see {@link #indexOf(String)}
+     */
+    public Hospital getHospital(int index) {
+        return hospitals.get(index);
+    }
+
+    /**
+     * @return the dense index of the hospital, or -1 if there is no such hospital
+     */
+    public int indexOf(String id) {
+        return hospitalIds.indexOf(id);
+    }
+
+    public int size() {
+        return hospitals.size();
+    }
+
+    /**
+     * @return all hospitals in index order
+     */
     public ImmutableList<Hospital> getAll() {
-        return ImmutableList.copyOf(hospitalMap.values());
+        return hospitals;
     }
 }
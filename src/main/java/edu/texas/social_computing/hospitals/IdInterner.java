@@ -0,0 +1,46 @@
+package edu.texas.social_computing.hospitals;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Hands out dense int indices (0, 1, 2, ...) for String ids in the order they are first seen. The tables use
+ * this so that the solvers can work on plain arrays instead of String keyed maps.
+ */
+final class IdInterner {
+
+    static final int NOT_FOUND = -1;
+
+    private final Map<String, Integer> indices = new HashMap<>();
+    private final List<String> ids = new ArrayList<>();
+
+    /**
+     * @return the index of the id, assigning the next free index if the id has not been seen before
+     */
+    int intern(String id) {
+        Integer index = indices.get(id);
+        if (index != null) {
+            return index;
+        }
+        indices.put(id, ids.size());
+        ids.add(id);
+        return ids.size() - 1;
+    }
+
+    /**
+     * @return the index of the id or {@link #NOT_FOUND}
+     */
+    int indexOf(String id) {
+        return indices.getOrDefault(id, NOT_FOUND);
+    }
+
+    String idOf(int index) {
+        return ids.get(index);
+    }
+
+    int size() {
+        return ids.size();
+    }
+}
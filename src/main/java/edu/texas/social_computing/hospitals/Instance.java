@@ -0,0 +1,336 @@
+package edu.texas.social_computing.hospitals;
+
+import com.google.common.collect.Lists;
+import com.google.common.primitives.Ints;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.function.IntFunction;
+import java.util.function.IntPredicate;
+import java.util.function.ToIntFunction;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Integer indexed view of a {@link HospitalTable} and {@link ResidentTable}. Every hospital and resident is
+ * referred to by its dense table index, and preference lists and partners are resolved to those indices once
+ * up front, so the solvers never have to hash a String id. Ranks in either direction are answered in constant
+ * time from precomputed {@link RankIndex} tables.
+ * <p>
+ * Preference lists are kept in {@link PreferenceLists}, two flat arrays per side rather than an array per
+ * hospital and resident. An instance built from ids and index arrays (by the importers, snapshots and the
+ * generator) backs its hospitals' and residents' String preference lists by those same arrays.
+ * <p>
+ * Immutable, tables included: whatever a solve changes lives in its {@link Matching}, so one instance can be
+ * shared by any number of solves, also concurrently.
+ */
+public final class Instance {
+
+    public static final int NONE = -1;
+    public static final int UNRANKED = RankIndex.UNRANKED;
+
+    private final HospitalTable hospitalTable;
+    private final ResidentTable residentTable;
+
+    private final int[] locations;
+    private final int[] capacities;
+    private final PreferenceLists hospitalPreferences;
+    private final PreferenceLists residentPreferences;
+    private final int[] partners;
+    private final RankIndex hospitalRanks;
+    private final RankIndex residentRanks;
+    // mutual acceptability: the part of each list whose members also list the owner
+    private final PreferenceLists acceptableHospitals;
+    private final PreferenceLists acceptableResidents;
+
+    public static Instance create(HospitalTable hospitalTable, ResidentTable residentTable) {
+        PreferenceLists hospitalPreferences = toIndices(hospitalTable.size(),
+                h -> hospitalTable.getHospital(h).getId(), h -> hospitalTable.getHospital(h).getPreferences(),
+                residentTable::indexOf, "resident");
+        PreferenceLists residentPreferences = toIndices(residentTable.size(),
+                r -> residentTable.getResident(r).getId(), r -> residentTable.getResident(r).getInitialPreferences(),
+                hospitalTable::indexOf, "hospital");
+
+        int numResidents = residentTable.size();
+        int[] partners = new int[numResidents];
+        for (int r = 0; r < numResidents; r++) {
+            Resident resident = residentTable.getResident(r);
+            partners[r] = NONE;
+            if (resident.hasPartner()) {
+                partners[r] = residentTable.indexOf(resident.getPartnerId());
+                checkArgument(partners[r] != NONE,
+                        "unknown partner %s of resident %s", resident.getPartnerId(), resident.getId());
+            }
+        }
+        return new Instance(hospitalTable, residentTable, hospitalPreferences, residentPreferences, partners);
+    }
+
+    /**
+     * Creates an instance from preferences and partners that were already resolved to table indices, e.g. by an
+     * importer that validated them while loading. The arrays are used as is and must not be modified afterwards.
+     */
+    static Instance create(HospitalTable hospitalTable, ResidentTable residentTable,
+                           PreferenceLists hospitalPreferences, PreferenceLists residentPreferences, int[] partners) {
+        checkArgument(hospitalPreferences.size() == hospitalTable.size()
+                && residentPreferences.size() == residentTable.size()
+                && partners.length == residentTable.size());
+        return new Instance(hospitalTable, residentTable, hospitalPreferences, residentPreferences, partners);
+    }
+
+    /**
+     * Creates an instance, and the tables behind it, from ids and index resolved arrays. Hospital h has id
+     * hospitalIds.get(h) and so on; the tables share the given id Strings, and the hospitals' and residents'
+     * preferences are views over the given lists. The arrays are used as is and must not be modified afterwards.
+     */
+    static Instance create(List<String> hospitalIds, int[] locations, int[] capacities,
+                           PreferenceLists hospitalPreferences, List<String> residentIds,
+                           PreferenceLists residentPreferences, int[] partners) {
+        List<Hospital> hospitals = new ArrayList<>(hospitalIds.size());
+        for (int h = 0; h < hospitalIds.size(); h++) {
+            hospitals.add(Hospital.view(hospitalIds.get(h), locations[h], capacities[h],
+                    hospitalPreferences.ids(h, residentIds)));
+        }
+        List<Resident> residents = new ArrayList<>(residentIds.size());
+        for (int r = 0; r < residentIds.size(); r++) {
+            residents.add(Resident.view(residentIds.get(r), partners[r] == NONE ? null : residentIds.get(partners[r]),
+                    residentPreferences.ids(r, hospitalIds)));
+        }
+        return create(HospitalTable.create(hospitals), ResidentTable.create(residents),
+                hospitalPreferences, residentPreferences, partners);
+    }
+
+    private static PreferenceLists toIndices(int numOwners, IntFunction<String> ownerId,
+                                             IntFunction<List<String>> ids, ToIntFunction<String> indexOf,
+                                             String kind) {
+        int[] offsets = new int[numOwners + 1];
+        for (int o = 0; o < numOwners; o++) {
+            offsets[o + 1] = offsets[o] + ids.apply(o).size();
+        }
+        int[] members = new int[offsets[numOwners]];
+        for (int o = 0; o < numOwners; o++) {
+            List<String> list = ids.apply(o);
+            for (int i = 0; i < list.size(); i++) {
+                int member = indexOf.applyAsInt(list.get(i));
+                checkArgument(member != NONE, "unknown %s %s in preferences of %s", kind, list.get(i),
+                        ownerId.apply(o));
+                members[offsets[o] + i] = member;
+            }
+        }
+        return PreferenceLists.of(offsets, members);
+    }
+
+    /**
+     * Derives the instance after a few changes, sharing everything the changes do not touch: only the changed
+     * residents' rank and acceptability entries, and the acceptability lists of the hospitals their old and new
+     * lists name, are recomputed. Lists are stored flat, so changed lists cost a copy of the flat arrays, and
+     * the small arrays and the table lists are copied too.
+     *
+     * @param newCapacities  hospital index to its new capacity
+     * @param newPreferences resident index to its new preference list, hospital indices best first
+     * @param newPartners    resident index to its new partner or {@link #NONE}. Must stay symmetric.
+     */
+    Instance withChanges(Map<Integer, Integer> newCapacities, Map<Integer, int[]> newPreferences,
+                         Map<Integer, Integer> newPartners) {
+        int[] capacities = this.capacities.clone();
+        Map<Integer, Hospital> changedHospitals = new HashMap<>();
+        newCapacities.forEach((h, capacity) -> {
+            checkArgument(capacity >= 0, "negative capacity %s for hospital %s", capacity, hospital(h).getId());
+            capacities[h] = capacity;
+            Hospital hospital = hospital(h);
+            changedHospitals.put(h, Hospital.view(hospital.getId(), hospital.getLocationId(), capacity,
+                    hospital.getPreferences()));
+        });
+
+        PreferenceLists residentPreferences = newPreferences.isEmpty()
+                ? this.residentPreferences
+                : this.residentPreferences.withReplaced(newPreferences);
+        int[] partners = this.partners.clone();
+        newPartners.forEach((r, partner) -> partners[r] = partner);
+        for (int r : newPartners.keySet()) {
+            checkArgument(partners[r] == NONE || partners[partners[r]] == r,
+                    "partner of %s does not have it as partner", resident(r).getId());
+        }
+
+        SortedSet<Integer> changedResidents = new TreeSet<>(newPreferences.keySet());
+        changedResidents.addAll(newPartners.keySet());
+        List<String> hospitalIds = Lists.transform(hospitalTable.getAll(), Hospital::getId);
+        Map<Integer, Resident> replacedResidents = new HashMap<>();
+        for (int r : changedResidents) {
+            List<String> preferences = newPreferences.containsKey(r)
+                    ? residentPreferences.ids(r, hospitalIds)
+                    : resident(r).getInitialPreferences();
+            replacedResidents.put(r, Resident.view(resident(r).getId(),
+                    partners[r] == NONE ? null : resident(partners[r]).getId(), preferences));
+        }
+
+        RankIndex residentRanks = newPreferences.isEmpty()
+                ? this.residentRanks
+                : this.residentRanks.withOwners(Ints.toArray(newPreferences.keySet()), residentPreferences);
+
+        Map<Integer, int[]> newAcceptableHospitals = new HashMap<>();
+        Set<Integer> affectedHospitals = new HashSet<>();
+        newPreferences.forEach((r, list) -> {
+            newAcceptableHospitals.put(r, filter(list, h -> isRanked(h, r)));
+            affectedHospitals.addAll(Ints.asList(this.residentPreferences.toArray(r)));
+            affectedHospitals.addAll(Ints.asList(list));
+        });
+        Map<Integer, int[]> newAcceptableResidents = new HashMap<>();
+        for (int h : affectedHospitals) {
+            newAcceptableResidents.put(h, filter(hospitalPreferences.toArray(h),
+                    r -> residentRanks.rankOf(r, h) != UNRANKED));
+        }
+        return new Instance(hospitalTable.withReplaced(changedHospitals),
+                residentTable.withReplaced(replacedResidents), locations, capacities, hospitalPreferences,
+                residentPreferences, partners, hospitalRanks, residentRanks,
+                newAcceptableHospitals.isEmpty()
+                        ? acceptableHospitals : acceptableHospitals.withReplaced(newAcceptableHospitals),
+                newAcceptableResidents.isEmpty()
+                        ? acceptableResidents : acceptableResidents.withReplaced(newAcceptableResidents));
+    }
+
+    private static int[] filter(int[] list, IntPredicate keep) {
+        return Ints.asList(list).stream().mapToInt(Integer::intValue).filter(keep).toArray();
+    }
+
+    private Instance(HospitalTable hospitalTable, ResidentTable residentTable, int[] locations, int[] capacities,
+                     PreferenceLists hospitalPreferences, PreferenceLists residentPreferences, int[] partners,
+                     RankIndex hospitalRanks, RankIndex residentRanks,
+                     PreferenceLists acceptableHospitals, PreferenceLists acceptableResidents) {
+        this.hospitalTable = hospitalTable;
+        this.residentTable = residentTable;
+        this.locations = locations;
+        this.capacities = capacities;
+        this.hospitalPreferences = hospitalPreferences;
+        this.residentPreferences = residentPreferences;
+        this.partners = partners;
+        this.hospitalRanks = hospitalRanks;
+        this.residentRanks = residentRanks;
+        this.acceptableHospitals = acceptableHospitals;
+        this.acceptableResidents = acceptableResidents;
+    }
+
+    private Instance(HospitalTable hospitalTable, ResidentTable residentTable,
+                     PreferenceLists hospitalPreferences, PreferenceLists residentPreferences, int[] partners) {
+        this.hospitalTable = hospitalTable;
+        this.residentTable = residentTable;
+        this.hospitalPreferences = hospitalPreferences;
+        this.residentPreferences = residentPreferences;
+        this.partners = partners;
+
+        int numHospitals = hospitalTable.size();
+        locations = new int[numHospitals];
+        capacities = new int[numHospitals];
+        for (int h = 0; h < numHospitals; h++) {
+            Hospital hospital = hospitalTable.getHospital(h);
+            locations[h] = hospital.getLocationId();
+            capacities[h] = hospital.getCapacity();
+        }
+
+        hospitalRanks = RankIndex.of(hospitalPreferences);
+        residentRanks = RankIndex.of(residentPreferences);
+
+        // filter shares the lists themselves when every entry passes, which is the norm for consistent input
+        acceptableHospitals = residentPreferences.filter((r, h) -> isRanked(h, r));
+        acceptableResidents = hospitalPreferences.filter((h, r) -> residentRankOf(r, h) != UNRANKED);
+    }
+
+    public HospitalTable getHospitalTable() {
+        return hospitalTable;
+    }
+
+    public ResidentTable getResidentTable() {
+        return residentTable;
+    }
+
+    public int numHospitals() {
+        return locations.length;
+    }
+
+    public int numResidents() {
+        return partners.length;
+    }
+
+    public Hospital hospital(int h) {
+        return hospitalTable.getHospital(h);
+    }
+
+    public Resident resident(int r) {
+        return residentTable.getResident(r);
+    }
+
+    public int hospitalIndexOf(Hospital hospital) {
+        return hospitalTable.indexOf(hospital.getId());
+    }
+
+    public int residentIndexOf(Resident resident) {
+        return residentTable.indexOf(resident.getId());
+    }
+
+    public int locationOf(int h) {
+        return locations[h];
+    }
+
+    public int capacityOf(int h) {
+        return capacities[h];
+    }
+
+    /**
+     * @return every hospital's list of resident indices, best first
+     */
+    PreferenceLists hospitalPreferences() {
+        return hospitalPreferences;
+    }
+
+    /**
+     * @return every resident's initial list of hospital indices, best first
+     */
+    PreferenceLists residentPreferences() {
+        return residentPreferences;
+    }
+
+    /**
+     * @return for every resident, the hospitals in its initial preference list that also rank it, best first
+     */
+    PreferenceLists acceptableHospitals() {
+        return acceptableHospitals;
+    }
+
+    /**
+     * @return for every hospital, the residents in its preference list that also list it, best first
+     */
+    PreferenceLists acceptableResidents() {
+        return acceptableResidents;
+    }
+
+    public int partnerOf(int r) {
+        return partners[r];
+    }
+
+    public boolean hasPartner(int r) {
+        return partners[r] != NONE;
+    }
+
+    public boolean isRanked(int h, int r) {
+        return hospitalRanks.rankOf(h, r) != UNRANKED;
+    }
+
+    /**
+     * @return the position of r in h's preference list, or {@link #UNRANKED} if h did not rank r
+     */
+    public int hospitalRankOf(int h, int r) {
+        return hospitalRanks.rankOf(h, r);
+    }
+
+    /**
+     * @return the position of h in r's initial preference list, or {@link #UNRANKED} if r did not rank h
+     */
+    public int residentRankOf(int r, int h) {
+        return residentRanks.rankOf(r, h);
+    }
+}
@@ -0,0 +1,376 @@
+package edu.texas.social_computing.hospitals;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Seeded generator of random instances, see {@link GeneratorConfig} for the knobs.
+ * <p>
+ * Every random choice is a pure function of the seed and the hospital or resident it is for, so any resident's
+ * preference list can be regenerated on demand. That is what lets {@link #writeCsv(Path, Path)} stream instances
+ * with millions of residents: residents are written one at a time, and hospitals (which rank the residents that
+ * listed them) are written in blocks, each block regenerating the resident lists and keeping only the entries
+ * for its own hospitals. Memory stays within O(hospitals + residents + maxBufferedEntries).
+ * <p>
+ * Residents pick hospitals with a popularity bias: with probability correlation a pick follows a Zipf
+ * distribution over a random popularity order, otherwise it is uniform. The picks are ordered, and hospitals
+ * order their applicants, by a mix of a shared score (hospital popularity, resident strength) and individual
+ * noise weighted by correlation. Capacities are uniform or follow the same Zipf law over the capacity range, see
+ * {@link GeneratorConfig.CapacityDistribution}.
+ */
+public final class InstanceGenerator {
+
+    private static final int DEFAULT_MAX_BUFFERED_ENTRIES = 1 << 24;
+
+    private final GeneratorConfig config;
+    private final int maxBufferedEntries;
+    // popularity[h] in (0, 1], the shared part of every resident's score for h
+    private final double[] popularity;
+    // cumulative Zipf weights over hospitals in popularity order, and that order
+    private final double[] cumulativeWeights;
+    private final int[] byPopularity;
+    // cumulative Zipf weights over the capacity range, null unless capacities follow them
+    private final double[] cumulativeCapacityWeights;
+
+    public InstanceGenerator(GeneratorConfig config) {
+        this(config, DEFAULT_MAX_BUFFERED_ENTRIES);
+    }
+
+    /**
+     * @param maxBufferedEntries how many hospital preference entries {@link #writeCsv(Path, Path)} may hold at
+     *                           once. Fewer means more passes over the residents.
+     */
+    public InstanceGenerator(GeneratorConfig config, int maxBufferedEntries) {
+        checkArgument(maxBufferedEntries > 0);
+        this.config = config;
+        this.maxBufferedEntries = maxBufferedEntries;
+
+        int numHospitals = config.getNumHospitals();
+        byPopularity = new int[numHospitals];
+        for (int h = 0; h < numHospitals; h++) {
+            byPopularity[h] = h;
+        }
+        SplittableRandom random = new SplittableRandom(config.getSeed());
+        for (int i = numHospitals - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int swap = byPopularity[i];
+            byPopularity[i] = byPopularity[j];
+            byPopularity[j] = swap;
+        }
+        popularity = new double[numHospitals];
+        for (int i = 0; i < numHospitals; i++) {
+            popularity[byPopularity[i]] = 1 - (double) i / numHospitals;
+        }
+        cumulativeWeights = cumulativeZipfWeights(numHospitals);
+        cumulativeCapacityWeights = config.getCapacityDistribution() == GeneratorConfig.CapacityDistribution.ZIPF
+                ? cumulativeZipfWeights(config.getMaxCapacity() - config.getMinCapacity() + 1)
+                : null;
+    }
+
+    public GeneratorConfig getConfig() {
+        return config;
+    }
+
+    /**
+     * @return the whole instance in memory
+     */
+    public Instance generate() {
+        int numHospitals = config.getNumHospitals();
+        int numResidents = config.getNumResidents();
+
+        List<String> hospitalIds = new ArrayList<>(numHospitals);
+        int[] locations = new int[numHospitals];
+        int[] capacities = new int[numHospitals];
+        for (int h = 0; h < numHospitals; h++) {
+            hospitalIds.add(hospitalId(h));
+            locations[h] = locationOf(h);
+            capacities[h] = capacityOf(h);
+        }
+
+        List<String> residentIds = new ArrayList<>(numResidents);
+        int[] offsets = new int[numResidents + 1];
+        int[] members = new int[numResidents];
+        int[] partners = new int[numResidents];
+        int[] numApplicants = new int[numHospitals];
+        for (int r = 0; r < numResidents; r++) {
+            residentIds.add(residentId(r));
+            int[] preferences = residentPreferences(r);
+            if (offsets[r] + preferences.length > members.length) {
+                members = Arrays.copyOf(members, Math.max(offsets[r] + preferences.length, members.length * 2));
+            }
+            System.arraycopy(preferences, 0, members, offsets[r], preferences.length);
+            offsets[r + 1] = offsets[r] + preferences.length;
+            partners[r] = partnerOf(r);
+            for (int h : preferences) {
+                numApplicants[h]++;
+            }
+        }
+        PreferenceLists residentPreferences =
+                PreferenceLists.of(offsets, Arrays.copyOf(members, offsets[numResidents]));
+
+        long[][] applicants = new long[numHospitals][];
+        for (int h = 0; h < numHospitals; h++) {
+            applicants[h] = new long[numApplicants[h]];
+            numApplicants[h] = 0;
+        }
+        for (int r = 0; r < numResidents; r++) {
+            for (int i = residentPreferences.start(r); i < residentPreferences.end(r); i++) {
+                int h = residentPreferences.members()[i];
+                applicants[h][numApplicants[h]++] = applicantKey(h, r);
+            }
+        }
+        int[][] hospitalPreferences = new int[numHospitals][];
+        for (int h = 0; h < numHospitals; h++) {
+            hospitalPreferences[h] = rankApplicants(applicants[h]);
+        }
+        return Instance.create(hospitalIds, locations, capacities, PreferenceLists.of(hospitalPreferences),
+                residentIds, residentPreferences, partners);
+    }
+
+    /**
+     * Streams the instance to a CSV pair {@link FileImporter} reads.
+     */
+    public void writeCsv(Path hospitalsFile, Path residentsFile) throws IOException {
+        int numHospitals = config.getNumHospitals();
+        int numResidents = config.getNumResidents();
+        int[] numApplicants = new int[numHospitals];
+
+        try (Writer out = newWriter(residentsFile)) {
+            StringBuilder line = new StringBuilder();
+            for (int r = 0; r < numResidents; r++) {
+                int[] preferences = residentPreferences(r);
+                for (int h : preferences) {
+                    numApplicants[h]++;
+                }
+                line.setLength(0);
+                line.append(residentId(r)).append(',');
+                appendIds(line, preferences, 'H');
+                line.append(',').append(partnerOf(r) == Instance.NONE ? "none" : residentId(partnerOf(r)));
+                out.append(line).append('\n');
+            }
+        }
+
+        try (Writer out = newWriter(hospitalsFile)) {
+            StringBuilder line = new StringBuilder();
+            int first = 0;
+            while (first < numHospitals) {
+                // hospitals [first, end) fit in the buffer, or it is a single hospital too big to split
+                int end = first;
+                long entries = 0;
+                while (end < numHospitals && (end == first || entries + numApplicants[end] <= maxBufferedEntries)) {
+                    entries += numApplicants[end++];
+                }
+                long[][] applicants = new long[end - first][];
+                int[] sizes = new int[end - first];
+                for (int h = first; h < end; h++) {
+                    applicants[h - first] = new long[numApplicants[h]];
+                }
+                for (int r = 0; r < numResidents; r++) {
+                    for (int h : residentPreferences(r)) {
+                        if (h >= first && h < end) {
+                            applicants[h - first][sizes[h - first]++] = applicantKey(h, r);
+                        }
+                    }
+                }
+                for (int h = first; h < end; h++) {
+                    line.setLength(0);
+                    line.append(hospitalId(h)).append(',')
+                            .append(locationOf(h)).append(',')
+                            .append(capacityOf(h)).append(',');
+                    appendIds(line, rankApplicants(applicants[h - first]), 'R');
+                    out.append(line).append('\n');
+                    applicants[h - first] = null;
+                }
+                first = end;
+            }
+        }
+    }
+
+    /**
+     * Generates an instance into a CSV pair named like the bundled ones:
+     * {@code <directory> <seed> <hospitals> <locations> <residents> <couples> [listLength minCapacity maxCapacity
+     * correlation [UNIFORM|ZIPF]]}
+     */
+    public static void main(String[] args) throws IOException {
+        checkArgument(args.length == 6 || args.length == 10 || args.length == 11,
+                "usage: InstanceGenerator <directory> <seed> <hospitals> <locations> <residents> <couples>"
+                        + " [listLength minCapacity maxCapacity correlation [UNIFORM|ZIPF]]");
+        GeneratorConfig.Builder builder = GeneratorConfig.builder()
+                .setSeed(Long.parseLong(args[1]))
+                .setNumHospitals(Integer.parseInt(args[2]))
+                .setNumLocations(Integer.parseInt(args[3]))
+                .setNumResidents(Integer.parseInt(args[4]))
+                .setNumCouples(Integer.parseInt(args[5]));
+        if (args.length >= 10) {
+            builder.setListLength(Integer.parseInt(args[6]))
+                    .setMinCapacity(Integer.parseInt(args[7]))
+                    .setMaxCapacity(Integer.parseInt(args[8]))
+                    .setCorrelation(Double.parseDouble(args[9]));
+            if (args.length == 11) {
+                builder.setCapacityDistribution(GeneratorConfig.CapacityDistribution.valueOf(args[10]));
+            }
+        } else {
+            builder.setListLength(Math.min(15, Integer.parseInt(args[2])));
+        }
+        GeneratorConfig config = builder.build();
+        Path directory = Paths.get(args[0]);
+        Files.createDirectories(directory);
+        Path hospitalsFile = directory.resolve(config.getName() + "_hospitals.csv");
+        Path residentsFile = directory.resolve(config.getName() + "_residents.csv");
+        new InstanceGenerator(config).writeCsv(hospitalsFile, residentsFile);
+        System.out.println("wrote " + hospitalsFile + " and " + residentsFile);
+    }
+
+    static String hospitalId(int h) {
+        return "H" + h;
+    }
+
+    static String residentId(int r) {
+        return "R" + r;
+    }
+
+    private int locationOf(int h) {
+        return new SplittableRandom(mix(config.getSeed(), 1, h)).nextInt(config.getNumLocations());
+    }
+
+    private int capacityOf(int h) {
+        SplittableRandom random = new SplittableRandom(mix(config.getSeed(), 2, h));
+        if (cumulativeCapacityWeights == null) {
+            return config.getMinCapacity() + random.nextInt(config.getMaxCapacity() - config.getMinCapacity() + 1);
+        }
+        return config.getMinCapacity() + pick(cumulativeCapacityWeights, random.nextDouble());
+    }
+
+    private int partnerOf(int r) {
+        return r < 2 * config.getNumCouples() ? r ^ 1 : Instance.NONE;
+    }
+
+    /**
+     * @return r's preference list, best first. The same on every call.
+     */
+    int[] residentPreferences(int r) {
+        SplittableRandom random = new SplittableRandom(mix(config.getSeed(), 3, r));
+        int numHospitals = config.getNumHospitals();
+        int listLength = config.getListLength();
+        double correlation = config.getCorrelation();
+
+        int[] picks;
+        if (2L * listLength > numHospitals) {
+            // rejection sampling would crawl, rank every hospital instead
+            picks = new int[numHospitals];
+            for (int h = 0; h < numHospitals; h++) {
+                picks[h] = h;
+            }
+        } else {
+            picks = new int[listLength];
+            int size = 0;
+            while (size < listLength) {
+                int h = random.nextDouble() < correlation ? pickByPopularity(random) : random.nextInt(numHospitals);
+                if (!contains(picks, size, h)) {
+                    picks[size++] = h;
+                }
+            }
+        }
+
+        // order by descending score, tie broken by hospital index
+        long[] keys = new long[picks.length];
+        for (int i = 0; i < picks.length; i++) {
+            double score = correlation * popularity[picks[i]] + (1 - correlation) * random.nextDouble();
+            keys[i] = sortKey(score, picks[i]);
+        }
+        Arrays.sort(keys);
+        int[] preferences = new int[listLength];
+        for (int i = 0; i < listLength; i++) {
+            preferences[i] = (int) keys[i];
+        }
+        return preferences;
+    }
+
+    private long applicantKey(int h, int r) {
+        double correlation = config.getCorrelation();
+        double strength = unit(mix(config.getSeed(), 4, r));
+        double noise = unit(mix(mix(config.getSeed(), 5, h), 6, r));
+        return sortKey(correlation * strength + (1 - correlation) * noise, r);
+    }
+
+    private static int[] rankApplicants(long[] keys) {
+        Arrays.sort(keys);
+        int[] residents = new int[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            residents[i] = (int) keys[i];
+        }
+        return residents;
+    }
+
+    private int pickByPopularity(SplittableRandom random) {
+        return byPopularity[pick(cumulativeWeights, random.nextDouble())];
+    }
+
+    // weight 1 / (i + 1) for i in [0, n), summed up
+    private static double[] cumulativeZipfWeights(int n) {
+        double[] cumulative = new double[n];
+        double total = 0;
+        for (int i = 0; i < n; i++) {
+            total += 1.0 / (i + 1);
+            cumulative[i] = total;
+        }
+        return cumulative;
+    }
+
+    // i with probability proportional to its weight, for a uniform unit in [0, 1)
+    private static int pick(double[] cumulativeWeights, double unit) {
+        double target = unit * cumulativeWeights[cumulativeWeights.length - 1];
+        int i = Arrays.binarySearch(cumulativeWeights, target);
+        return Math.min(i < 0 ? -i - 1 : i, cumulativeWeights.length - 1);
+    }
+
+    // ascending keys are descending scores in [0, 1]; non-negative float bits order like the floats
+    private static long sortKey(double score, int index) {
+        return ((long) Float.floatToIntBits((float) (1 - score)) << 32) | index;
+    }
+
+    private static boolean contains(int[] values, int size, int value) {
+        for (int i = 0; i < size; i++) {
+            if (values[i] == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void appendIds(StringBuilder line, int[] indices, char prefix) {
+        for (int i = 0; i < indices.length; i++) {
+            if (i > 0) {
+                line.append(' ');
+            }
+            line.append(prefix).append(indices[i]);
+        }
+    }
+
+    private static Writer newWriter(Path path) throws IOException {
+        return new BufferedWriter(Files.newBufferedWriter(path, StandardCharsets.UTF_8), 1 << 16);
+    }
+
+    // a well mixed seed per (seed, stream, index), so every choice has its own independent generator
+    private static long mix(long seed, int stream, int index) {
+        long z = seed * 0x9E3779B97F4A7C15L + ((long) stream << 32 | (index & 0xFFFFFFFFL));
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    private static double unit(long bits) {
+        return (mix(bits, 0, 0) >>> 11) * 0x1.0p-53;
+    }
+}
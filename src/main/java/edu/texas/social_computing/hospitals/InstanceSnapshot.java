@@ -0,0 +1,264 @@
+package edu.texas.social_computing.hospitals;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Binary snapshot of a whole {@link Instance}, so an instance parsed from CSV once can be reloaded in
+ * milliseconds. Everything is big endian ints:
+ * <pre>
+ * header:   MAGIC, VERSION, numHospitals, numResidents,
+ *           hospitalIdBytes, residentIdBytes, numHospitalPreferences, numResidentPreferences
+ * hospital ids:         offsets[numHospitals + 1], then hospitalIdBytes of UTF-8, padded to a multiple of 4
+ * resident ids:         offsets[numResidents + 1], then residentIdBytes of UTF-8, padded to a multiple of 4
+ * locations[numHospitals], capacities[numHospitals]
+ * hospital preferences: offsets[numHospitals + 1], resident indices[numHospitalPreferences]
+ * resident preferences: offsets[numResidents + 1], hospital indices[numResidentPreferences]
+ * partners[numResidents], -1 for none
+ * </pre>
+ * Preferences are CSR: the list of hospital h is indices[offsets[h], offsets[h + 1]).
+ */
+public final class InstanceSnapshot {
+
+    static final int MAGIC = 0x48525053; // "HRPS"
+    static final int VERSION = 1;
+    private static final int HEADER_INTS = 8;
+    private static final int WRITE_BUFFER_BYTES = 1 << 16;
+
+    private InstanceSnapshot() {
+    }
+
+    public static void write(Instance instance, Path path) throws IOException {
+        int numHospitals = instance.numHospitals();
+        int numResidents = instance.numResidents();
+        byte[][] hospitalIds = new byte[numHospitals][];
+        for (int h = 0; h < numHospitals; h++) {
+            hospitalIds[h] = instance.hospital(h).getId().getBytes(StandardCharsets.UTF_8);
+        }
+        byte[][] residentIds = new byte[numResidents][];
+        for (int r = 0; r < numResidents; r++) {
+            residentIds[r] = instance.resident(r).getId().getBytes(StandardCharsets.UTF_8);
+        }
+        PreferenceLists hospitalPreferences = instance.hospitalPreferences();
+        PreferenceLists residentPreferences = instance.residentPreferences();
+
+        try (FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            Writer out = new Writer(channel);
+            out.putInt(MAGIC);
+            out.putInt(VERSION);
+            out.putInt(numHospitals);
+            out.putInt(numResidents);
+            out.putInt(totalLength(hospitalIds));
+            out.putInt(totalLength(residentIds));
+            out.putInt(hospitalPreferences.totalLength());
+            out.putInt(residentPreferences.totalLength());
+            out.putStrings(hospitalIds);
+            out.putStrings(residentIds);
+            for (int h = 0; h < numHospitals; h++) {
+                out.putInt(instance.locationOf(h));
+            }
+            for (int h = 0; h < numHospitals; h++) {
+                out.putInt(instance.capacityOf(h));
+            }
+            out.putCsr(hospitalPreferences);
+            out.putCsr(residentPreferences);
+            for (int r = 0; r < numResidents; r++) {
+                out.putInt(instance.partnerOf(r));
+            }
+            out.flush();
+        }
+    }
+
+    /**
+     * Memory-maps a snapshot and builds the instance and its tables from it.
+     *
+     * @throws IllegalArgumentException if the file is not a snapshot of a supported version, has negative counts,
+     *                                  refers to hospitals or residents out of range or pairs partners one-sidedly
+     */
+    public static Instance load(Path path) throws FileNotFoundException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            Reader in = new Reader(channel);
+            int[] header = in.ints(HEADER_INTS);
+            checkArgument(header[0] == MAGIC, "%s is not an instance snapshot", path);
+            checkArgument(header[1] == VERSION, "unsupported snapshot version %s in %s", header[1], path);
+            for (int i = 2; i < HEADER_INTS; i++) {
+                checkArgument(header[i] >= 0, "negative count in the header of %s", path);
+            }
+            int numHospitals = header[2];
+            int numResidents = header[3];
+
+            List<String> hospitalIds = in.strings(numHospitals, header[4], path);
+            List<String> residentIds = in.strings(numResidents, header[5], path);
+            int[] locations = in.ints(numHospitals);
+            int[] capacities = in.ints(numHospitals);
+            PreferenceLists hospitalPreferences = in.csr(numHospitals, header[6], numResidents, path);
+            PreferenceLists residentPreferences = in.csr(numResidents, header[7], numHospitals, path);
+            int[] partners = in.ints(numResidents);
+            for (int partner : partners) {
+                checkArgument(partner >= Instance.NONE && partner < numResidents, "bad partner in %s", path);
+            }
+            for (int r = 0; r < numResidents; r++) {
+                checkArgument(partners[r] == Instance.NONE || (partners[r] != r && partners[partners[r]] == r),
+                        "partners of %s and %s in %s do not match", r, partners[r], path);
+            }
+            return Instance.create(hospitalIds, locations, capacities, hospitalPreferences,
+                    residentIds, residentPreferences, partners);
+        } catch (NoSuchFileException e) {
+            throw new FileNotFoundException(path.toString());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Converts a CSV pair to a snapshot: {@code <hospitals.csv> <residents.csv> <snapshot>}
+     */
+    public static void main(String[] args) throws IOException {
+        checkArgument(args.length == 3, "usage: InstanceSnapshot <hospitals.csv> <residents.csv> <snapshot>");
+        Instance instance = FileImporter.importInstance(args[0], args[1]);
+        write(instance, Paths.get(args[2]));
+        System.out.println("wrote " + instance.numHospitals() + " hospitals and "
+                + instance.numResidents() + " residents to " + args[2]);
+    }
+
+    private static int totalLength(byte[][] arrays) {
+        long total = 0;
+        for (byte[] array : arrays) {
+            total += array.length;
+        }
+        return Math.toIntExact(total);
+    }
+
+    private static int padding(int numBytes) {
+        return -numBytes & 3;
+    }
+
+    private static final class Writer {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER_BYTES);
+
+        Writer(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        void putInt(int value) throws IOException {
+            if (buffer.remaining() < Integer.BYTES) {
+                flush();
+            }
+            buffer.putInt(value);
+        }
+
+        void putBytes(byte[] bytes) throws IOException {
+            for (int i = 0; i < bytes.length; ) {
+                if (!buffer.hasRemaining()) {
+                    flush();
+                }
+                int length = Math.min(buffer.remaining(), bytes.length - i);
+                buffer.put(bytes, i, length);
+                i += length;
+            }
+        }
+
+        void putStrings(byte[][] strings) throws IOException {
+            int offset = 0;
+            putInt(offset);
+            for (byte[] string : strings) {
+                offset += string.length;
+                putInt(offset);
+            }
+            for (byte[] string : strings) {
+                putBytes(string);
+            }
+            putBytes(new byte[padding(offset)]);
+        }
+
+        void putCsr(PreferenceLists lists) throws IOException {
+            putInt(0);
+            for (int o = 0; o < lists.size(); o++) {
+                putInt(lists.end(o));
+            }
+            int[] members = lists.members();
+            for (int i = 0; i < lists.totalLength(); i++) {
+                putInt(members[i]);
+            }
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+
+    // maps each section on its own, so no single mapping has to cover a file over 2GB
+    private static final class Reader {
+        private final FileChannel channel;
+        private long position;
+
+        Reader(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        int[] ints(int count) throws IOException {
+            // map first, so a count past the end of the file fails before the array is allocated
+            IntBuffer buffer = map((long) count * Integer.BYTES).asIntBuffer();
+            int[] values = new int[count];
+            buffer.get(values);
+            return values;
+        }
+
+        List<String> strings(int count, int numBytes, Path path) throws IOException {
+            int[] offsets = ints(count + 1);
+            checkOffsets(offsets, numBytes, path);
+            ByteBuffer bytes = map(numBytes + padding(numBytes));
+            byte[] scratch = new byte[numBytes];
+            bytes.get(scratch, 0, numBytes);
+            List<String> strings = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                strings.add(new String(scratch, offsets[i], offsets[i + 1] - offsets[i], StandardCharsets.UTF_8));
+            }
+            return strings;
+        }
+
+        PreferenceLists csr(int count, int numValues, int bound, Path path) throws IOException {
+            int[] offsets = ints(count + 1);
+            int[] values = ints(numValues);
+            checkOffsets(offsets, numValues, path);
+            for (int value : values) {
+                checkArgument(value >= 0 && value < bound, "bad preference in %s", path);
+            }
+            return PreferenceLists.of(offsets, values);
+        }
+
+        // offsets must start at 0, never decrease and end at total
+        private static void checkOffsets(int[] offsets, int total, Path path) {
+            checkArgument(offsets[0] == 0 && offsets[offsets.length - 1] == total, "bad offsets in %s", path);
+            for (int i = 1; i < offsets.length; i++) {
+                checkArgument(offsets[i - 1] <= offsets[i], "bad offsets in %s", path);
+            }
+        }
+
+        private ByteBuffer map(long numBytes) throws IOException {
+            checkArgument(position + numBytes <= channel.size(), "truncated snapshot");
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, numBytes);
+            position += numBytes;
+            return buffer;
+        }
+    }
+}
@@ -22,9 +22,10 @@ public class Main {
 //        String resFile = "./resources/test_hos300_loc50_res500_coup100_residents.csv";
 //        String hosFile = "./resources/test_hos300_loc50_res500_coup100_hospitals.csv";
 
-        // load lists of hospital and residents from file
-        List<Resident> residents = FileImporter.importResidents(resFile);
-        List<Hospital> hospitals = FileImporter.importHospitals(hosFile);
+        // load hospitals and residents from file, resolving every reference while loading
+        Instance instance = FileImporter.importInstance(hosFile, resFile);
+        List<Resident> residents = instance.getResidentTable().getAll();
+        List<Hospital> hospitals = instance.getHospitalTable().getAll();
 
         // load lists of hospital and residents from file
         //List<Resident> residents = FileImporter.importResidents(args[0]);
@@ -33,18 +34,22 @@ public class Main {
         System.out.println("residents: " + Integer.toString(residents.size()));
         System.out.println("hospitals: " + Integer.toString(hospitals.size()));
 
-        // make lookup tables
-        HospitalTable hospitalTable = HospitalTable.create(hospitals);
-        ResidentTable residentTable = ResidentTable.create(residents);
+        // lookup tables
+        HospitalTable hospitalTable = instance.getHospitalTable();
+        ResidentTable residentTable = instance.getResidentTable();
         System.out.println("generated tables");
 
         // call HRPP
-        Matching finalMatch = HRPP.run(hospitalTable, residentTable);
+        SolverMetrics metrics = new SolverMetrics();
+        Matching finalMatch = HRPP.run(instance, metrics);
+        System.out.println("Size of violating Q: " + finalMatch.getProximityViolationCount());
         System.out.println(finalMatch);
         finalMatch.validateProximities(residents, residentTable);
         finalMatch.validateCapacities(hospitals);
         finalMatch.validateStability(residentTable, hospitalTable);
         finalMatch.outputMatchingToCsv("export_hos5_loc2_res16_coup3", residents, residentTable, hospitals);
+        System.out.println("metrics: " + metrics.toJson());
+        System.out.println("evaluation: " + MatchingEvaluator.evaluate(finalMatch).toJson());
         System.out.println("Done");
     }
 }
@@ -3,53 +3,371 @@ package edu.texas.social_computing.hospitals;
 import com.google.common.collect.*;
 
 import java.io.IOException;
-import java.nio.charset.Charset;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.*;
 
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Assignment of residents to hospitals. Residents and hospitals are referred to by their {@link Instance} index;
+ * the {@link Resident} / {@link Hospital} overloads are only meant for callers at the I/O boundary.
+ * <p>
+ * A matching also holds everything else a solve changes as it runs: the residents' preference views and rank
+ * progress, and the bookkeeping of proximity violations and singles to recheck. The {@link Instance} itself is
+ * never modified, so solves on separate matchings can share one instance, also from different threads.
+ */
 public class Matching {
 
+    public static final int UNASSIGNED = Instance.NONE;
+
     private static final Hospital NO_MATCH = Hospital.create("NO_MATCH", -1, 0, ImmutableList.of());
 
-    private Multimap<Hospital, Resident> hospitalAssignments = HashMultimap.create();
-    private Map<Resident, Hospital> residentAssignments = new HashMap<>();
+    private Instance instance;
+    private final PreferenceViews preferenceViews;
+
+    private final int[] residentAssignments;
+    private final int[] rankProgress;
+    private final AssignmentHeaps hospitalAssignments;
+    private final ProximityViolations proximityViolations;
+    private final SinglesToRecheck singlesToRecheck;
+    private SolverListener listener = SolverListener.NONE;
+    private HRPSession hrpSession;
+    // Zobrist style hash of the assignments and rank progress, see getFingerprint
+    private long fingerprint;
+    private Termination termination = Termination.CONVERGED;
+
+    public Matching(Instance instance) {
+        this.instance = instance;
+        this.preferenceViews = new PreferenceViews(instance);
+        this.residentAssignments = new int[instance.numResidents()];
+        Arrays.fill(residentAssignments, UNASSIGNED);
+        this.rankProgress = new int[instance.numResidents()];
+        this.hospitalAssignments = new AssignmentHeaps(instance);
+        this.proximityViolations = new ProximityViolations(instance.numResidents());
+        this.singlesToRecheck = new SinglesToRecheck(instance);
+    }
+
+    /**
+     * @return a fresh matching of the same instance with the assignments of matching and none of its other state:
+     * full preference views, no rank progress and no listener
+     */
+    static Matching copyOfAssignments(Matching matching) {
+        Matching copy = new Matching(matching.instance);
+        for (int r = 0; r < matching.residentAssignments.length; r++) {
+            if (matching.residentAssignments[r] != UNASSIGNED) {
+                copy.assign(r, matching.residentAssignments[r]);
+            }
+        }
+        return copy;
+    }
+
+    public Instance getInstance() {
+        return instance;
+    }
+
+    PreferenceViews getPreferenceViews() {
+        return preferenceViews;
+    }
+
+    /**
+     * @return how many entries of its initial preferences r has used up, as the solvers count them: RHRP
+     * advances a resident with every application, HRPP the dominant partner of a couple it could not place
+     */
+    public int getRankProgress(int r) {
+        return rankProgress[r];
+    }
 
-    public void assign(Resident r, Hospital h) {
-        hospitalAssignments.put(h, r);
-        residentAssignments.put(r, h);
+    void incrementRankProgress(int r) {
+        setRankProgress(r, rankProgress[r] + 1);
     }
 
-    public void unassign(Resident r, Hospital h) {
+    void resetRankProgress(int r) {
+        setRankProgress(r, 0);
+    }
+
+    private void setRankProgress(int r, int progress) {
+        fingerprint ^= progressKey(r, rankProgress[r]) ^ progressKey(r, progress);
+        rankProgress[r] = progress;
+    }
+
+    // any progress past the end of r's list leaves r nothing to apply to, so it is one state
+    private long progressKey(int r, int progress) {
+        int capped = Math.min(progress, instance.residentPreferences().length(r));
+        return capped == 0 ? 0 : mix(((long) r << 32 | capped) ^ 0xA54FF53A5F1D36F1L);
+    }
+
+    /**
+     * @return a hash of every assignment and every resident's rank progress, kept up to date in O(1) per change:
+     * each (resident, hospital) assignment and each (resident, progress) pair has a pseudo random key, and the
+     * fingerprint is the xor of the keys that hold. Progress past the end of a resident's list counts as the end.
+     * Equal states have equal fingerprints, whatever the order of changes that led to them, which is what
+     * {@link HRPP} looks for to notice that it cycles.
+     */
+    public long getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * @return why the last solve of this matching stopped
+     */
+    public Termination getTermination() {
+        return termination;
+    }
+
+    void setTermination(Termination termination) {
+        this.termination = termination;
+    }
+
+    private static long assignmentKey(int r, int h) {
+        return mix(((long) r << 32 | (h & 0xFFFFFFFFL)) ^ 0x3C6EF372FE94F82BL);
+    }
+
+    // the splitmix64 finalizer
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Points this matching, views included, at an instance derived from the current one by
+     * {@link Instance#withChanges}. Assignments are kept as they are, see {@link Rematcher} for settling them.
+     */
+    void rebase(Instance changed) {
+        checkArgument(changed.numHospitals() == instance.numHospitals()
+                && changed.numResidents() == instance.numResidents());
+        instance = changed;
+        preferenceViews.rebase(changed);
+        singlesToRecheck.rebase(changed);
+    }
+
+    /**
+     * Stops tracking r's couple as violating the proximity constraint, before the couple is dissolved.
+     */
+    void forgetCouple(int r) {
+        if (instance.hasPartner(r)) {
+            proximityViolations.update(Math.min(r, instance.partnerOf(r)), false);
+        }
+    }
+
+    /**
+     * Makes the next singles check consider h, e.g. after h gained a seat.
+     */
+    void hospitalChanged(int h) {
+        singlesToRecheck.hospitalChanged(h);
+    }
+
+    /**
+     * Makes the next singles check consider r, e.g. after r's view widened.
+     */
+    void residentChanged(int r) {
+        singlesToRecheck.residentChanged(r);
+    }
+
+    /**
+     * @return the keys (lower resident index) of the couples violating the proximity constraint, oldest first
+     */
+    int[] getProximityViolationOrder() {
+        return proximityViolations.toArray();
+    }
+
+    /**
+     * @return the hospitals and the residents the next singles check will start from, see
+     * {@link SinglesToRecheck}
+     */
+    int[] getDirtyHospitals() {
+        return singlesToRecheck.dirtyHospitals();
+    }
+
+    int[] getDirtyResidents() {
+        return singlesToRecheck.dirtyResidents();
+    }
+
+    /**
+     * Puts a fresh matching into a state saved from another matching of the same instance, see
+     * {@link HRPPCheckpoint}: the assignments, rank progress and views, the order of the proximity violations
+     * and what the next singles check starts from.
+     */
+    void restore(int[] assignments, int[] rankProgress, int[] viewStarts, int[] viewLocationFilters,
+                 int[] proximityViolationOrder, int[] dirtyHospitals, int[] dirtyResidents) {
+        int numResidents = instance.numResidents();
+        checkArgument(assignments.length == numResidents && rankProgress.length == numResidents
+                && viewStarts.length == numResidents && viewLocationFilters.length == numResidents);
+        for (int r = 0; r < numResidents; r++) {
+            unassign(r);
+        }
+        for (int r = 0; r < numResidents; r++) {
+            if (assignments[r] != UNASSIGNED) {
+                assign(r, assignments[r]);
+            }
+            setRankProgress(r, rankProgress[r]);
+            preferenceViews.restore(r, viewStarts[r], viewLocationFilters[r]);
+        }
+        // assigning above appended the violations in index order
+        for (int coupleKey : proximityViolations.toArray()) {
+            proximityViolations.update(coupleKey, false);
+        }
+        for (int coupleKey : proximityViolationOrder) {
+            proximityViolations.update(coupleKey, true);
+        }
+        singlesToRecheck.clear();
+        for (int h : dirtyHospitals) {
+            singlesToRecheck.hospitalChanged(h);
+        }
+        for (int r : dirtyResidents) {
+            singlesToRecheck.residentChanged(r);
+        }
+    }
+
+    /**
+     * @return the state every {@link HRP} run on this matching reuses, allocated by the first run
+     */
+    HRPSession getHrpSession() {
+        if (hrpSession == null) {
+            hrpSession = new HRPSession(instance.numResidents(), instance.numHospitals());
+        }
+        return hrpSession;
+    }
+
+    /**
+     * The solvers report what they do on this matching to the listener, {@link SolverListener#NONE} by default.
+     */
+    public void setListener(SolverListener listener) {
+        this.listener = listener;
+    }
+
+    public SolverListener getListener() {
+        return listener;
+    }
+
+    public void assign(int r, int h) {
+        release(r);
+        int worstBefore = hospitalAssignments.worst(h);
+        hospitalAssignments.add(h, r, instance.hospitalRankOf(h, r));
+        residentAssignments[r] = h;
+        fingerprint ^= assignmentKey(r, h);
+        if (hospitalAssignments.worst(h) != worstBefore) {
+            singlesToRecheck.hospitalChanged(h);
+        }
+        singlesToRecheck.residentChanged(r);
+        updateProximity(r);
+    }
+
+    /**
+     * Removes r from whatever hospital it is assigned to, if any.
+     */
+    public void unassign(int r) {
+        if (release(r)) {
+            updateProximity(r);
+        }
+    }
+
+    private boolean release(int r) {
+        int h = residentAssignments[r];
+        if (h == UNASSIGNED) {
+            return false;
+        }
         hospitalAssignments.remove(h, r);
-        residentAssignments.remove(r);
+        residentAssignments[r] = UNASSIGNED;
+        fingerprint ^= assignmentKey(r, h);
+        singlesToRecheck.hospitalChanged(h);
+        return true;
     }
 
-    public ImmutableList<Resident> getAssignedResidents(Hospital h) {
-        return ImmutableList.copyOf(hospitalAssignments.get(h));
+    private void updateProximity(int r) {
+        if (!instance.hasPartner(r)) {
+            return;
+        }
+        int partner = instance.partnerOf(r);
+        proximityViolations.update(Math.min(r, partner),
+                (hasAssignment(r) || hasAssignment(partner)) && getAssignedLocation(r) != getAssignedLocation(partner));
     }
 
-    public Hospital getAssignedHospital(Resident r) {
-        return residentAssignments.getOrDefault(r, NO_MATCH);
+    /**
+     * @return the index of r's hospital, or {@link #UNASSIGNED}
+     */
+    public int getAssignedHospital(int r) {
+        return residentAssignments[r];
     }
 
-    public boolean hasAssignment(Resident r) {
-        return residentAssignments.containsKey(r);
+    /**
+     * @return the location of r's hospital, or -1 if r is unassigned
+     */
+    public int getAssignedLocation(int r) {
+        int h = residentAssignments[r];
+        return h == UNASSIGNED ? NO_MATCH.getLocationId() : instance.locationOf(h);
+    }
+
+    public boolean hasAssignment(int r) {
+        return residentAssignments[r] != UNASSIGNED;
+    }
+
+    public int[] getAssignedResidents(int h) {
+        return hospitalAssignments.residents(h);
+    }
+
+    public int getAssignmentCount(int h) {
+        return hospitalAssignments.size(h);
+    }
+
+    public boolean isOverSubscribed(int h) {
+        return hospitalAssignments.size(h) > instance.capacityOf(h);
+    }
+
+    public boolean isFull(int h) {
+        return hospitalAssignments.size(h) == instance.capacityOf(h);
+    }
+
+    /**
+     * @return the assigned resident h likes least, or {@link #UNASSIGNED} if h has no residents
+     */
+    public int getWorstAssignedResident(int h) {
+        return hospitalAssignments.worst(h);
+    }
+
+    /**
+     * @return the k-th worst (1 is the worst) assigned resident of h, or {@link #UNASSIGNED} if h has fewer
+     * than k residents
+     */
+    public int getKthWorstAssignedResident(int h, int k) {
+        return hospitalAssignments.kthWorst(h, k);
+    }
+
+    /**
+     * @return true if h likes at least residents.length of its assigned residents less than every one of the
+     * given residents, i.e. none of the given residents would be among h's worst residents.length residents if
+     * they were all added to h
+     */
+    public boolean fitsAboveWorst(int h, int... residents) {
+        int kthWorst = getKthWorstAssignedResident(h, residents.length);
+        if (kthWorst == UNASSIGNED) {
+            return false;
+        }
+        int kthWorstRank = hospitalAssignments.rankOf(kthWorst);
+        for (int r : residents) {
+            if (!AssignmentHeaps.isWorse(kthWorstRank, kthWorst, instance.hospitalRankOf(h, r), r)) {
+                return false;
+            }
+        }
+        return true;
     }
 
-    public boolean isOverSubscribed(Hospital h) {
-        return getAssignedResidents(h).size() > h.getCapacity();
+    public ImmutableList<Resident> getAssignedResidents(Hospital h) {
+        int index = instance.hospitalIndexOf(h);
+        return Arrays.stream(getAssignedResidents(index))
+                .mapToObj(instance::resident)
+                .collect(ImmutableList.toImmutableList());
     }
 
-    public boolean isFull(Hospital h) {
-        return getAssignedResidents(h).size() == h.getCapacity();
+    public Hospital getAssignedHospital(Resident r) {
+        int index = r == null ? Instance.NONE : instance.residentIndexOf(r);
+        return index == Instance.NONE || !hasAssignment(index)
+                ? NO_MATCH
+                : instance.hospital(getAssignedHospital(index));
     }
 
-    public Resident getWorstAssignedResident(Hospital h) {
-        return hospitalAssignments.get(h).stream()
-                .max(Comparator.comparing(h::rankOf))
-                .orElse(null);
+    public boolean hasAssignment(Resident r) {
+        return hasAssignment(instance.residentIndexOf(r));
     }
 
     public Set<Resident> getAllUnassigned(List<Resident> residents) {
@@ -59,46 +377,93 @@ public class Matching {
     }
 
     /**
-     * @param residents : a list of Non-Dominant (ND) residents in a matching that needs to be checked to see
-     *                  if any of the residents in the list violate a proximity constraint
-     * @return a set of residents that violate the proximity constraint AND are the worse placed partner
+     * @return indices of all unassigned residents, in index order
      */
-    public Set<Resident> getNDProximityViolators(List<Resident> residents, ResidentTable residentTable) {
-        Set<Resident> freeViolatingResidents = new HashSet<>();
-        for (Resident resident : residents) {
-            if (!resident.hasPartner()) continue;
-            Resident partner = residentTable.getResidentById(resident.getPartnerId());
-            if (!hasAssignment(resident)) continue;
-            if (!hasAssignment(partner)) {
-                freeViolatingResidents.add(partner);
-                continue;
-            }
-            Hospital assignedHospital = this.getAssignedHospital(resident);
-            Hospital partnerAssignedHospital = this.getAssignedHospital(partner);
-            int location = assignedHospital.getLocationId();
-            int partnerLocation = partnerAssignedHospital.getLocationId();
-            if (location != partnerLocation) {
-                // if there is a tie for worse placed partner we only want 1 to be non-dominant
-                if (!freeViolatingResidents.contains(partner)) {
-                    Resident ndPartner = MatchingUtils.worsePlacedResident(this, resident, partner);
-                    freeViolatingResidents.add(ndPartner);
-                    unassign(ndPartner, getAssignedHospital(ndPartner));
-                }
+    public List<Integer> getAllUnassigned() {
+        List<Integer> unassigned = new ArrayList<>();
+        for (int r = 0; r < residentAssignments.length; r++) {
+            if (!hasAssignment(r)) {
+                unassigned.add(r);
             }
         }
-        return freeViolatingResidents;
+        return unassigned;
+    }
+
+    /**
+     * @return the non-dominant partner of the couple that has been violating the proximity constraint the
+     * longest, or {@link Instance#NONE} if every couple is proximally matched. That is the unassigned partner if
+     * only one of them is assigned, otherwise the worse placed partner. Constant time.
+     */
+    public int getNextNDProximityViolator() {
+        int coupleKey = proximityViolations.first();
+        return coupleKey == Instance.NONE ? Instance.NONE : nonDominantPartner(coupleKey);
+    }
+
+    /**
+     * @return the assigned singles whose chance of a better hospital may have changed since the last call, in
+     * index order. See {@link SinglesToRecheck}.
+     */
+    int[] drainSinglesToRecheck() {
+        return singlesToRecheck.drain(this);
+    }
+
+    /**
+     * @return what {@link #drainSinglesToRecheck()} would return now, without forgetting any change
+     */
+    int[] peekSinglesToRecheck() {
+        return singlesToRecheck.peek(this);
+    }
+
+    public int getProximityViolationCount() {
+        return proximityViolations.size();
+    }
+
+    /**
+     * @return the non-dominant partner of every couple that violates the proximity constraint, oldest violation
+     * first
+     */
+    public Set<Integer> getNDProximityViolators() {
+        Set<Integer> violators = new LinkedHashSet<>();
+        for (int coupleKey = proximityViolations.first();
+             coupleKey != Instance.NONE;
+             coupleKey = proximityViolations.next(coupleKey)) {
+            violators.add(nonDominantPartner(coupleKey));
+        }
+        return violators;
+    }
+
+    /**
+     * Unassigns the non-dominant partner of every couple that violates the proximity constraint, which frees
+     * their seats for the next round. Takes time proportional to the number of violating couples; the couples
+     * keep violating, now with one partner unassigned.
+     */
+    public void unassignNDProximityViolators() {
+        for (int coupleKey = proximityViolations.first();
+             coupleKey != Instance.NONE;
+             coupleKey = proximityViolations.next(coupleKey)) {
+            unassign(nonDominantPartner(coupleKey));
+        }
+    }
+
+    private int nonDominantPartner(int r) {
+        int partner = instance.partnerOf(r);
+        if (!hasAssignment(r)) {
+            return r;
+        }
+        if (!hasAssignment(partner)) {
+            return partner;
+        }
+        return MatchingUtils.worsePlacedResident(this, r, partner);
     }
 
     public void validateProximities(List<Resident> residents, ResidentTable residentTable) {
         List<String> violations = new ArrayList<>();
         for (Resident resident : residents) {
-            if (resident.hasPartner()) {
-                String partnerId = resident.getPartnerId();
-                Resident partner = residentTable.getResidentById(partnerId);
-                Hospital residentAssignment = getAssignedHospital(resident);
-                Hospital partnerAssignment = getAssignedHospital(partner);
-                if (residentAssignment.getLocationId() != partnerAssignment.getLocationId()) {
-                    violations.add(resident.getId() + ", " + partnerId + " contains a proximity violation");
+            int r = residentTable.indexOf(resident.getId());
+            if (instance.hasPartner(r)) {
+                int partner = instance.partnerOf(r);
+                if (getAssignedLocation(r) != getAssignedLocation(partner)) {
+                    violations.add(resident.getId() + ", " + resident.getPartnerId() + " contains a proximity violation");
                 }
             }
         }
@@ -114,8 +479,8 @@ public class Matching {
     public void validateCapacities(List<Hospital> hospitals) {
         List<String> violations = new ArrayList<>();
         for (Hospital hospital : hospitals) {
-            Integer assignmentSize = getAssignedResidents(hospital).size();
-            Integer capacity = hospital.getCapacity();
+            int assignmentSize = getAssignmentCount(instance.hospitalIndexOf(hospital));
+            int capacity = hospital.getCapacity();
             if (assignmentSize > capacity) {
                 violations.add(hospital.getId() + " exceeds capacity: " + assignmentSize + " > " + capacity);
             }
@@ -129,254 +494,73 @@ public class Matching {
         }
     }
 
-    public boolean isRankedHigherThanWorstMatch(Hospital hospital, String residentId) {
-        Resident worstMatch = getWorstAssignedResident(hospital);
-        List<String> hosPrefs = hospital.getPreferences();
-        if (!hosPrefs.contains(residentId)) {
+    public boolean isRankedHigherThanWorstMatch(int h, int r) {
+        int rank = instance.hospitalRankOf(h, r);
+        if (rank == Instance.UNRANKED) {
             return false;
         }
-        if (worstMatch == null) {
-            return true;
+        int worstMatch = getWorstAssignedResident(h);
+        if (worstMatch == UNASSIGNED) {
+            // a hospital with no seats at all is empty too
+            return instance.capacityOf(h) > 0;
         }
-        int hosResPrefIndex = hosPrefs.indexOf(residentId);
-        int hosWorstPrefIndex = hosPrefs.indexOf(worstMatch.getId());
-        return hosResPrefIndex < hosWorstPrefIndex;
+        // a hospital holding a resident it never ranked does not count as having room
+        int worstRank = hospitalAssignments.rankOf(worstMatch);
+        return worstRank != Instance.UNRANKED && rank < worstRank;
     }
 
-    public void validateStability(ResidentTable residentTable, HospitalTable hospitalTable) {
-        // step 1: find all classical blocking pairs
-        // these are the stability violations found when considering all residents as singles
-        Multimap<String, String> violations = findSingleStyleViolations(residentTable, hospitalTable);
-
-        // step 2: if in a couple, determine if blocking pairs can be resolved without a proximity violation. If they
-        // can, then this is a real stability violation. If not in a couple, then this is a real violation
-        boolean violation = hasActualStabilityViolations(violations, residentTable, hospitalTable);
-
-        if (!violation) {
+    /**
+     * Prints a summary of {@link StabilityValidator#validate(Matching)} and the first blocking pairs it found.
+     *
+     * @return the full report
+     */
+    public StabilityReport validateStability(ResidentTable residentTable, HospitalTable hospitalTable) {
+        StabilityReport report = StabilityValidator.validate(this);
+        if (report.isStable()) {
             System.out.println("Passes stability validation");
+            return report;
         }
-    }
-
-    // Find any classical stability violations. That is, find any blocking pairs (R, H) where
-    // R prefers H to R's current assignment, and H prefers R to H's current worst resident.
-    private Multimap<String, String> findSingleStyleViolations(
-            ResidentTable residentTable, HospitalTable hospitalTable) {
-        Multimap<String, String> violations = HashMultimap.create();
-
-        for (Resident resident : residentTable.getAll()) {
-            String resId = resident.getId();
-            List<String> resPrefs = resident.getInitialPreferences();
-
-            Hospital residentAssignment = getAssignedHospital(resident);
-            int resPrefIndex = resident.rankOf(residentAssignment);
-            if (residentAssignment.isRanked(resident) && resPrefIndex > 0) {
-                for (int i = 0; i < resPrefIndex; i++) {
-                    Hospital h = hospitalTable.getHospitalById(resPrefs.get(i));
-                    if (isRankedHigherThanWorstMatch(h, resId)) {
-                        violations.put(resId, h.getId());
-                    }
-                }
-            }
-        }
-        return violations;
-    }
-
-    // Determine whether a set of classical, single-style violations contains any true violations, accounting for
-    // partners. A partner stability violation occurs if two partners R1 and R2, who are currently matched to
-    // hospitals H1 and H2, could be matched to two different hospitals H1' and H2' such that (R1, H1') and (R2, H2')
-    // are classical blocking pairs, and H1' and H2' are in the same location. In the special case that H1'==H2', then
-    // H1' must prefer both R1 and R2 to the current worst two residents.
-    private boolean hasActualStabilityViolations(
-            Multimap<String, String> violations, ResidentTable residentTable, HospitalTable hospitalTable) {
-        boolean violation = false;
-        for (String violatingResidentId : violations.keySet()) {
-            Resident violatingResident = residentTable.getResidentById(violatingResidentId);
-            if (!violatingResident.hasPartner()) {
-                System.out.println(
-                        "Single resident stability violation: "
-                                + violatingResidentId + " - "
-                                + ImmutableList.copyOf(violations.get(violatingResidentId)));
-                violation = true;
+        System.out.println(String.format(
+                "Fails stability validation: %d single residents in %d blocking pairs, %d couples in %d blocking pairs",
+                report.getUnstableSingleCount(), report.getSingleBlockingPairCount(),
+                report.getUnstableCoupleCount(), report.getCoupleBlockingPairCount()));
+        for (StabilityReport.BlockingPair pair : report.getSamples()) {
+            if (!pair.isCouple()) {
+                System.out.println(String.format("Single resident stability violation: %s - %s, current match %s",
+                        instance.resident(pair.getResident()).getId(),
+                        instance.hospital(pair.getHospital()).getId(),
+                        hospitalIdOf(pair.getResident())));
             } else {
-                String partnerId = violatingResident.getPartnerId();
-                if (hasPartnerStabilityViolation(
-                        violations,
-                        residentTable.getResidentById(violatingResidentId),
-                        residentTable.getResidentById(partnerId),
-                        hospitalTable)) {
-                    violation = true;
-                }
+                System.out.println(String.format(
+                        "Partner stability violation for residents (%s, %s) at location [%d], " +
+                                "preferred hospitals (%s, %s), current matches (%s, %s)",
+                        instance.resident(pair.getResident()).getId(),
+                        instance.resident(pair.getPartner()).getId(),
+                        instance.locationOf(pair.getHospital()),
+                        instance.hospital(pair.getHospital()).getId(),
+                        instance.hospital(pair.getPartnerHospital()).getId(),
+                        hospitalIdOf(pair.getResident()),
+                        hospitalIdOf(pair.getPartner())));
             }
         }
-        return violation;
+        return report;
     }
 
-    private boolean hasPartnerStabilityViolation(
-            Multimap<String, String> violations,
-            Resident violatingResident,
-            Resident partner,
-            HospitalTable hospitalTable) {
-
-        List<Hospital> violationHospitals = violations.get(violatingResident.getId()).stream()
-                .map(hospitalTable::getHospitalById)
-                .collect(ImmutableList.toImmutableList());
-
-        List<Hospital> partnerViolationHospitals = violations.get(partner.getId()).stream()
-                .map(hospitalTable::getHospitalById)
-                .collect(ImmutableList.toImmutableList());
-
-        boolean violation = false;
-        for (Hospital violatingHospital : violationHospitals) {
-            for (Hospital partnerViolatingHospital : partnerViolationHospitals) {
-                if (violatingHospital.getLocationId() == partnerViolatingHospital.getLocationId()) {
-                    // check special case of the same hospital, in which case if the partners are
-                    // better than the worst two of the hospital's current assignment, then violation
-                    if (violatingHospital.getId().equals(partnerViolatingHospital.getId())) {
-                        ImmutableList<Resident> residents =
-                                ImmutableList.<Resident>builder()
-                                        .addAll(getAssignedResidents(violatingHospital))
-                                        .add(violatingResident)
-                                        .add(partner)
-                                        .build();
-                        List<Resident> reverseRankSortedResidents = residents.stream()
-                                .sorted(Comparator.comparing(violatingHospital::rankOf))
-                                .collect(ImmutableList.toImmutableList())
-                                .reverse();
-
-                        // if either the violating resident or its partner are in one of the first two positions of this
-                        // list, i.e. are either the worst or second worst ranked of this group by this hospital,
-                        // then there wasn't room for both at this hospital, and not a violation
-                        if (reverseRankSortedResidents.indexOf(violatingResident) < 2 ||
-                                reverseRankSortedResidents.indexOf(partner) < 2) {
-                            continue;
-                        }
-
-                    }
-                    System.out.println(String.format(
-                            "Partner stability violation for residents (%s, %s) at location [%d], " +
-                                    "preferred hospitals (%s, %s), current matches (%s, %s)",
-                            violatingResident.getId(),
-                            partner.getId(),
-                            violatingHospital.getLocationId(),
-                            violatingHospital.getId(),
-                            partnerViolatingHospital.getId(),
-                            getAssignedHospital(violatingResident).getId(),
-                            getAssignedHospital(partner).getId()));
-                    violation = true;
-                }
-            }
-        }
-        return violation;
-    }
-
-    private String getPrefString(List<String> preferences) {
-        StringBuilder prefString = new StringBuilder();
-        for (String p: preferences) {
-            prefString.append(p).append(" ");
-        }
-        return prefString.toString().trim();
+    private String hospitalIdOf(int r) {
+        return hasAssignment(r) ? instance.hospital(getAssignedHospital(r)).getId() : NO_MATCH.getId();
     }
 
+    /**
+     * Writes matching_output/{@code <filePrefix>}_hospitals.csv and _residents.csv with every column, one row per
+     * given resident and hospital. See {@link MatchingExporter} to leave out the preference lists.
+     */
     public void outputMatchingToCsv(String filePrefix, List<Resident> residents, ResidentTable residentTable, List<Hospital> hospitals) {
-        List<String> resCSV = new ArrayList<>();
-        List<String> hospCSV = new ArrayList<>();
-        Charset utf8 = StandardCharsets.UTF_8;
-        // add headers
-        List<String> resHeaders = new ArrayList<>(Arrays.asList(
-                "residentId",
-                "residentAssignment",
-                "partnerId",
-                "partnerAssignment",
-                "residentAssignmentLocation",
-                "residentAssignmentRank",
-                "residentInitialPreferences",
-                "residentFinalPreferences",
-                "hasPartner",
-                "isAnchorPartner",
-                "partnerAssignmentLocation",
-                "partnerAssignmentRank",
-                "partnerInitialPreferences",
-                "partnerFinalPreferences"
-        ));
-        resCSV.add(String.join(", ", resHeaders));
-        List<String> hospHeaders = new ArrayList<>(Arrays.asList(
-                "hospitalId",
-                "hospitalLocation",
-                "capacity",
-                "assignmentCount",
-                "filledPercentage",
-                "preferences",
-                "assignments",
-                "assignmentRanks"
-        ));
-        hospCSV.add(String.join(", ", hospHeaders));
-        // get all Residents
-        for (Resident resident : residents) {
-            List<String> resInitPrefs = resident.getInitialPreferences();
-            List<String> resPrefs = resident.getPreferences();
-            Hospital residentAssignment = getAssignedHospital(resident);
-            String partnerId = resident.getPartnerId();
-            Resident partner = residentTable.getResidentById(partnerId);
-            Hospital partnerAssignment = getAssignedHospital(partner);
-            boolean hasPartner = resident.hasPartner();
-            String isAnchorPartner;
-            if (hasPartner) {
-                Resident ndResident = MatchingUtils.worsePlacedResident(this, resident, partner);
-                isAnchorPartner = ndResident.getId().equals(resident.getId()) ? "false" : "true";
-            } else {
-                isAnchorPartner = "NA";
-            }
-
-            // build output
-            List<String> resRow = new ArrayList<>(Arrays.asList(
-                    resident.getId(),
-                    residentAssignment.getId(),
-                    (hasPartner ? partnerId : "NA"),
-                    (hasPartner ? partnerAssignment.getId() : "NA"),
-                    Integer.toString(residentAssignment.getLocationId()),
-                    Integer.toString(resident.rankOf(residentAssignment)),
-                    getPrefString(resInitPrefs),
-                    getPrefString(resPrefs),
-                    (hasPartner ? "true" : "false"),
-                    isAnchorPartner,
-                    (hasPartner ? Integer.toString(partnerAssignment.getLocationId()) : "NA"),
-                    (hasPartner ? Integer.toString(partner.rankOf(partnerAssignment)) : "NA"),
-                    (hasPartner ? getPrefString(partner.getInitialPreferences()) : "NA"),
-                    (hasPartner ? getPrefString(partner.getPreferences()) : "NA")
-            ));
-            resCSV.add(String.join(", ", resRow));
-        }
-
-        for (Hospital hospital : hospitals) {
-            List<String> hosPrefs = hospital.getPreferences();
-            List<Resident> assignments = getAssignedResidents(hospital);
-            List<String> assignmentIds = new ArrayList<>();
-            List<String> assignmentRanks = new ArrayList<>();
-            Integer capacity = hospital.getCapacity();
-            Integer assignmentCount = assignments.size();
-            float percentFull = (float) assignmentCount / capacity;
-            for (Resident res : assignments) {
-                String resId = res.getId();
-                assignmentIds.add(resId);
-                assignmentRanks.add(Integer.toString(hosPrefs.indexOf(resId)));
-            }
-            // build output
-            List<String> hosRow = new ArrayList<>(Arrays.asList(
-                    hospital.getId(),
-                    Integer.toString(hospital.getLocationId()),
-                    Integer.toString(capacity),
-                    Integer.toString(assignmentCount),
-                    Float.toString(percentFull),
-                    getPrefString(hosPrefs),
-                    getPrefString(assignmentIds),
-                    getPrefString(assignmentRanks)
-            ));
-            hospCSV.add(String.join(", ", hosRow));
-        }
-
+        MatchingExporter exporter = MatchingExporter.create(this);
         try {
-            Files.write(Paths.get("matching_output/" + filePrefix + "_hospitals.csv"), hospCSV, utf8);
-            Files.write(Paths.get("matching_output/" + filePrefix + "_residents.csv"), resCSV, utf8);
+            exporter.writeHospitals(Paths.get("matching_output/" + filePrefix + "_hospitals.csv"),
+                    hospitals.stream().mapToInt(instance::hospitalIndexOf).toArray());
+            exporter.writeResidents(Paths.get("matching_output/" + filePrefix + "_residents.csv"),
+                    residents.stream().mapToInt(resident -> residentTable.indexOf(resident.getId())).toArray());
         } catch (IOException e) {
             e.printStackTrace();
         }
@@ -385,11 +569,14 @@ public class Matching {
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder();
-        for (Hospital h : hospitalAssignments.keySet()) {
-            sb.append(h.getId());
+        for (int h = 0; h < instance.numHospitals(); h++) {
+            if (getAssignmentCount(h) == 0) {
+                continue;
+            }
+            sb.append(instance.hospital(h).getId());
             sb.append(" : ");
-            sb.append(hospitalAssignments.get(h).stream()
-                    .map(Resident::getId)
+            sb.append(Arrays.stream(getAssignedResidents(h))
+                    .mapToObj(r -> instance.resident(r).getId())
                     .collect(ImmutableList.toImmutableList()));
             sb.append("\n");
         }
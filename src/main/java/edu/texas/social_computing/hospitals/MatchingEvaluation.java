@@ -0,0 +1,131 @@
+package edu.texas.social_computing.hospitals;
+
+import com.google.auto.value.AutoValue;
+import com.google.common.primitives.ImmutableLongArray;
+
+import java.util.Locale;
+
+/**
+ * Quality statistics of a matching, see {@link MatchingEvaluator}.
+ * <p>
+ * Happiness and fill are the per hospital metrics of hospital_eval.py. A hospital's happiness is the mean rank of
+ * its seats, where an empty seat, or a resident the hospital did not rank, counts as rank numHospitals as in the
+ * script; lower is happier. Its fill is its assignment count over its capacity. Both are averaged over the
+ * hospitals with at least one seat, which the script would divide by zero for.
+ */
+@AutoValue
+public abstract class MatchingEvaluation {
+
+    /**
+     * @return the number of hospitals with at least one seat, which happiness and fill are averaged over
+     */
+    public abstract int getHospitalCount();
+
+    public abstract double getAverageHappiness();
+
+    /**
+     * @return the population standard deviation of the hospitals' happiness, like numpy.std
+     */
+    public abstract double getHappinessStandardDeviation();
+
+    public abstract double getAverageFilledPercentage();
+
+    public abstract long getEmptySeats();
+
+    /**
+     * @return at index k, how many assigned residents are k-th on their hospital's list, 0 being the top
+     */
+    public abstract ImmutableLongArray getHospitalRankHistogram();
+
+    /**
+     * @return how many assigned residents their hospital did not rank
+     */
+    public abstract long getUnrankedAssignments();
+
+    /**
+     * @return at index k, how many assigned residents got the k-th hospital of their initial list, 0 being the top
+     */
+    public abstract ImmutableLongArray getResidentRankHistogram();
+
+    public abstract int getUnmatchedResidents();
+
+    /**
+     * @return the unmatched residents that have no partner
+     */
+    public abstract int getUnmatchedSingles();
+
+    /**
+     * @return the couples with both partners assigned in the same location
+     */
+    public abstract int getCouplesTogether();
+
+    /**
+     * @return the couples with both partners assigned, in different locations
+     */
+    public abstract int getCouplesApart();
+
+    /**
+     * @return the couples with exactly one partner assigned
+     */
+    public abstract int getCouplesHalfMatched();
+
+    public abstract int getCouplesUnmatched();
+
+    static Builder builder() {
+        return new AutoValue_MatchingEvaluation.Builder();
+    }
+
+    public String toJson() {
+        StringBuilder json = new StringBuilder("{");
+        json.append("\"hospitals\": ").append(getHospitalCount());
+        json.append(", \"averageHappiness\": ").append(String.format(Locale.ROOT, "%.6f", getAverageHappiness()));
+        json.append(", \"happinessStandardDeviation\": ")
+                .append(String.format(Locale.ROOT, "%.6f", getHappinessStandardDeviation()));
+        json.append(", \"averageFilledPercentage\": ")
+                .append(String.format(Locale.ROOT, "%.6f", getAverageFilledPercentage()));
+        json.append(", \"emptySeats\": ").append(getEmptySeats());
+        json.append(", \"hospitalRankHistogram\": ").append(getHospitalRankHistogram());
+        json.append(", \"unrankedAssignments\": ").append(getUnrankedAssignments());
+        json.append(", \"residentRankHistogram\": ").append(getResidentRankHistogram());
+        json.append(", \"unmatchedResidents\": ").append(getUnmatchedResidents());
+        json.append(", \"unmatchedSingles\": ").append(getUnmatchedSingles());
+        json.append(", \"couples\": {\"together\": ").append(getCouplesTogether())
+                .append(", \"apart\": ").append(getCouplesApart())
+                .append(", \"halfMatched\": ").append(getCouplesHalfMatched())
+                .append(", \"unmatched\": ").append(getCouplesUnmatched());
+        return json.append("}}").toString();
+    }
+
+    @AutoValue.Builder
+    abstract static class Builder {
+        abstract Builder setHospitalCount(int hospitalCount);
+
+        abstract Builder setAverageHappiness(double averageHappiness);
+
+        abstract Builder setHappinessStandardDeviation(double happinessStandardDeviation);
+
+        abstract Builder setAverageFilledPercentage(double averageFilledPercentage);
+
+        abstract Builder setEmptySeats(long emptySeats);
+
+        abstract Builder setHospitalRankHistogram(ImmutableLongArray hospitalRankHistogram);
+
+        abstract Builder setUnrankedAssignments(long unrankedAssignments);
+
+        abstract Builder setResidentRankHistogram(ImmutableLongArray residentRankHistogram);
+
+        abstract Builder setUnmatchedResidents(int unmatchedResidents);
+
+        abstract Builder setUnmatchedSingles(int unmatchedSingles);
+
+        abstract Builder setCouplesTogether(int couplesTogether);
+
+        abstract Builder setCouplesApart(int couplesApart);
+
+        abstract Builder setCouplesHalfMatched(int couplesHalfMatched);
+
+        abstract Builder setCouplesUnmatched(int couplesUnmatched);
+
+        abstract MatchingEvaluation build();
+    }
+}
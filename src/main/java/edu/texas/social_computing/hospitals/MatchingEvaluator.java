@@ -0,0 +1,246 @@
+package edu.texas.social_computing.hospitals;
+
+import com.google.common.primitives.ImmutableLongArray;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Computes a {@link MatchingEvaluation} straight from a {@link Matching}, in place of exporting it to CSV and
+ * running hospital_eval.py over the export. Every hospital and every resident is visited once, in ranges that
+ * run as fork/join tasks and whose statistics are merged pairwise, so large instances are evaluated on all cores
+ * and thousands of matchings can be scored without any I/O.
+ * <p>
+ * The happiness variance is merged with Chan et al.'s pairwise formula rather than from a sum of squares, so it
+ * stays accurate over millions of hospitals.
+ */
+public final class MatchingEvaluator {
+
+    private static final int LEAF_SIZE = 1 << 10;
+
+    private final Matching matching;
+    private final Instance instance;
+
+    private MatchingEvaluator(Matching matching) {
+        this.matching = matching;
+        this.instance = matching.getInstance();
+    }
+
+    public static MatchingEvaluation evaluate(Matching matching) {
+        return evaluate(matching, ForkJoinPool.commonPool());
+    }
+
+    public static MatchingEvaluation evaluate(Matching matching, ForkJoinPool pool) {
+        MatchingEvaluator evaluator = new MatchingEvaluator(matching);
+        HospitalTally hospitals = pool.invoke(evaluator.new HospitalTask(0, evaluator.instance.numHospitals()));
+        ResidentTally residents = pool.invoke(evaluator.new ResidentTask(0, evaluator.instance.numResidents()));
+        return MatchingEvaluation.builder()
+                .setHospitalCount((int) hospitals.count)
+                .setAverageHappiness(hospitals.meanHappiness)
+                .setHappinessStandardDeviation(
+                        hospitals.count == 0 ? 0 : Math.sqrt(hospitals.happinessDeviations / hospitals.count))
+                .setAverageFilledPercentage(hospitals.count == 0 ? 0 : hospitals.fillSum / hospitals.count)
+                .setEmptySeats(hospitals.emptySeats)
+                .setHospitalRankHistogram(hospitals.ranks.toArray())
+                .setUnrankedAssignments(hospitals.unranked)
+                .setResidentRankHistogram(residents.ranks.toArray())
+                .setUnmatchedResidents(residents.unmatched)
+                .setUnmatchedSingles(residents.unmatchedSingles)
+                .setCouplesTogether(residents.couplesTogether)
+                .setCouplesApart(residents.couplesApart)
+                .setCouplesHalfMatched(residents.couplesHalfMatched)
+                .setCouplesUnmatched(residents.couplesUnmatched)
+                .build();
+    }
+
+    private void visitHospital(int h, HospitalTally tally) {
+        int capacity = instance.capacityOf(h);
+        int[] assigned = matching.getAssignedResidents(h);
+        int emptySeatRank = instance.numHospitals();
+        int emptySeats = Math.max(0, capacity - assigned.length);
+        long rankSum = (long) emptySeats * emptySeatRank;
+        for (int r : assigned) {
+            int rank = instance.hospitalRankOf(h, r);
+            if (rank == Instance.UNRANKED) {
+                tally.unranked++;
+                rankSum += emptySeatRank;
+            } else {
+                tally.ranks.add(rank);
+                rankSum += rank;
+            }
+        }
+        tally.emptySeats += emptySeats;
+        if (capacity > 0) {
+            tally.addHappiness((double) rankSum / capacity);
+            tally.fillSum += (double) assigned.length / capacity;
+        }
+    }
+
+    private void visitResident(int r, ResidentTally tally) {
+        int h = matching.getAssignedHospital(r);
+        if (h == Matching.UNASSIGNED) {
+            tally.unmatched++;
+            if (!instance.hasPartner(r)) {
+                tally.unmatchedSingles++;
+            }
+        } else {
+            int rank = instance.residentRankOf(r, h);
+            if (rank != Instance.UNRANKED) {
+                tally.ranks.add(rank);
+            }
+        }
+        int partner = instance.partnerOf(r);
+        if (partner == Instance.NONE || partner < r) {
+            // every couple is counted at its lower index
+            return;
+        }
+        boolean assigned = h != Matching.UNASSIGNED;
+        boolean partnerAssigned = matching.hasAssignment(partner);
+        if (assigned && partnerAssigned) {
+            if (matching.getAssignedLocation(r) == matching.getAssignedLocation(partner)) {
+                tally.couplesTogether++;
+            } else {
+                tally.couplesApart++;
+            }
+        } else if (assigned || partnerAssigned) {
+            tally.couplesHalfMatched++;
+        } else {
+            tally.couplesUnmatched++;
+        }
+    }
+
+    // counts per rank, grown to the largest rank seen
+    private static final class RankCounts {
+        private long[] counts = new long[16];
+        private int size;
+
+        void add(int rank) {
+            if (rank >= counts.length) {
+                counts = Arrays.copyOf(counts, Math.max(rank + 1, counts.length * 2));
+            }
+            counts[rank]++;
+            size = Math.max(size, rank + 1);
+        }
+
+        void merge(RankCounts right) {
+            if (right.size > counts.length) {
+                counts = Arrays.copyOf(counts, right.size);
+            }
+            for (int rank = 0; rank < right.size; rank++) {
+                counts[rank] += right.counts[rank];
+            }
+            size = Math.max(size, right.size);
+        }
+
+        ImmutableLongArray toArray() {
+            return ImmutableLongArray.copyOf(Arrays.copyOf(counts, size));
+        }
+    }
+
+    private static final class HospitalTally {
+        // hospitals with seats, the mean of their happiness and the sum of squared deviations from it
+        long count;
+        double meanHappiness;
+        double happinessDeviations;
+        double fillSum;
+        long emptySeats;
+        long unranked;
+        final RankCounts ranks = new RankCounts();
+
+        void addHappiness(double happiness) {
+            count++;
+            double delta = happiness - meanHappiness;
+            meanHappiness += delta / count;
+            happinessDeviations += delta * (happiness - meanHappiness);
+        }
+
+        HospitalTally merge(HospitalTally right) {
+            if (right.count > 0) {
+                long total = count + right.count;
+                double delta = right.meanHappiness - meanHappiness;
+                meanHappiness += delta * right.count / total;
+                happinessDeviations += right.happinessDeviations + delta * delta * count * right.count / total;
+                count = total;
+            }
+            fillSum += right.fillSum;
+            emptySeats += right.emptySeats;
+            unranked += right.unranked;
+            ranks.merge(right.ranks);
+            return this;
+        }
+    }
+
+    private static final class ResidentTally {
+        int unmatched;
+        int unmatchedSingles;
+        int couplesTogether;
+        int couplesApart;
+        int couplesHalfMatched;
+        int couplesUnmatched;
+        final RankCounts ranks = new RankCounts();
+
+        ResidentTally merge(ResidentTally right) {
+            unmatched += right.unmatched;
+            unmatchedSingles += right.unmatchedSingles;
+            couplesTogether += right.couplesTogether;
+            couplesApart += right.couplesApart;
+            couplesHalfMatched += right.couplesHalfMatched;
+            couplesUnmatched += right.couplesUnmatched;
+            ranks.merge(right.ranks);
+            return this;
+        }
+    }
+
+    private final class HospitalTask extends RecursiveTask<HospitalTally> {
+        private final int from;
+        private final int to;
+
+        HospitalTask(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected HospitalTally compute() {
+            if (to - from <= LEAF_SIZE) {
+                HospitalTally tally = new HospitalTally();
+                for (int h = from; h < to; h++) {
+                    visitHospital(h, tally);
+                }
+                return tally;
+            }
+            int middle = (from + to) >>> 1;
+            HospitalTask left = new HospitalTask(from, middle);
+            left.fork();
+            HospitalTally right = new HospitalTask(middle, to).compute();
+            return left.join().merge(right);
+        }
+    }
+
+    private final class ResidentTask extends RecursiveTask<ResidentTally> {
+        private final int from;
+        private final int to;
+
+        ResidentTask(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected ResidentTally compute() {
+            if (to - from <= LEAF_SIZE) {
+                ResidentTally tally = new ResidentTally();
+                for (int r = from; r < to; r++) {
+                    visitResident(r, tally);
+                }
+                return tally;
+            }
+            int middle = (from + to) >>> 1;
+            ResidentTask left = new ResidentTask(from, middle);
+            left.fork();
+            ResidentTally right = new ResidentTask(middle, to).compute();
+            return left.join().merge(right);
+        }
+    }
+}
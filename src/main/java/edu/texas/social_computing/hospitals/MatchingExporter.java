@@ -0,0 +1,354 @@
+package edu.texas.social_computing.hospitals;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.function.IntFunction;
+
+/**
+ * Writes a {@link Matching} as the residents and hospitals CSVs hospital_eval.py reads. Rows are formatted
+ * straight into one reusable buffer that is flushed to the file whenever it fills up, so nothing proportional
+ * to the output is held in memory. Ids are encoded once, and every resident's rank in its current view is
+ * computed once and shared by its own row and its partner's.
+ * <p>
+ * The preference lists make up most of the output; each group of them can be left out with
+ * {@link #without(OptionalColumn...)}. The remaining columns keep their order.
+ */
+public final class MatchingExporter {
+
+    public enum OptionalColumn {
+        /** residentInitialPreferences and residentFinalPreferences */
+        RESIDENT_PREFERENCES,
+        /** partnerInitialPreferences and partnerFinalPreferences, a copy of the partner's own row */
+        PARTNER_PREFERENCES,
+        /** the preferences of the hospitals file */
+        HOSPITAL_PREFERENCES
+    }
+
+    private static final int BUFFER_BYTES = 1 << 16;
+    private static final String SEPARATOR = ", ";
+    private static final String NA = "NA";
+    private static final byte[] NO_MATCH = "NO_MATCH".getBytes(StandardCharsets.US_ASCII);
+
+    private final Matching matching;
+    private final Instance instance;
+    private final Set<OptionalColumn> columns;
+
+    private MatchingExporter(Matching matching, Set<OptionalColumn> columns) {
+        this.matching = matching;
+        this.instance = matching.getInstance();
+        this.columns = columns;
+    }
+
+    /**
+     * @return an exporter writing every column
+     */
+    public static MatchingExporter create(Matching matching) {
+        return new MatchingExporter(matching, EnumSet.allOf(OptionalColumn.class));
+    }
+
+    public MatchingExporter without(OptionalColumn... excluded) {
+        Set<OptionalColumn> remaining = EnumSet.copyOf(columns);
+        for (OptionalColumn column : excluded) {
+            remaining.remove(column);
+        }
+        return new MatchingExporter(matching, remaining);
+    }
+
+    /**
+     * Writes matching_output-style {@code <prefix>_hospitals.csv} and {@code <prefix>_residents.csv} into the
+     * directory, every resident and hospital in index order.
+     */
+    public void write(Path directory, String filePrefix) throws IOException {
+        writeHospitals(directory.resolve(filePrefix + "_hospitals.csv"), allOf(instance.numHospitals()));
+        writeResidents(directory.resolve(filePrefix + "_residents.csv"), allOf(instance.numResidents()));
+    }
+
+    /**
+     * @param residents the residents to write a row for, in row order
+     */
+    public void writeResidents(Path path, int[] residents) throws IOException {
+        try (FileChannel channel = open(path)) {
+            writeResidents(channel, residents);
+        }
+    }
+
+    /**
+     * @param hospitals the hospitals to write a row for, in row order
+     */
+    public void writeHospitals(Path path, int[] hospitals) throws IOException {
+        try (FileChannel channel = open(path)) {
+            writeHospitals(channel, hospitals);
+        }
+    }
+
+    void writeResidents(WritableByteChannel channel, int[] residents) throws IOException {
+        boolean residentPreferences = columns.contains(OptionalColumn.RESIDENT_PREFERENCES);
+        boolean partnerPreferences = columns.contains(OptionalColumn.PARTNER_PREFERENCES);
+        PreferenceViews views = matching.getPreferenceViews();
+        Ids ids = new Ids(instance);
+        IntFunction<byte[]> hospitalIds = ids::hospital;
+        int[] ranks = new int[instance.numResidents()];
+        for (int r = 0; r < ranks.length; r++) {
+            ranks[r] = views.rankOf(r, matching.getAssignedHospital(r));
+        }
+
+        RowWriter out = new RowWriter(channel);
+        out.header("residentId", "residentAssignment", "partnerId", "partnerAssignment",
+                "residentAssignmentLocation", "residentAssignmentRank");
+        if (residentPreferences) {
+            out.header("residentInitialPreferences", "residentFinalPreferences");
+        }
+        out.header("hasPartner", "isAnchorPartner", "partnerAssignmentLocation", "partnerAssignmentRank");
+        if (partnerPreferences) {
+            out.header("partnerInitialPreferences", "partnerFinalPreferences");
+        }
+        out.endRow();
+
+        for (int r : residents) {
+            boolean hasPartner = instance.hasPartner(r);
+            int partner = instance.partnerOf(r);
+            out.field(ids.resident(r));
+            out.field(ids.assignment(matching, r));
+            if (hasPartner) {
+                out.field(ids.resident(partner));
+                out.field(ids.assignment(matching, partner));
+            } else {
+                out.field(NA).field(NA);
+            }
+            out.field(matching.getAssignedLocation(r));
+            out.field(ranks[r]);
+            if (residentPreferences) {
+                out.field(instance.residentPreferences(), r, hospitalIds);
+                out.field(views.toArray(r), hospitalIds);
+            }
+            if (hasPartner) {
+                // the worse placed partner is not the anchor, ties go to the partner, see MatchingUtils
+                out.field("true");
+                out.field(ranks[r] >= ranks[partner] ? "false" : "true");
+                out.field(matching.getAssignedLocation(partner));
+                out.field(ranks[partner]);
+            } else {
+                out.field("false").field(NA).field(NA).field(NA);
+            }
+            if (partnerPreferences) {
+                if (hasPartner) {
+                    out.field(instance.residentPreferences(), partner, hospitalIds);
+                    out.field(views.toArray(partner), hospitalIds);
+                } else {
+                    out.field(NA).field(NA);
+                }
+            }
+            out.endRow();
+        }
+        out.flush();
+    }
+
+    void writeHospitals(WritableByteChannel channel, int[] hospitals) throws IOException {
+        boolean hospitalPreferences = columns.contains(OptionalColumn.HOSPITAL_PREFERENCES);
+        Ids ids = new Ids(instance);
+        IntFunction<byte[]> residentIds = ids::resident;
+
+        RowWriter out = new RowWriter(channel);
+        out.header("hospitalId", "hospitalLocation", "capacity", "assignmentCount", "filledPercentage");
+        if (hospitalPreferences) {
+            out.header("preferences");
+        }
+        out.header("assignments", "assignmentRanks");
+        out.endRow();
+
+        for (int h : hospitals) {
+            int[] assignments = matching.getAssignedResidents(h);
+            int capacity = instance.capacityOf(h);
+            out.field(ids.hospital(h));
+            out.field(instance.locationOf(h));
+            out.field(capacity);
+            out.field(assignments.length);
+            out.field(Float.toString((float) assignments.length / capacity));
+            if (hospitalPreferences) {
+                out.field(instance.hospitalPreferences(), h, residentIds);
+            }
+            out.field(assignments, residentIds);
+            out.startField();
+            for (int i = 0; i < assignments.length; i++) {
+                if (i > 0) {
+                    out.put((byte) ' ');
+                }
+                int rank = instance.hospitalRankOf(h, assignments[i]);
+                out.putInt(rank == Instance.UNRANKED ? -1 : rank);
+            }
+            out.endRow();
+        }
+        out.flush();
+    }
+
+    private static FileChannel open(Path path) throws IOException {
+        return FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+    }
+
+    private static int[] allOf(int count) {
+        int[] all = new int[count];
+        for (int i = 0; i < count; i++) {
+            all[i] = i;
+        }
+        return all;
+    }
+
+    // UTF-8 ids, encoded on first use
+    private static final class Ids {
+        private final Instance instance;
+        private final byte[][] hospitals;
+        private final byte[][] residents;
+
+        Ids(Instance instance) {
+            this.instance = instance;
+            this.hospitals = new byte[instance.numHospitals()][];
+            this.residents = new byte[instance.numResidents()][];
+        }
+
+        byte[] hospital(int h) {
+            if (hospitals[h] == null) {
+                hospitals[h] = instance.hospital(h).getId().getBytes(StandardCharsets.UTF_8);
+            }
+            return hospitals[h];
+        }
+
+        byte[] resident(int r) {
+            if (residents[r] == null) {
+                residents[r] = instance.resident(r).getId().getBytes(StandardCharsets.UTF_8);
+            }
+            return residents[r];
+        }
+
+        byte[] assignment(Matching matching, int r) {
+            return matching.hasAssignment(r) ? hospital(matching.getAssignedHospital(r)) : NO_MATCH;
+        }
+    }
+
+    private static final class RowWriter {
+        private final WritableByteChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_BYTES);
+        private final byte[] digits = new byte[11];
+        private boolean firstField = true;
+
+        RowWriter(WritableByteChannel channel) {
+            this.channel = channel;
+        }
+
+        void header(String... names) throws IOException {
+            for (String name : names) {
+                field(name);
+            }
+        }
+
+        void startField() throws IOException {
+            if (!firstField) {
+                putAscii(SEPARATOR);
+            }
+            firstField = false;
+        }
+
+        RowWriter field(String value) throws IOException {
+            startField();
+            putAscii(value);
+            return this;
+        }
+
+        RowWriter field(int value) throws IOException {
+            startField();
+            putInt(value);
+            return this;
+        }
+
+        RowWriter field(byte[] value) throws IOException {
+            startField();
+            put(value);
+            return this;
+        }
+
+        // a space separated list of ids
+        RowWriter field(int[] indices, IntFunction<byte[]> idOf) throws IOException {
+            return field(indices, 0, indices.length, idOf);
+        }
+
+        // owner's list of lists as space separated ids
+        RowWriter field(PreferenceLists lists, int owner, IntFunction<byte[]> idOf) throws IOException {
+            return field(lists.members(), lists.start(owner), lists.end(owner), idOf);
+        }
+
+        private RowWriter field(int[] indices, int from, int to, IntFunction<byte[]> idOf) throws IOException {
+            startField();
+            for (int i = from; i < to; i++) {
+                if (i > from) {
+                    put((byte) ' ');
+                }
+                put(idOf.apply(indices[i]));
+            }
+            return this;
+        }
+
+        void endRow() throws IOException {
+            put((byte) '\n');
+            firstField = true;
+        }
+
+        void put(byte b) throws IOException {
+            if (!buffer.hasRemaining()) {
+                flush();
+            }
+            buffer.put(b);
+        }
+
+        void put(byte[] bytes) throws IOException {
+            for (int i = 0; i < bytes.length; ) {
+                if (!buffer.hasRemaining()) {
+                    flush();
+                }
+                int length = Math.min(buffer.remaining(), bytes.length - i);
+                buffer.put(bytes, i, length);
+                i += length;
+            }
+        }
+
+        // only for the fixed column names and values of this class, which are ASCII
+        void putAscii(String value) throws IOException {
+            for (int i = 0; i < value.length(); i++) {
+                put((byte) value.charAt(i));
+            }
+        }
+
+        void putInt(int value) throws IOException {
+            if (value == Integer.MIN_VALUE) {
+                putAscii(Integer.toString(value));
+                return;
+            }
+            if (value < 0) {
+                put((byte) '-');
+                value = -value;
+            }
+            int length = 0;
+            do {
+                digits[length++] = (byte) ('0' + value % 10);
+                value /= 10;
+            } while (value != 0);
+            while (length > 0) {
+                put(digits[--length]);
+            }
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+}
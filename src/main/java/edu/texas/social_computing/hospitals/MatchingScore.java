@@ -0,0 +1,52 @@
+package edu.texas.social_computing.hospitals;
+
+import com.google.auto.value.AutoValue;
+
+/**
+ * How good a matching is: its stability, and the happiness and fill of hospital_eval.py as
+ * {@link MatchingEvaluator} computes them.
+ */
+@AutoValue
+public abstract class MatchingScore {
+
+    public abstract double getAverageHappiness();
+
+    public abstract double getHappinessStandardDeviation();
+
+    public abstract double getAverageFilledPercentage();
+
+    public abstract int getProximityViolationCount();
+
+    /**
+     * @return the number of single residents and couples in at least one blocking pair, see {@link StabilityReport}
+     */
+    public abstract int getUnstableCount();
+
+    public static MatchingScore of(Matching matching) {
+        MatchingEvaluation evaluation = MatchingEvaluator.evaluate(matching);
+        StabilityReport stability = StabilityValidator.validate(matching, 0);
+        return new AutoValue_MatchingScore(evaluation.getAverageHappiness(),
+                evaluation.getHappinessStandardDeviation(), evaluation.getAverageFilledPercentage(),
+                matching.getProximityViolationCount(),
+                stability.getUnstableSingleCount() + stability.getUnstableCoupleCount());
+    }
+
+    /**
+     * Orders matchings by fewer proximity violations, then fewer unstable residents and couples, then happier
+     * hospitals, then fuller hospitals.
+     *
+     * @return true if this score is strictly better than other
+     */
+    public boolean isBetterThan(MatchingScore other) {
+        if (getProximityViolationCount() != other.getProximityViolationCount()) {
+            return getProximityViolationCount() < other.getProximityViolationCount();
+        }
+        if (getUnstableCount() != other.getUnstableCount()) {
+            return getUnstableCount() < other.getUnstableCount();
+        }
+        if (getAverageHappiness() != other.getAverageHappiness()) {
+            return getAverageHappiness() < other.getAverageHappiness();
+        }
+        return getAverageFilledPercentage() > other.getAverageFilledPercentage();
+    }
+}
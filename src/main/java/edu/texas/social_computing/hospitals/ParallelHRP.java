@@ -0,0 +1,148 @@
+package edu.texas.social_computing.hospitals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * {@link HRP} from scratch on several threads. Every worker takes the next resident nobody has started on and
+ * lets it apply down its list; each application is decided under the lock of the hospital's stripe. A worker
+ * that evicts a resident carries on with the evicted resident itself, so residents are only ever handed from one
+ * thread to another through a hospital lock.
+ * <p>
+ * Hospitals order residents strictly (see {@link AssignmentHeaps}), so the resident-optimal stable matching is
+ * unique and every order of applications ends in it: the result is the same as {@link HRP#run(Matching,
+ * ResidentQueue)} with all residents queued, whatever the number of threads and however they interleave.
+ */
+public final class ParallelHRP {
+
+    // stripes per worker, so two workers rarely wait on the same stripe for different hospitals
+    private static final int STRIPES_PER_WORKER = 16;
+
+    private final Instance instance;
+    private final AssignmentHeaps assignments;
+    // assignedHospitals[r] and the heap of a hospital are only touched under that hospital's stripe
+    private final int[] assignedHospitals;
+    // nextChoice[r] belongs to whichever worker is placing r
+    private final int[] nextChoice;
+    private final Object[] stripes;
+    private final AtomicInteger nextFresh = new AtomicInteger();
+
+    private ParallelHRP(Instance instance, int workers) {
+        this.instance = instance;
+        this.assignments = new AssignmentHeaps(instance);
+        this.assignedHospitals = new int[instance.numResidents()];
+        Arrays.fill(assignedHospitals, Matching.UNASSIGNED);
+        this.nextChoice = new int[instance.numResidents()];
+        this.stripes = new Object[Integer.highestOneBit(Math.max(1, workers * STRIPES_PER_WORKER - 1)) << 1];
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new Object();
+        }
+    }
+
+    /**
+     * Runs HRP on every resident of instance with the common pool's parallelism.
+     */
+    public static Matching run(Instance instance) {
+        return run(instance, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Runs HRP on every resident of instance with one worker per thread of pool.
+     */
+    public static Matching run(Instance instance, ForkJoinPool pool) {
+        return run(instance, pool, pool.getParallelism());
+    }
+
+    /**
+     * Runs HRP on every resident of instance with the given number of workers. One worker runs on the calling
+     * thread without a pool.
+     */
+    public static Matching run(Instance instance, int workers) {
+        checkArgument(workers > 0, "need at least one worker, got %s", workers);
+        if (workers == 1) {
+            ParallelHRP engine = new ParallelHRP(instance, 1);
+            engine.work();
+            return engine.toMatching();
+        }
+        ForkJoinPool pool = new ForkJoinPool(workers);
+        try {
+            return run(instance, pool, workers);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static Matching run(Instance instance, ForkJoinPool pool, int workers) {
+        ParallelHRP engine = new ParallelHRP(instance, workers);
+        List<ForkJoinTask<?>> tasks = new ArrayList<>(workers);
+        for (int i = 0; i < workers; i++) {
+            tasks.add(pool.submit(engine::work));
+        }
+        tasks.forEach(ForkJoinTask::join);
+        return engine.toMatching();
+    }
+
+    private void work() {
+        int numResidents = instance.numResidents();
+        int resident = nextFresh.getAndIncrement();
+        while (resident < numResidents) {
+            PreferenceLists choices = instance.acceptableHospitals();
+            if (nextChoice[resident] == choices.length(resident)) {
+                // out of hospitals, stays unassigned
+                resident = nextFresh.getAndIncrement();
+                continue;
+            }
+            int evicted = apply(resident, choices.get(resident, nextChoice[resident]++));
+            if (evicted == Matching.UNASSIGNED) {
+                // accepted
+                resident = nextFresh.getAndIncrement();
+            } else if (evicted != resident) {
+                resident = evicted;
+            }
+        }
+    }
+
+    /**
+     * r applies to h.
+     *
+     * @return {@link Matching#UNASSIGNED} if h accepts r without dropping anyone, r if h turns r down, or the
+     * resident h dropped to take r
+     */
+    private int apply(int r, int h) {
+        int rank = instance.hospitalRankOf(h, r);
+        synchronized (stripes[h & (stripes.length - 1)]) {
+            if (assignments.size(h) < instance.capacityOf(h)) {
+                assignments.add(h, r, rank);
+                assignedHospitals[r] = h;
+                return Matching.UNASSIGNED;
+            }
+            int worst = assignments.worst(h);
+            if (worst == Matching.UNASSIGNED
+                    || !AssignmentHeaps.isWorse(assignments.rankOf(worst), worst, rank, r)) {
+                return r;
+            }
+            assignments.remove(h, worst);
+            assignedHospitals[worst] = Matching.UNASSIGNED;
+            assignments.add(h, r, rank);
+            assignedHospitals[r] = h;
+            return worst;
+        }
+    }
+
+    // every worker has joined, so the assignments are safe to read from here on
+    private Matching toMatching() {
+        Matching matching = new Matching(instance);
+        for (int r = 0; r < assignedHospitals.length; r++) {
+            if (assignedHospitals[r] != Matching.UNASSIGNED) {
+                matching.assign(r, assignedHospitals[r]);
+            }
+        }
+        return matching;
+    }
+}
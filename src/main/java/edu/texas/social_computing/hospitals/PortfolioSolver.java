@@ -0,0 +1,229 @@
+package edu.texas.social_computing.hospitals;
+
+import com.google.auto.value.AutoValue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Solves one instance several times at once, each run picking residents in its own seeded order (see
+ * {@link ResidentQueue#shuffled}), and keeps the best result by {@link MatchingScore}. HRPP and RHRP end in
+ * different matchings, after different amounts of work, depending on that order.
+ * <p>
+ * A run's score is only known once it finishes, so "falling behind" is measured in time: once a run has
+ * finished, every run that has been going for more than cutoffFactor times as long as the fastest finished run
+ * is cancelled. That also stops orders on which HRPP wanders a long way before converging or finding a cycle.
+ */
+public final class PortfolioSolver {
+
+    public static final double DEFAULT_CUTOFF_FACTOR = 3;
+
+    // how often the coordinating thread looks for runs to cancel
+    private static final long POLL_MILLIS = 10;
+
+    public enum Solver {
+        HRPP,
+        RHRP
+    }
+
+    /**
+     * The best run of a portfolio.
+     */
+    @AutoValue
+    public abstract static class Result {
+
+        public abstract Matching getMatching();
+
+        /**
+         * @return the seed of the order the best run picked residents in
+         */
+        public abstract long getSeed();
+
+        public abstract MatchingScore getScore();
+
+        public abstract int getFinishedRuns();
+
+        public abstract int getCancelledRuns();
+    }
+
+    private PortfolioSolver() {
+    }
+
+    /**
+     * Runs the seeds firstSeed, firstSeed + 1 and so on, one per thread of the common pool.
+     */
+    public static Result run(Instance instance, Solver solver, long firstSeed) {
+        return run(instance, solver, firstSeed, ForkJoinPool.commonPool().getParallelism(), DEFAULT_CUTOFF_FACTOR);
+    }
+
+    /**
+     * Runs the seeds firstSeed up to firstSeed + runs - 1, each on a thread of its own.
+     *
+     * @throws IllegalStateException if every run was cancelled or failed
+     */
+    public static Result run(Instance instance, Solver solver, long firstSeed, int runs, double cutoffFactor) {
+        checkArgument(runs > 0, "need at least one run, got %s", runs);
+        checkArgument(cutoffFactor >= 1, "cutoff factor %s below 1", cutoffFactor);
+        ForkJoinPool pool = new ForkJoinPool(runs);
+        try {
+            return new Portfolio(instance, solver, firstSeed, runs, cutoffFactor, pool).run();
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static final class Portfolio {
+        private final Instance instance;
+        private final Solver solver;
+        private final double cutoffFactor;
+        private final List<Run> runs = new ArrayList<>();
+        private final ExecutorCompletionService<Run> finished;
+
+        Portfolio(Instance instance, Solver solver, long firstSeed, int numRuns, double cutoffFactor,
+                  ForkJoinPool pool) {
+            this.instance = instance;
+            this.solver = solver;
+            this.cutoffFactor = cutoffFactor;
+            this.finished = new ExecutorCompletionService<>(pool);
+            for (int i = 0; i < numRuns; i++) {
+                runs.add(new Run(firstSeed + i));
+            }
+        }
+
+        Result run() {
+            for (Run run : runs) {
+                finished.submit(() -> solve(run));
+            }
+            Run best = null;
+            int finishedRuns = 0;
+            int cancelledRuns = 0;
+            long fastestNanos = Long.MAX_VALUE;
+            for (int pending = runs.size(); pending > 0; ) {
+                Future<Run> done = poll();
+                if (done == null) {
+                    if (fastestNanos != Long.MAX_VALUE) {
+                        cancelLaggards((long) (fastestNanos * cutoffFactor));
+                    }
+                    continue;
+                }
+                pending--;
+                Run run = get(done);
+                if (run.matching == null) {
+                    cancelledRuns++;
+                    continue;
+                }
+                finishedRuns++;
+                fastestNanos = Math.min(fastestNanos, run.nanos);
+                // right away too, runs finishing one after the other would otherwise keep the laggards going
+                cancelLaggards((long) (fastestNanos * cutoffFactor));
+                if (best == null || run.score.isBetterThan(best.score)
+                        || (!best.score.isBetterThan(run.score) && run.seed < best.seed)) {
+                    best = run;
+                }
+            }
+            if (best == null) {
+                throw new IllegalStateException("every run of the portfolio was cancelled");
+            }
+            return new AutoValue_PortfolioSolver_Result(best.matching, best.seed, best.score, finishedRuns,
+                    cancelledRuns);
+        }
+
+        private Run solve(Run run) {
+            run.startNanos = System.nanoTime();
+            run.started = true;
+            try {
+                Matching matching;
+                if (solver == Solver.HRPP) {
+                    matching = HRPP.run(instance, run, HRPPCheckpoint.NONE, HRPPLimits.DEFAULT,
+                            () -> ResidentQueue.shuffled(instance.numResidents(), run.seed));
+                } else {
+                    ResidentQueue queue = ResidentQueue.shuffled(instance.numResidents(), run.seed);
+                    for (int r = 0; r < instance.numResidents(); r++) {
+                        queue.add(r);
+                    }
+                    Matching fresh = new Matching(instance);
+                    fresh.setListener(run);
+                    matching = RHRP.run(fresh, queue);
+                }
+                run.nanos = System.nanoTime() - run.startNanos;
+                run.score = MatchingScore.of(matching);
+                run.matching = matching;
+            } catch (CancellationException e) {
+                // a laggard, run.matching stays null
+            }
+            return run;
+        }
+
+        private void cancelLaggards(long cutoffNanos) {
+            long now = System.nanoTime();
+            for (Run run : runs) {
+                if (run.started && now - run.startNanos > cutoffNanos) {
+                    run.cancelled = true;
+                }
+            }
+        }
+
+        private Future<Run> poll() {
+            try {
+                return finished.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                runs.forEach(run -> run.cancelled = true);
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("interrupted while waiting for the portfolio", e);
+            }
+        }
+
+        private Run get(Future<Run> done) {
+            try {
+                return done.get();
+            } catch (InterruptedException | ExecutionException e) {
+                // the other runs would otherwise keep their threads busy
+                runs.forEach(run -> run.cancelled = true);
+                if (e instanceof InterruptedException) {
+                    Thread.currentThread().interrupt();
+                }
+                throw new IllegalStateException("a portfolio run failed", e.getCause() == null ? e : e.getCause());
+            }
+        }
+    }
+
+    /**
+     * One seeded run. Listens to its own solve only to stop it once the portfolio cancels it.
+     */
+    private static final class Run implements SolverListener {
+        final long seed;
+        volatile boolean started;
+        volatile long startNanos;
+        volatile boolean cancelled;
+        // written by the run's thread, read after its future completed
+        Matching matching;
+        MatchingScore score;
+        long nanos;
+
+        Run(long seed) {
+            this.seed = seed;
+        }
+
+        @Override
+        public void proposal(int r, int h) {
+            if (cancelled) {
+                throw new CancellationException();
+            }
+        }
+
+        @Override
+        public void proximityViolations(int count) {
+            if (cancelled) {
+                throw new CancellationException();
+            }
+        }
+    }
+}
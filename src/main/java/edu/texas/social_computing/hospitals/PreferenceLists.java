@@ -0,0 +1,207 @@
+package edu.texas.social_computing.hospitals;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkElementIndex;
+
+/**
+ * One preference list per owner (a hospital or a resident) in compressed sparse row form: owner o's list is
+ * {@code members()[start(o)]} up to {@code members()[end(o)]}, best first. Two int arrays hold every list, so
+ * millions of lists cost no more than their entries and one offset each. Immutable.
+ * <p>
+ * The solvers walk a list through {@link #start}, {@link #end} and {@link #members()} in place; {@link #toArray}
+ * copies and is meant for callers that are not on a hot path.
+ */
+final class PreferenceLists {
+
+    private final int[] offsets;
+    private final int[] members;
+
+    private PreferenceLists(int[] offsets, int[] members) {
+        this.offsets = offsets;
+        this.members = members;
+    }
+
+    /**
+     * @param offsets one more than there are owners: owner o's list is members[offsets[o]] up to
+     *                members[offsets[o + 1]]. Used as is, like members, and must not be modified afterwards.
+     */
+    static PreferenceLists of(int[] offsets, int[] members) {
+        checkArgument(offsets.length > 0 && offsets[0] == 0 && offsets[offsets.length - 1] <= members.length,
+                "offsets do not fit %s members", members.length);
+        return new PreferenceLists(offsets, members);
+    }
+
+    static PreferenceLists of(int[]... lists) {
+        int[] offsets = new int[lists.length + 1];
+        for (int o = 0; o < lists.length; o++) {
+            offsets[o + 1] = offsets[o] + lists[o].length;
+        }
+        int[] members = new int[offsets[lists.length]];
+        for (int o = 0; o < lists.length; o++) {
+            System.arraycopy(lists[o], 0, members, offsets[o], lists[o].length);
+        }
+        return new PreferenceLists(offsets, members);
+    }
+
+    /**
+     * @return the lists of parts[0]'s owners, then those of parts[1]'s and so on
+     */
+    static PreferenceLists concat(List<PreferenceLists> parts) {
+        int numOwners = 0;
+        int numMembers = 0;
+        for (PreferenceLists part : parts) {
+            numOwners += part.size();
+            numMembers += part.totalLength();
+        }
+        int[] offsets = new int[numOwners + 1];
+        int[] members = new int[numMembers];
+        int owner = 0;
+        for (PreferenceLists part : parts) {
+            int base = offsets[owner];
+            System.arraycopy(part.members, 0, members, base, part.totalLength());
+            for (int o = 0; o < part.size(); o++) {
+                offsets[++owner] = base + part.offsets[o + 1];
+            }
+        }
+        return new PreferenceLists(offsets, members);
+    }
+
+    int size() {
+        return offsets.length - 1;
+    }
+
+    int totalLength() {
+        return offsets[offsets.length - 1];
+    }
+
+    int start(int owner) {
+        return offsets[owner];
+    }
+
+    int end(int owner) {
+        return offsets[owner + 1];
+    }
+
+    int length(int owner) {
+        return offsets[owner + 1] - offsets[owner];
+    }
+
+    /**
+     * @return the i-th member of owner's list. i is not checked against the list's length.
+     */
+    int get(int owner, int i) {
+        return members[offsets[owner] + i];
+    }
+
+    /**
+     * @return the array holding every list. Shared and must not be modified.
+     */
+    int[] members() {
+        return members;
+    }
+
+    int[] toArray(int owner) {
+        return Arrays.copyOfRange(members, offsets[owner], offsets[owner + 1]);
+    }
+
+    /**
+     * @return owner's list as the ids of its members, computed on access
+     */
+    List<String> ids(int owner, List<String> memberIds) {
+        return new IdView(this, owner, memberIds);
+    }
+
+    /**
+     * @return these lists keeping only the members for which keep(owner, member) holds. Returns this when every
+     * member is kept, which is the norm for consistent input.
+     */
+    PreferenceLists filter(MemberPredicate keep) {
+        int[] kept = null;
+        int size = 0;
+        int[] keptOffsets = null;
+        for (int o = 0; o < size(); o++) {
+            for (int i = offsets[o]; i < offsets[o + 1]; i++) {
+                if (keep.test(o, members[i])) {
+                    if (kept != null) {
+                        kept[size] = members[i];
+                    }
+                    size++;
+                } else if (kept == null) {
+                    kept = Arrays.copyOf(members, members.length);
+                    keptOffsets = Arrays.copyOf(offsets, offsets.length);
+                }
+            }
+            if (keptOffsets != null) {
+                keptOffsets[o + 1] = size;
+            }
+        }
+        return kept == null ? this : new PreferenceLists(keptOffsets, Arrays.copyOf(kept, size));
+    }
+
+    /**
+     * @return these lists with the lists of some owners replaced. Copies every list, which is a couple of
+     * array copies per unchanged run of owners.
+     */
+    PreferenceLists withReplaced(Map<Integer, int[]> replacements) {
+        int[] owners = replacements.keySet().stream().mapToInt(Integer::intValue).sorted().toArray();
+        int numMembers = totalLength();
+        for (int o : owners) {
+            numMembers += replacements.get(o).length - length(o);
+        }
+        int[] newOffsets = new int[offsets.length];
+        int[] newMembers = new int[numMembers];
+        int from = 0;
+        int shift = 0;
+        for (int o : owners) {
+            // owners from..o-1 are unchanged
+            System.arraycopy(members, offsets[from], newMembers, offsets[from] + shift, offsets[o] - offsets[from]);
+            for (int u = from; u < o; u++) {
+                newOffsets[u + 1] = offsets[u + 1] + shift;
+            }
+            int[] list = replacements.get(o);
+            System.arraycopy(list, 0, newMembers, newOffsets[o], list.length);
+            shift += list.length - length(o);
+            newOffsets[o + 1] = offsets[o + 1] + shift;
+            from = o + 1;
+        }
+        System.arraycopy(members, offsets[from], newMembers, offsets[from] + shift, totalLength() - offsets[from]);
+        for (int u = from; u < size(); u++) {
+            newOffsets[u + 1] = offsets[u + 1] + shift;
+        }
+        return new PreferenceLists(newOffsets, newMembers);
+    }
+
+    @FunctionalInterface
+    interface MemberPredicate {
+        boolean test(int owner, int member);
+    }
+
+    private static final class IdView extends AbstractList<String> implements RandomAccess {
+        private final PreferenceLists lists;
+        private final int owner;
+        private final List<String> memberIds;
+
+        IdView(PreferenceLists lists, int owner, List<String> memberIds) {
+            this.lists = lists;
+            this.owner = owner;
+            this.memberIds = memberIds;
+        }
+
+        @Override
+        public String get(int i) {
+            checkElementIndex(i, size());
+            return memberIds.get(lists.get(owner, i));
+        }
+
+        @Override
+        public int size() {
+            return lists.length(owner);
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package edu.texas.social_computing.hospitals;
+
+import java.util.Arrays;
+
+/**
+ * The current view of every resident's preferences, which is some modified version of the initial preferences
+ * (see {@link Instance#residentPreferences()}). The solvers narrow a resident's view while trying to fix a
+ * couple and widen it back afterwards.
+ * <p>
+ * A view is the suffix of the initial list starting at a cursor, optionally restricted to a single location.
+ * An unrestricted view is never materialized, so moving its cursor and widening it are O(1) and allocate nothing.
+ * Restricting a view lists the positions of its hospitals in the location once, in time linear in the list, so
+ * lookups in a restricted view stay O(1) as well.
+ */
+final class PreferenceViews {
+
+    // not Instance.NONE: restricting to the location of an unassigned partner must empty the view
+    private static final int ANY_LOCATION = Integer.MIN_VALUE;
+
+    private Instance instance;
+    // r's view is its initial list from starts[r] on, keeping only hospitals in locationFilters[r]
+    // unless ANY_LOCATION
+    private final int[] starts;
+    private final int[] locationFilters;
+    // while r's view is restricted to a location: the initial list positions of the hospitals in its view, and at
+    // index j - starts[r] the number of those before initial position j. Null otherwise.
+    private final int[][] filteredPositions;
+    private final int[][] filteredRanks;
+
+    PreferenceViews(Instance instance) {
+        this.instance = instance;
+        this.starts = new int[instance.numResidents()];
+        this.locationFilters = new int[instance.numResidents()];
+        Arrays.fill(locationFilters, ANY_LOCATION);
+        this.filteredPositions = new int[instance.numResidents()][];
+        this.filteredRanks = new int[instance.numResidents()][];
+    }
+
+    // see Matching#rebase
+    void rebase(Instance changed) {
+        instance = changed;
+        for (int r = 0; r < locationFilters.length; r++) {
+            if (locationFilters[r] != ANY_LOCATION) {
+                indexFilter(r);
+            }
+        }
+    }
+
+    /**
+     * @return the position in r's initial list at which its current view starts
+     */
+    int start(int r) {
+        return starts[r];
+    }
+
+    boolean contains(int r, int h) {
+        int initialRank = instance.residentRankOf(r, h);
+        return initialRank != Instance.UNRANKED && initialRank >= starts[r] && passesFilter(r, h);
+    }
+
+    /**
+     * @return the position of h in r's current view, or {@link Instance#UNRANKED} if it is not in the view. O(1).
+     */
+    int rankOf(int r, int h) {
+        if (!contains(r, h)) {
+            return Instance.UNRANKED;
+        }
+        int initialRank = instance.residentRankOf(r, h);
+        if (locationFilters[r] == ANY_LOCATION) {
+            return initialRank - starts[r];
+        }
+        return filteredRanks[r][initialRank - starts[r]];
+    }
+
+    /**
+     * @return the number of hospitals in r's current view. O(1).
+     */
+    int size(int r) {
+        if (locationFilters[r] == ANY_LOCATION) {
+            return Math.max(0, instance.residentPreferences().length(r) - starts[r]);
+        }
+        return filteredPositions[r].length;
+    }
+
+    /**
+     * @return the hospital at position i of r's current view. O(1).
+     */
+    int hospitalAt(int r, int i) {
+        PreferenceLists initial = instance.residentPreferences();
+        if (locationFilters[r] == ANY_LOCATION) {
+            return initial.get(r, starts[r] + i);
+        }
+        int[] positions = filteredPositions[r];
+        if (i < 0 || i >= positions.length) {
+            throw new IndexOutOfBoundsException(Integer.toString(i));
+        }
+        return initial.get(r, positions[i]);
+    }
+
+    /**
+     * @return a copy of r's current view, best first. Meant for output, the solvers walk the view in place.
+     */
+    int[] toArray(int r) {
+        PreferenceLists initial = instance.residentPreferences();
+        int from = initial.start(r) + Math.min(starts[r], initial.length(r));
+        return Arrays.stream(initial.members(), from, initial.end(r))
+                .filter(h -> passesFilter(r, h))
+                .toArray();
+    }
+
+    /**
+     * Drops every hospital that is not in the given location from r's current view.
+     */
+    void restrictToLocation(int r, int locationId) {
+        locationFilters[r] = locationId;
+        indexFilter(r);
+    }
+
+    /**
+     * Sets r's view to its initial preferences, skipping the first rankProgress entries.
+     */
+    void resetToProgress(int r, int rankProgress) {
+        starts[r] = rankProgress;
+        clearFilter(r);
+    }
+
+    void reset(int r) {
+        resetToProgress(r, 0);
+    }
+
+    /**
+     * @return the location r's view is restricted to, in a form only meant to be handed back to
+     * {@link #restore(int, int, int)}
+     */
+    int locationFilter(int r) {
+        return locationFilters[r];
+    }
+
+    /**
+     * Sets r's view back to one saved through {@link #start(int)} and {@link #locationFilter(int)}.
+     */
+    void restore(int r, int start, int locationFilter) {
+        starts[r] = start;
+        if (locationFilter == ANY_LOCATION) {
+            clearFilter(r);
+        } else {
+            restrictToLocation(r, locationFilter);
+        }
+    }
+
+    private boolean passesFilter(int r, int h) {
+        return locationFilters[r] == ANY_LOCATION || instance.locationOf(h) == locationFilters[r];
+    }
+
+    private void clearFilter(int r) {
+        locationFilters[r] = ANY_LOCATION;
+        filteredPositions[r] = null;
+        filteredRanks[r] = null;
+    }
+
+    // lists the positions of r's restricted view, see filteredPositions
+    private void indexFilter(int r) {
+        PreferenceLists initial = instance.residentPreferences();
+        int[] members = initial.members();
+        int offset = initial.start(r);
+        int from = Math.min(starts[r], initial.length(r));
+        int[] ranks = new int[initial.length(r) - from];
+        int count = 0;
+        for (int j = from; j < initial.length(r); j++) {
+            ranks[j - from] = count;
+            if (passesFilter(r, members[offset + j])) {
+                count++;
+            }
+        }
+        int[] positions = new int[count];
+        for (int j = from, k = 0; j < initial.length(r); j++) {
+            if (passesFilter(r, members[offset + j])) {
+                positions[k++] = j;
+            }
+        }
+        filteredPositions[r] = positions;
+        filteredRanks[r] = ranks;
+    }
+}
@@ -0,0 +1,99 @@
+package edu.texas.social_computing.hospitals;
+
+import java.util.Arrays;
+
+/**
+ * The couples whose partners currently sit in different locations (or where only one partner is assigned), in
+ * the order they started violating the proximity constraint. A couple is keyed by its lower resident index and
+ * kept in an intrusive doubly linked list over those indices, so adding, removing and finding the oldest
+ * violation are O(1) and allocate nothing.
+ */
+final class ProximityViolations {
+
+    private final int[] next;
+    private final int[] previous;
+    private final boolean[] present;
+    private int head = Instance.NONE;
+    private int tail = Instance.NONE;
+    private int size;
+
+    ProximityViolations(int numResidents) {
+        next = new int[numResidents];
+        previous = new int[numResidents];
+        present = new boolean[numResidents];
+        Arrays.fill(next, Instance.NONE);
+        Arrays.fill(previous, Instance.NONE);
+    }
+
+    /**
+     * Records whether the couple keyed by the given resident violates the constraint. A couple that keeps
+     * violating keeps its place in the order.
+     */
+    void update(int coupleKey, boolean violating) {
+        if (violating && !present[coupleKey]) {
+            append(coupleKey);
+        } else if (!violating && present[coupleKey]) {
+            remove(coupleKey);
+        }
+    }
+
+    /**
+     * @return the key of the couple that has been violating the longest, or {@link Instance#NONE}
+     */
+    int first() {
+        return head;
+    }
+
+    /**
+     * @return the key of the couple after the given one, or {@link Instance#NONE}
+     */
+    int next(int coupleKey) {
+        return next[coupleKey];
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return the keys of the violating couples, oldest violation first
+     */
+    int[] toArray() {
+        int[] keys = new int[size];
+        int i = 0;
+        for (int coupleKey = head; coupleKey != Instance.NONE; coupleKey = next[coupleKey]) {
+            keys[i++] = coupleKey;
+        }
+        return keys;
+    }
+
+    private void append(int coupleKey) {
+        present[coupleKey] = true;
+        previous[coupleKey] = tail;
+        next[coupleKey] = Instance.NONE;
+        if (tail == Instance.NONE) {
+            head = coupleKey;
+        } else {
+            next[tail] = coupleKey;
+        }
+        tail = coupleKey;
+        size++;
+    }
+
+    private void remove(int coupleKey) {
+        present[coupleKey] = false;
+        if (previous[coupleKey] == Instance.NONE) {
+            head = next[coupleKey];
+        } else {
+            next[previous[coupleKey]] = next[coupleKey];
+        }
+        if (next[coupleKey] == Instance.NONE) {
+            tail = previous[coupleKey];
+        } else {
+            previous[next[coupleKey]] = previous[coupleKey];
+        }
+        next[coupleKey] = Instance.NONE;
+        previous[coupleKey] = Instance.NONE;
+        size--;
+    }
+}
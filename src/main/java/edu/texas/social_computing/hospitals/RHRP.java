@@ -1,7 +1,5 @@
 package edu.texas.social_computing.hospitals;
 
-import com.google.common.collect.ImmutableList;
-
 import java.io.FileNotFoundException;
 import java.util.*;
 
@@ -22,66 +20,97 @@ public class RHRP {
                                ResidentTable residentTable,
                                Queue<Resident> freeResidents,
                                Matching existingMatching) {
+        ResidentQueue freeResidentIndices = ResidentQueue.fifo(residentTable.size());
+        while (!freeResidents.isEmpty()) {
+            freeResidentIndices.add(residentTable.indexOf(freeResidents.poll().getId()));
+        }
+        return run(existingMatching, freeResidentIndices);
+    }
+
+    public static Matching run(HospitalTable hospitalTable,
+                               ResidentTable residentTable,
+                               Queue<Resident> freeResidents) {
+        Matching m = new Matching(Instance.create(hospitalTable, residentTable));
+        return run(hospitalTable, residentTable, freeResidents, m);
+    }
+
+    /**
+     * Runs RHRP on the residents (by index) in freeResidents, starting from an existing matching.
+     */
+    static Matching run(Matching existingMatching, ResidentQueue freeResidents) {
+        long start = System.nanoTime();
         Matching m = existingMatching;
+        Instance instance = m.getInstance();
+        m.setTermination(Termination.CONVERGED);
 
         while (!freeResidents.isEmpty()) {
-            Resident currentResident = freeResidents.poll();
+            if (m.getListener().shouldStop(m)) {
+                m.setTermination(Termination.STOPPED);
+                break;
+            }
+            int currentResident = freeResidents.poll();
             if (m.hasAssignment(currentResident)) continue;
 
             // if the current resident has no more preferences move to next in q
-            int residentRankProgress = residentTable.getResidentRankProgress(currentResident);
-            if (currentResident.getPreferences().isEmpty() || residentRankProgress >= currentResident.getPreferences().size()) {
+            PreferenceViews preferenceViews = m.getPreferenceViews();
+            int residentRankProgress = m.getRankProgress(currentResident);
+            if (residentRankProgress >= preferenceViews.size(currentResident)) {
                 continue;
             }
 
             // get current resident's most preferred hospital
-            Hospital hospital = hospitalTable.getHospitalById(currentResident.getPreferences().get(residentRankProgress));
-            residentTable.incrementResidentRankProgress(currentResident);
+            int hospital = preferenceViews.hospitalAt(currentResident, residentRankProgress);
+            m.incrementRankProgress(currentResident);
 
-            if (!currentResident.hasPartner()) {
-                tryToMatch(hospital, currentResident, residentTable, freeResidents, m);
+            if (!instance.hasPartner(currentResident)) {
+                tryToMatch(hospital, currentResident, freeResidents, m);
             }
 
             // if current resident has a partner, update partner's pref to their most preferred hospital
-            if (currentResident.hasPartner()) {
+            if (instance.hasPartner(currentResident)) {
                 // get the next hospital from partner's pref list and increment the rank progress
                 // we always want this to happen unless the partner is out of preferences so the preference lists remain in lock step
-                Resident partner = residentTable.getResidentById(currentResident.getPartnerId());
-                int partnerRankProgress = residentTable.getResidentRankProgress(partner);
-                if (!partner.getPreferences().isEmpty() && partnerRankProgress < partner.getPreferences().size()) {
-                    Hospital partnerHospital = hospitalTable.getHospitalById(partner.getPreferences().get(residentTable.getResidentRankProgress(partner)));
-                    residentTable.incrementResidentRankProgress(partner);
-                    tryToMatchCouple(hospital, currentResident, partnerHospital, partner, residentTable, freeResidents, m);
+                int partner = instance.partnerOf(currentResident);
+                int partnerRankProgress = m.getRankProgress(partner);
+                if (partnerRankProgress < preferenceViews.size(partner)) {
+                    int partnerHospital = preferenceViews.hospitalAt(partner, partnerRankProgress);
+                    m.incrementRankProgress(partner);
+                    tryToMatchCouple(hospital, currentResident, partnerHospital, partner, freeResidents, m);
                 } else {
-                    tryToMatch(hospital, currentResident, residentTable, freeResidents, m);
+                    tryToMatch(hospital, currentResident, freeResidents, m);
                 }
             }
 
-            giveSinglesAnotherChance(m, residentTable, hospitalTable, freeResidents);
+            giveSinglesAnotherChance(m, freeResidents);
             // if i have a partner check if either of us are unmatched
-            if (currentResident.hasPartner()) {
-                Resident partner = residentTable.getResidentById(currentResident.getPartnerId());
+            if (instance.hasPartner(currentResident)) {
+                int partner = instance.partnerOf(currentResident);
                 // if current is not match OR partner is not matched AND has a preference then unassign both and add them to the q
-                if (!m.hasAssignment(currentResident) || (!m.hasAssignment(partner) && !partner.getPreferences().isEmpty())) {
-                    m.unassign(currentResident, hospital);
-                    m.unassign(partner, m.getAssignedHospital(partner));
-                    if (!freeResidents.contains(currentResident)) freeResidents.add(currentResident);
-                    if (!freeResidents.contains(partner)) freeResidents.add(partner);
+                if (!m.hasAssignment(currentResident)
+                        || (!m.hasAssignment(partner) && preferenceViews.size(partner) != 0)) {
+                    m.unassign(currentResident);
+                    m.unassign(partner);
+                    freeResidents.add(currentResident);
+                    freeResidents.add(partner);
                 }
                 // if i dont have a partner check if im unmatched
             } else {
-                if (!m.hasAssignment(currentResident) && !freeResidents.contains(currentResident)) {
+                if (!m.hasAssignment(currentResident)) {
                     freeResidents.add(currentResident);
                 }
             }
         }
+        m.getListener().phaseFinished(SolverListener.Phase.SOLVE, System.nanoTime() - start);
         return m;
     }
 
-    public static Matching run(HospitalTable hospitalTable,
-                               ResidentTable residentTable,
-                               Queue<Resident> freeResidents) {
-        return run(hospitalTable, residentTable, freeResidents, new Matching());
+    /**
+     * Settles the residents in queue into a matching that was stable before some change, see {@link Rematcher}.
+     * Starts with the singles check, which the change may have made worth running even if the queue is empty.
+     */
+    static Matching rematch(Matching matching, ResidentQueue queue) {
+        giveSinglesAnotherChance(matching, queue);
+        return run(matching, queue);
     }
 
     public static void main(String[] args) throws FileNotFoundException {
@@ -119,38 +148,43 @@ public class RHRP {
         System.out.println("Done");
     }
 
-    private static void tryToMatch(Hospital h, Resident resident,
-                                   ResidentTable residentTable, Queue<Resident> freeResidents, Matching m) {
+    private static void tryToMatch(int h, int resident, ResidentQueue freeResidents, Matching m) {
+        m.getListener().proposal(resident, h);
 
         // Only if the hospital has this resident on its pref list can it accept the resident
-        if (h.getPreferences().contains(resident.getId())) {
+        if (m.getInstance().isRanked(h, resident)) {
             m.assign(resident, h);
 
             // if hospital now has too many residents
             if (m.isOverSubscribed(h)) {
-                fixOverSubscribed(h, freeResidents, residentTable, m);
+                fixOverSubscribed(h, resident, freeResidents, m);
             }
+        } else {
+            m.getListener().rejection(resident, h);
         }
     }
 
-    private static void tryToMatchCouple(Hospital h, Resident currentResident, Hospital partnerHospital,
-                                         Resident partner, ResidentTable residentTable,
-                                         Queue<Resident> freeResidents, Matching m) {
+    private static void tryToMatchCouple(int h, int currentResident, int partnerHospital, int partner,
+                                         ResidentQueue freeResidents, Matching m) {
         // if both residents are candidates for the hospital
         // and neither are the worst
         // and they wont kick each other out if its the same hospital
         // then assign both
         // else put them back in the queue if they arent in it
-        if (h.getPreferences().contains(currentResident.getId()) && partnerHospital.getPreferences().contains(partner.getId())) {
-            if (!h.getId().equals(partnerHospital.getId())) {
-                if (m.isRankedHigherThanWorstMatch(h, currentResident.getId()) && m.isRankedHigherThanWorstMatch(partnerHospital, partner.getId())) {
+        Instance instance = m.getInstance();
+        SolverListener listener = m.getListener();
+        listener.proposal(currentResident, h);
+        listener.proposal(partner, partnerHospital);
+        if (instance.isRanked(h, currentResident) && instance.isRanked(partnerHospital, partner)) {
+            if (h != partnerHospital) {
+                if (m.isRankedHigherThanWorstMatch(h, currentResident) && m.isRankedHigherThanWorstMatch(partnerHospital, partner)) {
                     m.assign(currentResident, h);
                     m.assign(partner, partnerHospital);
                     if (m.isOverSubscribed(h)) {
-                        fixOverSubscribed(h, freeResidents, residentTable, m);
+                        fixOverSubscribed(h, currentResident, freeResidents, m);
                     }
                     if (m.isOverSubscribed(partnerHospital)) {
-                        fixOverSubscribed(partnerHospital, freeResidents, residentTable, m);
+                        fixOverSubscribed(partnerHospital, partner, freeResidents, m);
                     }
                     return;
                 }
@@ -159,67 +193,63 @@ public class RHRP {
                     m.assign(currentResident, h);
                     m.assign(partner, partnerHospital);
                     if (m.isOverSubscribed(h)) {
-                        fixOverSubscribed(h, freeResidents, residentTable, m);
+                        fixOverSubscribed(h, currentResident, freeResidents, m);
                     }
                     if (m.isOverSubscribed(partnerHospital)) {
-                        fixOverSubscribed(partnerHospital, freeResidents, residentTable, m);
+                        fixOverSubscribed(partnerHospital, partner, freeResidents, m);
                     }
                     return;
                 }
             }
         } else {
-            if (!freeResidents.contains(currentResident)) freeResidents.add(currentResident);
-            if (!freeResidents.contains(partner)) freeResidents.add(partner);
+            freeResidents.add(currentResident);
+            freeResidents.add(partner);
         }
+        listener.rejection(currentResident, h);
+        listener.rejection(partner, partnerHospital);
     }
 
-    private static boolean worstTwoResidents(Hospital hospital, Resident r1, Resident r2, Matching m) {
-        ImmutableList<Resident> residents =
-                ImmutableList.<Resident>builder()
-                        .addAll(m.getAssignedResidents(hospital))
-                        .add(r1)
-                        .add(r2)
-                        .build();
-        List<Resident> reverseRankSortedResidents = residents.stream()
-                .sorted(Comparator.comparing(hospital::rankOf))
-                .collect(ImmutableList.toImmutableList())
-                .reverse();
-
-        // if either the violating resident or its partner are in one of the first two positions of this
-        // list, i.e. are either the worst or second worst ranked of this group by this hospital,
-        // then there wasn't room for both at this hospital, and not a violation
-        return reverseRankSortedResidents.indexOf(r1) < 2 || reverseRankSortedResidents.indexOf(r2) < 2;
+    private static boolean worstTwoResidents(int hospital, int r1, int r2, Matching m) {
+        // if either the violating resident or its partner would be either the worst or second worst ranked of
+        // this group by this hospital, then there wasn't room for both at this hospital, and not a violation
+        return !m.fitsAboveWorst(hospital, r1, r2);
     }
 
-    private static void fixOverSubscribed(Hospital h, Queue<Resident> freeResidents, ResidentTable residentTable, Matching m) {
-        Resident worstResident = m.getWorstAssignedResident(h);
+    // applicant is the resident whose assignment over-subscribed h
+    private static void fixOverSubscribed(int h, int applicant, ResidentQueue freeResidents, Matching m) {
+        SolverListener listener = m.getListener();
+        int worstResident = m.getWorstAssignedResident(h);
 
         // unassign the worst resident then add them back to the queue
-        m.unassign(worstResident, h);
-        if (!freeResidents.contains(worstResident)) freeResidents.add(worstResident);
+        m.unassign(worstResident);
+        freeResidents.add(worstResident);
+        if (worstResident == applicant) {
+            listener.rejection(worstResident, h);
+        } else {
+            listener.eviction(worstResident, h);
+        }
 
-        if (worstResident.hasPartner()) {
+        if (m.getInstance().hasPartner(worstResident)) {
             // unassign the worst resident's partner and add the partner back to the queue
-            Resident worstResidentPartner = residentTable.getResidentById(worstResident.getPartnerId());
-            m.unassign(worstResidentPartner, m.getAssignedHospital(worstResidentPartner));
-            if (!freeResidents.contains(worstResidentPartner)) freeResidents.add(worstResidentPartner);
+            int worstResidentPartner = m.getInstance().partnerOf(worstResident);
+            int partnerHospital = m.getAssignedHospital(worstResidentPartner);
+            m.unassign(worstResidentPartner);
+            freeResidents.add(worstResidentPartner);
+            if (partnerHospital != Matching.UNASSIGNED) {
+                listener.eviction(worstResidentPartner, partnerHospital);
+            }
         }
     }
 
-    private static void giveSinglesAnotherChance(
-            Matching matching,
-            ResidentTable residentTable,
-            HospitalTable hospitalTable,
-            Queue<Resident> unmatchedQueue) {
-
-        residentTable.getAll().stream()
-                .filter(resident -> !resident.hasPartner())
-                .filter(matching::hasAssignment)
-                .filter(resident -> HRPP.canDoBetter(matching, resident, hospitalTable))
-                .forEach(resident -> {
-                    residentTable.resetResidentRankProgress(resident);
-                    matching.unassign(resident, matching.getAssignedHospital(resident));
-                    unmatchedQueue.add(resident);
-                });
+    private static void giveSinglesAnotherChance(Matching matching, ResidentQueue unmatchedQueue) {
+        SolverListener listener = matching.getListener();
+        long start = System.nanoTime();
+        HRPP.forEachSingleThatCanDoBetter(matching, resident -> {
+            matching.resetRankProgress(resident);
+            matching.unassign(resident);
+            unmatchedQueue.add(resident);
+            listener.singleRequeued(resident);
+        });
+        listener.phaseFinished(SolverListener.Phase.SINGLES_RECHECK, System.nanoTime() - start);
     }
 }
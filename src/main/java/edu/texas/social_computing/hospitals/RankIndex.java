@@ -0,0 +1,125 @@
+package edu.texas.social_computing.hospitals;
+
+import java.util.Arrays;
+
+/**
+ * Inverse of a set of preference lists: given an owner (a hospital or a resident) and a member of the other
+ * side, returns the position of the member in the owner's list in constant time. Built once per
+ * {@link Instance} as an open addressing hash table over (owner, member) pairs, so memory is proportional to
+ * the total length of the lists rather than owners x members.
+ */
+final class RankIndex {
+
+    /**
+     * Rank of a member that is not on the owner's list. Worse than every real rank.
+     */
+    static final int UNRANKED = Integer.MAX_VALUE;
+
+    private static final long EMPTY = -1L;
+
+    private final long[] keys;
+    private final int[] ranks;
+    private final int mask;
+    // for an index derived with withOwners: the owners this index answers for, sorted, and the index that
+    // answers for everyone else. Both null otherwise.
+    private final int[] owners;
+    private final RankIndex base;
+
+    /**
+     * @param preferences each owner's list of members, best first
+     */
+    static RankIndex of(PreferenceLists preferences) {
+        return new RankIndex(preferences, null, preferences.totalLength(), null);
+    }
+
+    /**
+     * @return an index of preferences that answers for the changed owners from their lists in preferences and
+     * for every other owner from this index. Takes time proportional to the lists of the owners changed so far,
+     * not to the whole index, which is shared.
+     */
+    RankIndex withOwners(int[] changedOwners, PreferenceLists preferences) {
+        int[] merged = changedOwners.clone();
+        if (owners != null) {
+            merged = Arrays.copyOf(owners, owners.length + changedOwners.length);
+            System.arraycopy(changedOwners, 0, merged, owners.length, changedOwners.length);
+        }
+        merged = Arrays.stream(merged).sorted().distinct().toArray();
+        int entries = 0;
+        for (int owner : merged) {
+            entries += preferences.length(owner);
+        }
+        return new RankIndex(preferences, merged, entries, base == null ? this : base);
+    }
+
+    private RankIndex(PreferenceLists preferences, int[] owners, int entries, RankIndex base) {
+        int capacity = Integer.highestOneBit(Math.max(2, entries * 2 - 1)) << 1;
+        keys = new long[capacity];
+        ranks = new int[capacity];
+        mask = capacity - 1;
+        this.owners = owners;
+        this.base = base;
+        Arrays.fill(keys, EMPTY);
+        if (owners == null) {
+            for (int owner = 0; owner < preferences.size(); owner++) {
+                putAll(owner, preferences);
+            }
+        } else {
+            for (int owner : owners) {
+                putAll(owner, preferences);
+            }
+        }
+    }
+
+    private void putAll(int owner, PreferenceLists preferences) {
+        int[] members = preferences.members();
+        int start = preferences.start(owner);
+        for (int i = start; i < preferences.end(owner); i++) {
+            put(key(owner, members[i]), i - start);
+        }
+    }
+
+    private void put(long key, int rank) {
+        int slot = slotOf(key);
+        while (keys[slot] != EMPTY) {
+            if (keys[slot] == key) {
+                // a member listed twice keeps its best rank
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        ranks[slot] = rank;
+    }
+
+    /**
+     * @return the position of member in owner's list, or {@link #UNRANKED}
+     */
+    int rankOf(int owner, int member) {
+        if (base != null && Arrays.binarySearch(owners, owner) < 0) {
+            return base.rankOf(owner, member);
+        }
+        long key = key(owner, member);
+        int slot = slotOf(key);
+        while (keys[slot] != EMPTY) {
+            if (keys[slot] == key) {
+                return ranks[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return UNRANKED;
+    }
+
+    private static long key(int owner, int member) {
+        return ((long) owner << 32) | (member & 0xFFFFFFFFL);
+    }
+
+    private int slotOf(long key) {
+        // murmur3 finalizer, spreads the owner bits into the low bits used for the slot
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb93fe53e4ccbL;
+        key ^= key >>> 33;
+        return (int) key & mask;
+    }
+}
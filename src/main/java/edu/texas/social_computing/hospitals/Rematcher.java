@@ -0,0 +1,198 @@
+package edu.texas.social_computing.hospitals;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Applies a {@link ChangeSet} to a solved {@link Matching} and settles it again without solving from scratch.
+ * <p>
+ * Only the residents a change affects are unassigned and queued: withdrawn and edited residents, residents
+ * evicted from a hospital that lost seats, and unassigned residents that want a hospital that gained a free seat.
+ * Assigned singles that prefer such a hospital are found by the solvers' singles check. The queue is then settled
+ * with the same solver that produced the matching, so a small change costs time proportional to what it touches
+ * rather than to the size of the instance.
+ * <p>
+ * The matching is updated in place and points at the changed {@link Instance} afterwards.
+ */
+public final class Rematcher {
+
+    private final Matching matching;
+    // RHRP walks partners through their lists in lock step, so restarting one partner restarts both
+    private final boolean lockstep;
+    private final ResidentQueue queue;
+    private final Queue<Integer> freedHospitals = new ArrayDeque<>();
+
+    private Rematcher(Matching matching, boolean lockstep) {
+        this.matching = matching;
+        this.lockstep = lockstep;
+        this.queue = ResidentQueue.fifo(matching.getInstance().numResidents());
+    }
+
+    /**
+     * Applies changes to a matching found by {@link HRPP} and repairs it with HRPP.
+     */
+    public static Matching withHRPP(Matching matching, ChangeSet changes) {
+        Rematcher rematcher = new Rematcher(matching, false);
+        rematcher.apply(changes);
+        return HRPP.rematch(matching, rematcher.queue);
+    }
+
+    /**
+     * Applies changes to a matching found by {@link RHRP} and repairs it with RHRP.
+     */
+    public static Matching withRHRP(Matching matching, ChangeSet changes) {
+        Rematcher rematcher = new Rematcher(matching, true);
+        rematcher.apply(changes);
+        return RHRP.rematch(matching, rematcher.queue);
+    }
+
+    private void apply(ChangeSet changes) {
+        Instance instance = matching.getInstance();
+        ResidentTable residentTable = instance.getResidentTable();
+        HospitalTable hospitalTable = instance.getHospitalTable();
+
+        Map<Integer, Integer> newCapacities = new HashMap<>();
+        changes.getCapacities().forEach((id, capacity) -> newCapacities.put(indexOf(hospitalTable, id), capacity));
+        Map<Integer, int[]> newPreferences = new HashMap<>();
+        Map<Integer, Integer> newPartners = new HashMap<>();
+        for (String id : changes.getWithdrawals()) {
+            int r = indexOf(residentTable, id);
+            newPreferences.put(r, new int[0]);
+            if (instance.hasPartner(r)) {
+                newPartners.put(r, Instance.NONE);
+                newPartners.put(instance.partnerOf(r), Instance.NONE);
+            }
+        }
+        changes.getPreferenceEdits().forEach((id, preferences) ->
+                newPreferences.put(indexOf(residentTable, id), toIndices(hospitalTable, id, preferences)));
+
+        // free the seats of everyone whose list changes, and stop tracking the couples that dissolve, while the
+        // matching still knows the old partners
+        for (int r : newPreferences.keySet()) {
+            unassign(r);
+        }
+        for (int r : newPartners.keySet()) {
+            matching.forgetCouple(r);
+        }
+        matching.rebase(instance.withChanges(newCapacities, newPreferences, newPartners));
+
+        for (int r : newPreferences.keySet()) {
+            // withdrawn residents have an empty list, restarting them only resets their progress
+            restart(r);
+        }
+        for (int r : newPartners.keySet()) {
+            if (!newPreferences.containsKey(r)) {
+                becameSingle(r);
+            }
+        }
+        newCapacities.forEach((h, capacity) -> {
+            if (matching.isOverSubscribed(h)) {
+                evictUntilFits(h);
+            } else {
+                freedHospitals.add(h);
+            }
+        });
+        while (!freedHospitals.isEmpty()) {
+            offerSeat(freedHospitals.poll());
+        }
+    }
+
+    // the partner of a withdrawn resident: its whole list is open to it again, now without proximity constraint
+    private void becameSingle(int r) {
+        matching.getPreferenceViews().reset(r);
+        matching.resetRankProgress(r);
+        if (matching.hasAssignment(r)) {
+            matching.residentChanged(r);
+        } else {
+            queue.add(r);
+        }
+    }
+
+    private void evictUntilFits(int h) {
+        SolverListener listener = matching.getListener();
+        while (matching.isOverSubscribed(h)) {
+            int worst = matching.getWorstAssignedResident(h);
+            matching.unassign(worst);
+            listener.eviction(worst, h);
+            queue.add(worst);
+            if (lockstep && matching.getInstance().hasPartner(worst)) {
+                int partner = matching.getInstance().partnerOf(worst);
+                int partnerHospital = matching.getAssignedHospital(partner);
+                unassign(partner);
+                queue.add(partner);
+                if (partnerHospital != Matching.UNASSIGNED) {
+                    listener.eviction(partner, partnerHospital);
+                }
+            }
+        }
+    }
+
+    // h has room now: queue the unassigned residents that would apply to it
+    private void offerSeat(int h) {
+        matching.hospitalChanged(h);
+        PreferenceViews preferenceViews = matching.getPreferenceViews();
+        PreferenceLists acceptableResidents = matching.getInstance().acceptableResidents();
+        for (int i = 0; i < acceptableResidents.length(h); i++) {
+            int r = acceptableResidents.get(h, i);
+            if (!matching.hasAssignment(r) && !queue.contains(r) && preferenceViews.contains(r, h)) {
+                if (lockstep) {
+                    // RHRP's rank progress of an unassigned resident is past h, so it has to start over
+                    restart(r);
+                } else {
+                    queue.add(r);
+                }
+            }
+        }
+    }
+
+    // unassigns r and queues it to apply from the top of its list
+    private void restart(int r) {
+        Instance instance = matching.getInstance();
+        unassign(r);
+        matching.getPreferenceViews().reset(r);
+        matching.resetRankProgress(r);
+        queue.add(r);
+        if (lockstep && instance.hasPartner(r)) {
+            int partner = instance.partnerOf(r);
+            unassign(partner);
+            matching.getPreferenceViews().reset(partner);
+            matching.resetRankProgress(partner);
+            queue.add(partner);
+        }
+    }
+
+    private void unassign(int r) {
+        int h = matching.getAssignedHospital(r);
+        if (h != Matching.UNASSIGNED) {
+            matching.unassign(r);
+            freedHospitals.add(h);
+        }
+    }
+
+    private static int indexOf(ResidentTable residentTable, String id) {
+        int r = residentTable.indexOf(id);
+        checkArgument(r != Instance.NONE, "unknown resident %s", id);
+        return r;
+    }
+
+    private static int indexOf(HospitalTable hospitalTable, String id) {
+        int h = hospitalTable.indexOf(id);
+        checkArgument(h != Instance.NONE, "unknown hospital %s", id);
+        return h;
+    }
+
+    private static int[] toIndices(HospitalTable hospitalTable, String residentId, List<String> preferences) {
+        int[] indices = new int[preferences.size()];
+        for (int i = 0; i < indices.length; i++) {
+            indices[i] = hospitalTable.indexOf(preferences.get(i));
+            checkArgument(indices[i] != Instance.NONE,
+                    "unknown hospital %s in preferences of %s", preferences.get(i), residentId);
+        }
+        return indices;
+    }
+}
@@ -2,9 +2,7 @@ package edu.texas.social_computing.hospitals;
 
 import com.google.auto.value.AutoValue;
 import com.google.common.collect.ImmutableList;
-import com.google.common.collect.ImmutableSet;
 
-import java.util.ArrayList;
 import java.util.List;
 
 @AutoValue
@@ -12,21 +10,20 @@ public abstract class Resident {
 
     private static final String NO_PARTNER = "";
 
-    private List<String> preferences;
-
     public abstract String getId();
 
     public abstract String getPartnerId();
 
-    public abstract ImmutableList<String> getInitialPreferences();
+    /**
+     * @return the ids of the hospitals r ranks, best first. Immutable.
+     */
+    public abstract List<String> getInitialPreferences();
 
     /**
      * Creates a {@link Resident} with a partner.
      */
     static Resident create(String id, String partnerId, Iterable<String> initialPreferences) {
-        Resident r = new AutoValue_Resident(id, partnerId, ImmutableList.copyOf(initialPreferences));
-        r.resetPreferences();
-        return r;
+        return new AutoValue_Resident(id, partnerId, ImmutableList.copyOf(initialPreferences));
     }
 
     /**
@@ -37,11 +34,13 @@ public abstract class Resident {
     }
 
     /**
-     * Returns the current view of the preferences, which is some modified version of the
-     * initial preferences.
+     * Creates a {@link Resident} whose preferences are a view over an {@link Instance}'s
+     * {@link PreferenceLists}, which the instance keeps anyway, instead of a list of its own.
+     *
+     * @param partnerId the partner's id, or null if r has none
      */
-    public ImmutableList<String> getPreferences() {
-        return ImmutableList.copyOf(this.preferences);
+    static Resident view(String id, String partnerId, List<String> initialPreferences) {
+        return new AutoValue_Resident(id, partnerId == null ? NO_PARTNER : partnerId, initialPreferences);
     }
 
     /**
@@ -55,32 +54,4 @@ public abstract class Resident {
     public boolean hasPartner() {
         return !getPartnerId().equals(NO_PARTNER);
     }
-
-    public int rankOf(Hospital hospital) {
-        return getPreferences().contains(hospital.getId())
-                ? getPreferences().indexOf(hospital.getId())
-                : Integer.MAX_VALUE;
-    }
-
-    public void setPrefsByLocation(int locationId, HospitalTable hospitalTable) {
-        List<String> locationBasedHospitalPrefs = new ArrayList<>();
-        for (String hospitalId : getPreferences()) {
-            if (hospitalTable.getHospitalById(hospitalId).getLocationId() == locationId) {
-                locationBasedHospitalPrefs.add(hospitalId);
-            }
-        }
-        this.preferences = locationBasedHospitalPrefs;
-    }
-
-    public void setPrefsByProgress(int rankProgress) {
-        if (rankProgress < getInitialPreferences().size()) {
-            this.preferences = getInitialPreferences().subList(rankProgress, getInitialPreferences().size());
-        } else {
-            this.preferences = ImmutableList.of();
-        }
-    }
-
-    public void resetPreferences() {
-        this.preferences = getInitialPreferences();
-    }
 }
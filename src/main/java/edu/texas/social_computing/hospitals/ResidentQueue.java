@@ -0,0 +1,178 @@
+package edu.texas.social_computing.hospitals;
+
+import java.util.BitSet;
+import java.util.SplittableRandom;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Work queue of resident indices for the solvers. A resident is queued at most once: adding a resident that is
+ * already queued does nothing, and membership is a {@link BitSet} lookup instead of a scan of the queue.
+ * <p>
+ * Residents come out either in the order they were added ({@link #fifo(int)}) or by ascending priority
+ * ({@link #prioritized(int, IntUnaryOperator)}). Either way the queue never holds more than one entry per resident,
+ * so its storage is allocated once up front.
+ */
+public final class ResidentQueue {
+
+    private final BitSet queued;
+    // null for FIFO; otherwise elements is a binary min-heap on (priority, index)
+    private final IntUnaryOperator priority;
+    private final int[] elements;
+    private int head;
+    private int size;
+
+    private ResidentQueue(int numResidents, IntUnaryOperator priority) {
+        this.queued = new BitSet(numResidents);
+        this.priority = priority;
+        this.elements = new int[numResidents];
+    }
+
+    public static ResidentQueue fifo(int numResidents) {
+        return new ResidentQueue(numResidents, null);
+    }
+
+    /**
+     * @param priority lower comes out first, ties go to the lower index. A resident's priority must not change
+     *                 while it is queued.
+     */
+    public static ResidentQueue prioritized(int numResidents, IntUnaryOperator priority) {
+        return new ResidentQueue(numResidents, priority);
+    }
+
+    /**
+     * @return a queue that hands out residents in an order drawn from seed instead of the order they were added
+     * in. The same seed gives the same order.
+     */
+    public static ResidentQueue shuffled(int numResidents, long seed) {
+        int[] positions = new int[numResidents];
+        for (int r = 0; r < numResidents; r++) {
+            positions[r] = r;
+        }
+        SplittableRandom random = new SplittableRandom(seed);
+        for (int i = numResidents - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int swapped = positions[i];
+            positions[i] = positions[j];
+            positions[j] = swapped;
+        }
+        return prioritized(numResidents, r -> positions[r]);
+    }
+
+    /**
+     * @return a FIFO queue holding every resident of the instance, in index order
+     */
+    public static ResidentQueue allOf(Instance instance) {
+        ResidentQueue queue = fifo(instance.numResidents());
+        for (int r = 0; r < instance.numResidents(); r++) {
+            queue.add(r);
+        }
+        return queue;
+    }
+
+    /**
+     * @return false if r was already queued
+     */
+    public boolean add(int r) {
+        if (queued.get(r)) {
+            return false;
+        }
+        queued.set(r);
+        if (priority == null) {
+            elements[(head + size) % elements.length] = r;
+            size++;
+        } else {
+            elements[size] = r;
+            siftUp(size++);
+        }
+        return true;
+    }
+
+    public void addAll(Iterable<Integer> residents) {
+        for (int r : residents) {
+            add(r);
+        }
+    }
+
+    /**
+     * @return the next resident, or {@link Instance#NONE} if the queue is empty
+     */
+    public int poll() {
+        if (size == 0) {
+            return Instance.NONE;
+        }
+        int r;
+        if (priority == null) {
+            r = elements[head];
+            head = (head + 1) % elements.length;
+            size--;
+        } else {
+            r = elements[0];
+            elements[0] = elements[--size];
+            siftDown(0);
+        }
+        queued.clear(r);
+        return r;
+    }
+
+    public boolean contains(int r) {
+        return queued.get(r);
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the queued residents. In the order they come out for a FIFO queue; in an order that rebuilds the
+     * same heap when added back for a prioritized one.
+     */
+    int[] toArray() {
+        int[] residents = new int[size];
+        for (int i = 0; i < size; i++) {
+            residents[i] = elements[priority == null ? (head + i) % elements.length : i];
+        }
+        return residents;
+    }
+
+    private boolean comesBefore(int a, int b) {
+        int priorityA = priority.applyAsInt(a);
+        int priorityB = priority.applyAsInt(b);
+        return priorityA < priorityB || (priorityA == priorityB && a < b);
+    }
+
+    private void siftUp(int position) {
+        int r = elements[position];
+        while (position > 0) {
+            int parent = (position - 1) / 2;
+            if (!comesBefore(r, elements[parent])) {
+                break;
+            }
+            elements[position] = elements[parent];
+            position = parent;
+        }
+        elements[position] = r;
+    }
+
+    private void siftDown(int position) {
+        int r = elements[position];
+        while (true) {
+            int child = 2 * position + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && comesBefore(elements[child + 1], elements[child])) {
+                child++;
+            }
+            if (!comesBefore(elements[child], r)) {
+                break;
+            }
+            elements[position] = elements[child];
+            position = child;
+        }
+        elements[position] = r;
+    }
+}
@@ -4,47 +4,71 @@ import com.google.common.collect.ImmutableList;
 
 import static com.google.common.base.Preconditions.checkArgument;
 
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
+/**
+ * The residents of an instance, by id and by dense index. Immutable, so any number of solves can share it.
+ */
 public class ResidentTable {
 
-    private Map<String, Resident> residentMap = new HashMap<>();
-    private Map<String, Integer> residentRankProgress = new HashMap<>();
+    private final IdInterner residentIds;
+    private final ImmutableList<Resident> residents;
 
     public static ResidentTable create(Iterable<Resident> residents) {
-        return new ResidentTable(residents);
+        IdInterner residentIds = new IdInterner();
+        for (Resident r : residents) {
+            checkArgument(residentIds.indexOf(r.getId()) == IdInterner.NOT_FOUND, "duplicate resident %s", r.getId());
+            residentIds.intern(r.getId());
+        }
+        return new ResidentTable(residentIds, ImmutableList.copyOf(residents));
     }
 
-    private ResidentTable(Iterable<Resident> residents) {
-        for (Resident resident : residents) {
-            add(resident);
-            residentRankProgress.put(resident.getId(), 0);
-        }
+    private ResidentTable(IdInterner residentIds, ImmutableList<Resident> residents) {
+        this.residentIds = residentIds;
+        this.residents = residents;
     }
 
-    public void add(Resident r) {
-        checkArgument(!residentMap.containsKey(r.getId()));
-        residentMap.put(r.getId(), r);
+    /**
+     * @return a copy of this table with some residents replaced by others with the same id. Shares the id index.
+     */
+    ResidentTable withReplaced(Map<Integer, Resident> replacements) {
+        List<Resident> copy = new ArrayList<>(residents);
+        replacements.forEach((r, resident) -> {
+            checkArgument(resident.getId().equals(copy.get(r).getId()));
+            copy.set(r, resident);
+        });
+        return new ResidentTable(residentIds, ImmutableList.copyOf(copy));
     }
 
     public Resident getResidentById(String id) {
-        return residentMap.get(id);
+        int index = indexOf(id);
+        return index == IdInterner.NOT_FOUND ? null : residents.get(index);
     }
 
-    public ImmutableList<Resident> getAll() {
-        return ImmutableList.copyOf(residentMap.values());
+    /**
+     * @return the resident with the given dense index, see {@link #indexOf(String)}
+     */
+    public Resident getResident(int index) {
+        return residents.get(index);
     }
 
-    public int getResidentRankProgress(Resident r) {
-        return residentRankProgress.get(r.getId());
+    /**
+     * @return the dense index of the resident, or -1 if there is no such resident
+     */
+    public int indexOf(String id) {
+        return residentIds.indexOf(id);
     }
 
-    public void incrementResidentRankProgress(Resident r) {
-        residentRankProgress.put(r.getId(), residentRankProgress.get(r.getId()) + 1);
+    public int size() {
+        return residents.size();
     }
 
-    public void resetResidentRankProgress(Resident r) {
-        residentRankProgress.put(r.getId(), 0);
+    /**
+     * @return all residents in index order
+     */
+    public ImmutableList<Resident> getAll() {
+        return residents;
     }
 }
@@ -0,0 +1,146 @@
+package edu.texas.social_computing.hospitals;
+
+import java.util.Arrays;
+
+/**
+ * Tracks what changed in a {@link Matching} since the singles were last checked for a better hospital, so the
+ * solvers only re-check the singles that could be affected.
+ * <p>
+ * Whether a single can do better depends on its own assignment and on the worst resident of every hospital it
+ * prefers to that assignment. So a single needs re-checking when it was (re)assigned, or when a hospital it
+ * prefers and that ranks it became dirty: its worst resident changed or it freed a seat. Those singles are found
+ * through {@link Instance#acceptableResidents()}, the reverse index from a hospital to the residents that
+ * could want it.
+ */
+final class SinglesToRecheck {
+
+    private Instance instance;
+    private final MarkedSet dirtyHospitals;
+    private final MarkedSet dirtyResidents;
+    private final MarkedSet candidates;
+
+    SinglesToRecheck(Instance instance) {
+        this.instance = instance;
+        this.dirtyHospitals = new MarkedSet(instance.numHospitals());
+        this.dirtyResidents = new MarkedSet(instance.numResidents());
+        this.candidates = new MarkedSet(instance.numResidents());
+    }
+
+    // see Matching#rebase
+    void rebase(Instance changed) {
+        instance = changed;
+    }
+
+    void hospitalChanged(int h) {
+        dirtyHospitals.add(h);
+    }
+
+    void residentChanged(int r) {
+        dirtyResidents.add(r);
+    }
+
+    /**
+     * @return the hospitals changed since the last drain, in the order they first changed
+     */
+    int[] dirtyHospitals() {
+        return dirtyHospitals.toArray();
+    }
+
+    /**
+     * @return the residents changed since the last drain, in the order they first changed
+     */
+    int[] dirtyResidents() {
+        return dirtyResidents.toArray();
+    }
+
+    /**
+     * Forgets every change so far without checking anyone.
+     */
+    void clear() {
+        dirtyHospitals.clear();
+        dirtyResidents.clear();
+    }
+
+    /**
+     * @return the assigned singles that may have a better hospital than the last time they were checked, in
+     * index order, and forgets every change so far
+     */
+    int[] drain(Matching matching) {
+        int[] singles = peek(matching);
+        dirtyHospitals.clear();
+        dirtyResidents.clear();
+        return singles;
+    }
+
+    /**
+     * @return what {@link #drain} would return now, without forgetting any change
+     */
+    int[] peek(Matching matching) {
+        PreferenceViews preferenceViews = matching.getPreferenceViews();
+        for (int i = 0; i < dirtyResidents.size(); i++) {
+            int r = dirtyResidents.get(i);
+            if (!instance.hasPartner(r) && matching.hasAssignment(r)) {
+                candidates.add(r);
+            }
+        }
+        for (int i = 0; i < dirtyHospitals.size(); i++) {
+            int h = dirtyHospitals.get(i);
+            PreferenceLists acceptableResidents = instance.acceptableResidents();
+            for (int j = acceptableResidents.start(h); j < acceptableResidents.end(h); j++) {
+                int r = acceptableResidents.members()[j];
+                if (!instance.hasPartner(r)
+                        && matching.hasAssignment(r)
+                        && preferenceViews.rankOf(r, h) < preferenceViews.rankOf(r, matching.getAssignedHospital(r))) {
+                    candidates.add(r);
+                }
+            }
+        }
+        int[] singles = candidates.toSortedArray();
+        candidates.clear();
+        return singles;
+    }
+
+    // a set of indices with O(1) insertion and clearing proportional to its size
+    private static final class MarkedSet {
+        private final boolean[] marked;
+        private final int[] members;
+        private int size;
+
+        MarkedSet(int capacity) {
+            marked = new boolean[capacity];
+            members = new int[capacity];
+        }
+
+        void add(int i) {
+            if (!marked[i]) {
+                marked[i] = true;
+                members[size++] = i;
+            }
+        }
+
+        int size() {
+            return size;
+        }
+
+        int get(int k) {
+            return members[k];
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(members, size);
+        }
+
+        int[] toSortedArray() {
+            int[] sorted = Arrays.copyOf(members, size);
+            Arrays.sort(sorted);
+            return sorted;
+        }
+
+        void clear() {
+            for (int k = 0; k < size; k++) {
+                marked[members[k]] = false;
+            }
+            size = 0;
+        }
+    }
+}
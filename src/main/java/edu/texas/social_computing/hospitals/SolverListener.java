@@ -0,0 +1,96 @@
+package edu.texas.social_computing.hospitals;
+
+/**
+ * Receives what the solvers do, for metrics and progress reporting. Set one with
+ * {@link Matching#setListener(SolverListener)}. Every method does nothing by default, and {@link #NONE} is what a
+ * matching starts with, so a solve nobody listens to only pays for calls the JIT inlines away.
+ * <p>
+ * Residents and hospitals are {@link Instance} indices. The solvers call the listener from the solving thread.
+ */
+public interface SolverListener {
+
+    SolverListener NONE = new SolverListener() {
+    };
+
+    enum Phase {
+        /** a whole HRPP or RHRP solve */
+        SOLVE,
+        /** HRPP's couple agnostic HRP run the proximity repair starts from */
+        INITIAL_HRP,
+        /** HRP runs with the non-dominant partner restricted to the other partner's location */
+        RESTRICTED_HRP,
+        /** HRP runs after both partners were unassigned and the dominant one moved down its list */
+        COUPLE_HRP,
+        /** HRP runs settling the residents a {@link ChangeSet} requeued, see {@link Rematcher} */
+        REMATCH_HRP,
+        /** looking for assigned singles that can do better, and requeueing them */
+        SINGLES_RECHECK,
+        /** writing an {@link HRPPCheckpoint} */
+        CHECKPOINT
+    }
+
+    /**
+     * r applies to h.
+     */
+    default void proposal(int r, int h) {
+    }
+
+    /**
+     * h turns r's application down, immediately or by evicting r as the worst of an over-subscribed h in the
+     * same step.
+     */
+    default void rejection(int r, int h) {
+    }
+
+    /**
+     * h drops r, which it had accepted before, to make room.
+     */
+    default void eviction(int r, int h) {
+    }
+
+    /**
+     * count (resident, h) pairs were deleted because h filled up with residents it prefers.
+     */
+    default void pairsDeleted(int h, int count) {
+    }
+
+    /**
+     * HRPP is about to run HRP over queueSize residents.
+     */
+    default void hrpRun(int queueSize) {
+    }
+
+    /**
+     * HRPP starts an iteration of its repair loop with count couples violating the proximity constraint.
+     */
+    default void proximityViolations(int count) {
+    }
+
+    /**
+     * r, an assigned single, was unassigned and queued again because it can do better.
+     */
+    default void singleRequeued(int r) {
+    }
+
+    /**
+     * HRPP's repair loop stopped after the given iterations without converging, for the given reason, with count
+     * couples still violating the proximity constraint. See {@link HRPPLimits}.
+     */
+    default void repairStopped(Termination termination, long iterations, int count) {
+    }
+
+    default void phaseFinished(Phase phase, long nanos) {
+    }
+
+    /**
+     * Asked at the top of every iteration of HRPP's proximity repair and of RHRP's main loop, and every
+     * {@value HRP#PROPOSALS_PER_STOP_CHECK} proposals of an HRP run, all points where no hospital of matching is
+     * over-subscribed. The listener may read matching there, e.g. to keep a copy, but not change it.
+     *
+     * @return true to stop the solve cooperatively: it returns matching as it is, with
+     * {@link Termination#STOPPED}
+     */
+    default boolean shouldStop(Matching matching) {
+        return false;
+    }
+}
@@ -0,0 +1,175 @@
+package edu.texas.social_computing.hospitals;
+
+import java.util.Locale;
+
+/**
+ * A {@link SolverListener} that counts what a solve did and how long each phase took, summarized by
+ * {@link #toJson()}. Not thread safe, like the solvers.
+ */
+public final class SolverMetrics implements SolverListener {
+
+    private long proposals;
+    private long rejections;
+    private long evictions;
+    private long pairDeletions;
+    private long hrpRuns;
+    private long singlesRequeued;
+    private final Histogram hrpRunQueueSizes = new Histogram();
+    private final Histogram proximityViolations = new Histogram();
+    private final long[] phaseCounts = new long[Phase.values().length];
+    private final long[] phaseNanos = new long[Phase.values().length];
+
+    @Override
+    public void proposal(int r, int h) {
+        proposals++;
+    }
+
+    @Override
+    public void rejection(int r, int h) {
+        rejections++;
+    }
+
+    @Override
+    public void eviction(int r, int h) {
+        evictions++;
+    }
+
+    @Override
+    public void pairsDeleted(int h, int count) {
+        pairDeletions += count;
+    }
+
+    @Override
+    public void hrpRun(int queueSize) {
+        hrpRuns++;
+        hrpRunQueueSizes.add(queueSize);
+    }
+
+    @Override
+    public void proximityViolations(int count) {
+        proximityViolations.add(count);
+    }
+
+    @Override
+    public void singleRequeued(int r) {
+        singlesRequeued++;
+    }
+
+    @Override
+    public void phaseFinished(Phase phase, long nanos) {
+        phaseCounts[phase.ordinal()]++;
+        phaseNanos[phase.ordinal()] += nanos;
+    }
+
+    public long getProposals() {
+        return proposals;
+    }
+
+    public long getRejections() {
+        return rejections;
+    }
+
+    public long getEvictions() {
+        return evictions;
+    }
+
+    public long getPairDeletions() {
+        return pairDeletions;
+    }
+
+    public long getHrpRuns() {
+        return hrpRuns;
+    }
+
+    public long getSinglesRequeued() {
+        return singlesRequeued;
+    }
+
+    public long getPhaseCount(Phase phase) {
+        return phaseCounts[phase.ordinal()];
+    }
+
+    public long getPhaseNanos(Phase phase) {
+        return phaseNanos[phase.ordinal()];
+    }
+
+    public String toJson() {
+        StringBuilder json = new StringBuilder("{");
+        json.append("\"proposals\": ").append(proposals);
+        json.append(", \"rejections\": ").append(rejections);
+        json.append(", \"evictions\": ").append(evictions);
+        json.append(", \"pairDeletions\": ").append(pairDeletions);
+        json.append(", \"hrpRuns\": ").append(hrpRuns);
+        json.append(", \"singlesRequeued\": ").append(singlesRequeued);
+        json.append(", \"hrpRunQueueSizes\": ");
+        hrpRunQueueSizes.appendJson(json);
+        json.append(", \"proximityViolations\": ");
+        proximityViolations.appendJson(json);
+        json.append(", \"phases\": {");
+        String separator = "";
+        for (Phase phase : Phase.values()) {
+            if (phaseCounts[phase.ordinal()] == 0) {
+                continue;
+            }
+            json.append(separator).append('"').append(phase.name().toLowerCase(Locale.ROOT)).append("\": {")
+                    .append("\"count\": ").append(phaseCounts[phase.ordinal()])
+                    .append(", \"millis\": ").append(String.format(Locale.ROOT, "%.3f", phaseNanos[phase.ordinal()] / 1e6))
+                    .append('}');
+            separator = ", ";
+        }
+        return json.append("}}").toString();
+    }
+
+    @Override
+    public String toString() {
+        return toJson();
+    }
+
+    /**
+     * Counts of non-negative values in power of two buckets: 0, 1, 2-3, 4-7, ...
+     */
+    static final class Histogram {
+        private final long[] buckets = new long[Integer.SIZE];
+        private long count;
+        private long sum;
+        private int max;
+
+        void add(int value) {
+            buckets[Integer.SIZE - Integer.numberOfLeadingZeros(value)]++;
+            count++;
+            sum += value;
+            max = Math.max(max, value);
+        }
+
+        long count() {
+            return count;
+        }
+
+        int max() {
+            return max;
+        }
+
+        // {"count": 3, "mean": 2.0, "max": 4, "buckets": {"1": 1, "4-7": 2}}, empty buckets left out
+        void appendJson(StringBuilder json) {
+            json.append("{\"count\": ").append(count)
+                    .append(", \"mean\": ").append(String.format(Locale.ROOT, "%.3f", count == 0 ? 0.0 : (double) sum / count))
+                    .append(", \"max\": ").append(max)
+                    .append(", \"buckets\": {");
+            String separator = "";
+            for (int i = 0; i < buckets.length; i++) {
+                if (buckets[i] == 0) {
+                    continue;
+                }
+                long low = i == 0 ? 0 : 1L << (i - 1);
+                long high = i == 0 ? 0 : (1L << i) - 1;
+                json.append(separator).append('"').append(low);
+                if (high != low) {
+                    json.append('-').append(high);
+                }
+                json.append("\": ").append(buckets[i]);
+                separator = ", ";
+            }
+            json.append("}}");
+        }
+    }
+}
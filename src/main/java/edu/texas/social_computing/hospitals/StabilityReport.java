@@ -0,0 +1,77 @@
+package edu.texas.social_computing.hospitals;
+
+import com.google.auto.value.AutoValue;
+import com.google.common.collect.ImmutableList;
+
+/**
+ * What {@link StabilityValidator} found: how many blocking pairs there are, and the first few of them in resident
+ * order.
+ */
+@AutoValue
+public abstract class StabilityReport {
+
+    /**
+     * @return the number of (single resident, hospital) pairs where both would rather have each other
+     */
+    public abstract long getSingleBlockingPairCount();
+
+    /**
+     * @return the number of single residents in at least one blocking pair
+     */
+    public abstract int getUnstableSingleCount();
+
+    /**
+     * @return the number of (couple, hospital, hospital) triples where the partners would rather move to the two
+     * hospitals, both in the same location, and both hospitals would take them. Each couple counts once.
+     */
+    public abstract long getCoupleBlockingPairCount();
+
+    /**
+     * @return the number of couples in at least one blocking pair
+     */
+    public abstract int getUnstableCoupleCount();
+
+    /**
+     * @return at most the requested number of blocking pairs, singles and couples together, by resident index
+     */
+    public abstract ImmutableList<BlockingPair> getSamples();
+
+    public boolean isStable() {
+        return getSingleBlockingPairCount() == 0 && getCoupleBlockingPairCount() == 0;
+    }
+
+    static StabilityReport create(long singleBlockingPairCount, int unstableSingleCount,
+                                  long coupleBlockingPairCount, int unstableCoupleCount,
+                                  ImmutableList<BlockingPair> samples) {
+        return new AutoValue_StabilityReport(singleBlockingPairCount, unstableSingleCount,
+                coupleBlockingPairCount, unstableCoupleCount, samples);
+    }
+
+    /**
+     * A single resident and a hospital, or the two partners of a couple and the hospital each would move to.
+     * Everything is an {@link Instance} index; the partner fields are {@link Instance#NONE} for singles.
+     */
+    @AutoValue
+    public abstract static class BlockingPair {
+
+        public abstract int getResident();
+
+        public abstract int getHospital();
+
+        public abstract int getPartner();
+
+        public abstract int getPartnerHospital();
+
+        public boolean isCouple() {
+            return getPartner() != Instance.NONE;
+        }
+
+        static BlockingPair single(int r, int h) {
+            return new AutoValue_StabilityReport_BlockingPair(r, h, Instance.NONE, Instance.NONE);
+        }
+
+        static BlockingPair couple(int r, int h, int partner, int partnerHospital) {
+            return new AutoValue_StabilityReport_BlockingPair(r, h, partner, partnerHospital);
+        }
+    }
+}
@@ -0,0 +1,275 @@
+package edu.texas.social_computing.hospitals;
+
+import com.google.common.collect.ImmutableList;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Finds the blocking pairs of a {@link Matching}. Works on a snapshot of the matching taken up front, so the
+ * matching is only read while the snapshot is taken and the search itself runs on the fork/join pool, split over
+ * resident ranges:
+ * <ol>
+ *     <li>every assigned resident collects the hospitals it would rather have that would rather have it than
+ *     their worst resident: the classical blocking pairs, with every resident treated as single,</li>
+ *     <li>every couple joins the two partners' lists on location, sorting both by location and walking equal
+ *     locations together, instead of comparing every hospital of one partner with every hospital of the other.
+ *     A hospital both partners would move to must rank both above its second worst resident.</li>
+ * </ol>
+ */
+public final class StabilityValidator {
+
+    public static final int DEFAULT_MAX_SAMPLES = 20;
+
+    // residents per leaf task
+    private static final int LEAF_SIZE = 1 << 10;
+
+    private final Instance instance;
+    private final int[] assignments;
+    // r only blocks with the first checkedPrefixes[r] hospitals of its initial preferences
+    private final int[] checkedPrefixes;
+    private final int[] worsts;
+    private final int[] secondWorsts;
+    private final int maxSamples;
+    // blocking hospitals of each resident in a couple, null if none; every leaf writes its own range
+    private final int[][] coupleBlocks;
+
+    private StabilityValidator(Matching matching, int maxSamples) {
+        this.instance = matching.getInstance();
+        this.maxSamples = maxSamples;
+        PreferenceViews views = matching.getPreferenceViews();
+        int numResidents = instance.numResidents();
+        assignments = new int[numResidents];
+        checkedPrefixes = new int[numResidents];
+        for (int r = 0; r < numResidents; r++) {
+            int h = matching.getAssignedHospital(r);
+            assignments[r] = h;
+            if (h != Matching.UNASSIGNED && instance.isRanked(h, r)) {
+                checkedPrefixes[r] = Math.min(views.rankOf(r, h), instance.residentPreferences().length(r));
+            }
+        }
+        worsts = new int[instance.numHospitals()];
+        secondWorsts = new int[instance.numHospitals()];
+        for (int h = 0; h < worsts.length; h++) {
+            worsts[h] = matching.getWorstAssignedResident(h);
+            secondWorsts[h] = matching.getKthWorstAssignedResident(h, 2);
+        }
+        coupleBlocks = new int[numResidents][];
+    }
+
+    public static StabilityReport validate(Matching matching) {
+        return validate(matching, DEFAULT_MAX_SAMPLES);
+    }
+
+    /**
+     * @param maxSamples how many blocking pairs to keep in the report
+     */
+    public static StabilityReport validate(Matching matching, int maxSamples) {
+        return validate(matching, maxSamples, ForkJoinPool.commonPool());
+    }
+
+    public static StabilityReport validate(Matching matching, int maxSamples, ForkJoinPool pool) {
+        StabilityValidator validator = new StabilityValidator(matching, maxSamples);
+        int numResidents = validator.instance.numResidents();
+        Tally singles = pool.invoke(validator.new SingleStyleTask(0, numResidents));
+        Tally couples = pool.invoke(validator.new CoupleTask(0, numResidents));
+        List<StabilityReport.BlockingPair> samples = new ArrayList<>(singles.samples);
+        samples.addAll(couples.samples);
+        samples.sort((a, b) -> Integer.compare(a.getResident(), b.getResident()));
+        return StabilityReport.create(singles.blockingPairs, singles.unstable, couples.blockingPairs,
+                couples.unstable, ImmutableList.copyOf(samples.subList(0, Math.min(maxSamples, samples.size()))));
+    }
+
+    // would h take r over its worst resident, see Matching#isRankedHigherThanWorstMatch
+    private boolean isRankedHigherThanWorst(int h, int r) {
+        int rank = instance.hospitalRankOf(h, r);
+        if (rank == Instance.UNRANKED) {
+            return false;
+        }
+        if (worsts[h] == Matching.UNASSIGNED) {
+            return instance.capacityOf(h) > 0;
+        }
+        int worstRank = instance.hospitalRankOf(h, worsts[h]);
+        return worstRank != Instance.UNRANKED && rank < worstRank;
+    }
+
+    // would both partners rank above h's second worst resident, see Matching#fitsAboveWorst
+    private boolean fitsBothAboveWorst(int h, int r, int partner) {
+        int secondWorst = secondWorsts[h];
+        if (secondWorst == Matching.UNASSIGNED) {
+            return false;
+        }
+        int secondWorstRank = instance.hospitalRankOf(h, secondWorst);
+        return AssignmentHeaps.isWorse(secondWorstRank, secondWorst, instance.hospitalRankOf(h, r), r)
+                && AssignmentHeaps.isWorse(secondWorstRank, secondWorst, instance.hospitalRankOf(h, partner), partner);
+    }
+
+    private int[] blockingHospitals(int r) {
+        PreferenceLists preferences = instance.residentPreferences();
+        int[] blocking = null;
+        int size = 0;
+        for (int i = 0; i < checkedPrefixes[r]; i++) {
+            int h = preferences.get(r, i);
+            if (isRankedHigherThanWorst(h, r)) {
+                if (blocking == null) {
+                    blocking = new int[checkedPrefixes[r] - i];
+                }
+                blocking[size++] = h;
+            }
+        }
+        return blocking == null ? null : Arrays.copyOf(blocking, size);
+    }
+
+    // sorts by location then hospital, as longs so the location survives the sort
+    private long[] byLocation(int[] hospitals) {
+        long[] keys = new long[hospitals.length];
+        for (int i = 0; i < hospitals.length; i++) {
+            keys[i] = (long) instance.locationOf(hospitals[i]) << 32 | hospitals[i];
+        }
+        Arrays.sort(keys);
+        return keys;
+    }
+
+    // counts and the first samples of a resident range
+    private static final class Tally {
+        long blockingPairs;
+        int unstable;
+        final List<StabilityReport.BlockingPair> samples = new ArrayList<>();
+
+        Tally merge(Tally right, int maxSamples) {
+            blockingPairs += right.blockingPairs;
+            unstable += right.unstable;
+            for (StabilityReport.BlockingPair sample : right.samples) {
+                if (samples.size() == maxSamples) {
+                    break;
+                }
+                samples.add(sample);
+            }
+            return this;
+        }
+
+        void sample(StabilityReport.BlockingPair pair, int maxSamples) {
+            if (samples.size() < maxSamples) {
+                samples.add(pair);
+            }
+        }
+    }
+
+    private abstract class RangeTask extends RecursiveTask<Tally> {
+        final int from;
+        final int to;
+
+        RangeTask(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        abstract RangeTask split(int from, int to);
+
+        abstract void visit(int r, Tally tally);
+
+        @Override
+        protected Tally compute() {
+            if (to - from <= LEAF_SIZE) {
+                Tally tally = new Tally();
+                for (int r = from; r < to; r++) {
+                    visit(r, tally);
+                }
+                return tally;
+            }
+            int middle = (from + to) >>> 1;
+            RangeTask left = split(from, middle);
+            left.fork();
+            Tally right = split(middle, to).compute();
+            return left.join().merge(right, maxSamples);
+        }
+    }
+
+    private final class SingleStyleTask extends RangeTask {
+
+        SingleStyleTask(int from, int to) {
+            super(from, to);
+        }
+
+        @Override
+        RangeTask split(int from, int to) {
+            return new SingleStyleTask(from, to);
+        }
+
+        @Override
+        void visit(int r, Tally tally) {
+            int[] blocking = blockingHospitals(r);
+            if (blocking == null) {
+                return;
+            }
+            if (instance.hasPartner(r)) {
+                coupleBlocks[r] = blocking;
+                return;
+            }
+            tally.blockingPairs += blocking.length;
+            tally.unstable++;
+            for (int h : blocking) {
+                tally.sample(StabilityReport.BlockingPair.single(r, h), maxSamples);
+            }
+        }
+    }
+
+    private final class CoupleTask extends RangeTask {
+
+        CoupleTask(int from, int to) {
+            super(from, to);
+        }
+
+        @Override
+        RangeTask split(int from, int to) {
+            return new CoupleTask(from, to);
+        }
+
+        @Override
+        void visit(int r, Tally tally) {
+            int partner = instance.partnerOf(r);
+            // each couple once, from its lower index
+            if (partner < r || coupleBlocks[r] == null || coupleBlocks[partner] == null) {
+                return;
+            }
+            long[] mine = byLocation(coupleBlocks[r]);
+            long[] theirs = byLocation(coupleBlocks[partner]);
+            long found = 0;
+            int j = 0;
+            for (int i = 0; i < mine.length; ) {
+                int location = (int) (mine[i] >> 32);
+                while (j < theirs.length && (int) (theirs[j] >> 32) < location) {
+                    j++;
+                }
+                int iEnd = i;
+                while (iEnd < mine.length && (int) (mine[iEnd] >> 32) == location) {
+                    iEnd++;
+                }
+                int jEnd = j;
+                while (jEnd < theirs.length && (int) (theirs[jEnd] >> 32) == location) {
+                    jEnd++;
+                }
+                for (int a = i; a < iEnd; a++) {
+                    int h = (int) mine[a];
+                    for (int b = j; b < jEnd; b++) {
+                        int partnerHospital = (int) theirs[b];
+                        if (h == partnerHospital && !fitsBothAboveWorst(h, r, partner)) {
+                            continue;
+                        }
+                        found++;
+                        tally.sample(StabilityReport.BlockingPair.couple(r, h, partner, partnerHospital), maxSamples);
+                    }
+                }
+                i = iEnd;
+                j = jEnd;
+            }
+            if (found > 0) {
+                tally.blockingPairs += found;
+                tally.unstable++;
+            }
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package edu.texas.social_computing.hospitals;
+
+/**
+ * Why a solve stopped, see {@link Matching#getTermination()}. Anything but {@link #CONVERGED} means HRPP may have
+ * left couples violating the proximity constraint.
+ */
+public enum Termination {
+    /** the solver ran to its end; for HRPP, no couple violates the proximity constraint */
+    CONVERGED,
+    /** HRPP's repair loop came back to a state it had been in, and would have gone round it forever */
+    CYCLE,
+    /** HRPP's repair loop ran the iterations {@link HRPPLimits} allows */
+    ITERATION_BUDGET,
+    /** HRP made the proposals {@link HRPPLimits} allows the repair loop */
+    PROPOSAL_BUDGET,
+    /** the listener asked the solver to stop, see {@link SolverListener#shouldStop} and {@link AnytimeSolver} */
+    STOPPED
+}
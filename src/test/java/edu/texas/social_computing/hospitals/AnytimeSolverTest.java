@@ -0,0 +1,80 @@
+package edu.texas.social_computing.hospitals;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.IOException;
+import java.time.Duration;
+
+import static com.google.common.truth.Truth.assertThat;
+
+@RunWith(JUnit4.class)
+public class AnytimeSolverTest {
+
+    @Test
+    public void run_shouldReturnFinishedSolveWithinTimeLimit() throws IOException {
+        Instance instance = FileImporter.importInstance(
+                "resources/test_hos50_loc50_res150_coup20_hospitals.csv",
+                "resources/test_hos50_loc50_res150_coup20_residents.csv");
+
+        AnytimeSolver.Result result = AnytimeSolver.run(instance, PortfolioSolver.Solver.HRPP, Duration.ofDays(1));
+
+        assertThat(result.isIncomplete()).isFalse();
+        assertThat(result.getTermination()).isEqualTo(Termination.CONVERGED);
+        assertThat(result.getScore().getProximityViolationCount()).isEqualTo(0);
+        Matching solved = HRPP.run(instance);
+        for (int r = 0; r < instance.numResidents(); r++) {
+            assertThat(result.getMatching().getAssignedHospital(r)).isEqualTo(solved.getAssignedHospital(r));
+        }
+    }
+
+    @Test
+    public void run_shouldReturnBestSoFarOncePastTimeLimit() throws IOException {
+        Instance instance = FileImporter.importInstance(
+                "resources/test_hos100_loc10_res200_coup50_hospitals.csv",
+                "resources/test_hos100_loc10_res200_coup50_residents.csv");
+
+        for (PortfolioSolver.Solver solver : PortfolioSolver.Solver.values()) {
+            AnytimeSolver.Result result = AnytimeSolver.run(instance, solver, Duration.ZERO);
+
+            assertThat(result.isIncomplete()).isTrue();
+            assertThat(result.getTermination()).isEqualTo(Termination.STOPPED);
+            assertThat(result.getMatching().getTermination()).isEqualTo(Termination.STOPPED);
+            assertThat(MatchingScore.of(result.getMatching())).isEqualTo(result.getScore());
+            for (int h = 0; h < instance.numHospitals(); h++) {
+                assertThat(result.getMatching().isOverSubscribed(h)).isFalse();
+            }
+        }
+    }
+
+    @Test
+    public void run_shouldStopInsideTheInitialHRP() {
+        Instance instance = new InstanceGenerator(GeneratorConfig.builder()
+                .setSeed(1)
+                .setNumHospitals(200)
+                .setNumLocations(20)
+                .setNumResidents(20000)
+                .setNumCouples(2000)
+                .setMaxCapacity(100)
+                .build()).generate();
+        // every HRPP solve starts with this run
+        Matching initial = HRP.run(new Matching(instance), ResidentQueue.allOf(instance));
+
+        AnytimeSolver.Result result = AnytimeSolver.run(instance, PortfolioSolver.Solver.HRPP, Duration.ofMillis(1));
+
+        assertThat(result.isIncomplete()).isTrue();
+        assertThat(result.getTermination()).isEqualTo(Termination.STOPPED);
+        assertThat(assignedCount(result.getMatching())).isLessThan(assignedCount(initial) / 2);
+    }
+
+    private static int assignedCount(Matching matching) {
+        int count = 0;
+        for (int r = 0; r < matching.getInstance().numResidents(); r++) {
+            if (matching.hasAssignment(r)) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
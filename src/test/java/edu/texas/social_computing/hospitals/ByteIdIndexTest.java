@@ -0,0 +1,49 @@
+package edu.texas.social_computing.hospitals;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.google.common.truth.Truth.assertThat;
+
+@RunWith(JUnit4.class)
+public class ByteIdIndexTest {
+
+    @Test
+    public void indexOf_shouldFindEveryIdInsideABuffer() {
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            ids.add("r" + i);
+        }
+        ids.add("hôpital");
+        ByteIdIndex index = ByteIdIndex.of(ids, "resident");
+
+        for (int i = 0; i < ids.size(); i++) {
+            // surrounded by other bytes, the way the importers see an id in a CSV line
+            byte[] id = ids.get(i).getBytes(StandardCharsets.UTF_8);
+            ByteBuffer line = ByteBuffer.wrap(("x," + ids.get(i) + ",y").getBytes(StandardCharsets.UTF_8));
+            assertThat(index.indexOf(line, 2, id.length)).isEqualTo(i);
+        }
+    }
+
+    @Test
+    public void indexOf_shouldReturnNoneForUnknownId() {
+        ByteIdIndex index = ByteIdIndex.of(ImmutableList.of("h1", "h2"), "hospital");
+        ByteBuffer buffer = ByteBuffer.wrap("h1h3".getBytes(StandardCharsets.UTF_8));
+
+        assertThat(index.indexOf(buffer, 2, 2)).isEqualTo(Instance.NONE);
+        // a prefix of a known id is not that id
+        assertThat(index.indexOf(buffer, 0, 1)).isEqualTo(Instance.NONE);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void of_shouldRejectDuplicateIds() {
+        ByteIdIndex.of(ImmutableList.of("h1", "h2", "h1"), "hospital");
+    }
+}
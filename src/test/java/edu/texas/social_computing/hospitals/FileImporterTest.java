@@ -0,0 +1,59 @@
+package edu.texas.social_computing.hospitals;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static com.google.common.truth.Truth.assertThat;
+
+@RunWith(JUnit4.class)
+public class FileImporterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void importInstance_shouldMatchTableImport() throws IOException {
+        String hospitals = write("hospitals.csv", "H0,1,2,R1 R0\nH1,2,1,R2 R1 R0\n");
+        String residents = write("residents.csv", "R0,H1 H0,none\r\nR1,H0,R2\n\nR2,H1 H0,R1\n");
+
+        Instance instance = FileImporter.importInstance(hospitals, residents);
+        Instance expected = Instance.create(
+                HospitalTable.create(FileImporter.importHospitals(hospitals)),
+                ResidentTable.create(FileImporter.importResidents(residents)));
+
+        assertThat(instance.getHospitalTable().getAll()).isEqualTo(expected.getHospitalTable().getAll());
+        assertThat(instance.getResidentTable().getAll()).isEqualTo(expected.getResidentTable().getAll());
+        assertThat(instance.capacityOf(1)).isEqualTo(1);
+        assertThat(instance.partnerOf(1)).isEqualTo(2);
+        assertThat(instance.hasPartner(0)).isFalse();
+        assertThat(instance.hospitalRankOf(1, 0)).isEqualTo(2);
+        assertThat(instance.residentRankOf(2, 0)).isEqualTo(1);
+    }
+
+    @Test
+    public void danglingReference_shouldThrowWithLine() throws IOException {
+        String hospitals = write("hospitals.csv", "H0,1,2,R0\n");
+        String residents = write("residents.csv", "R0,H0,none\nR1,H0 H7,none\n");
+
+        try {
+            FileImporter.importInstance(hospitals, residents);
+            throw new AssertionError("expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            assertThat(e).hasMessageThat().contains("residents.csv:2: unknown hospital H7");
+        }
+    }
+
+    private String write(String name, String content) throws IOException {
+        File file = folder.newFile(name);
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        return file.getPath();
+    }
+}
@@ -0,0 +1,81 @@
+package edu.texas.social_computing.hospitals;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+@RunWith(JUnit4.class)
+public class HRPPCheckpointTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void run_shouldResumeInterruptedSolveToSameMatching() throws IOException {
+        Instance instance = FileImporter.importInstance(
+                "resources/test_hos50_loc50_res150_coup20_hospitals.csv",
+                "resources/test_hos50_loc50_res150_coup20_residents.csv");
+        Matching uninterrupted = HRPP.run(instance);
+        Path path = folder.getRoot().toPath().resolve("hrpp.checkpoint");
+        HRPPCheckpoint checkpoint = HRPPCheckpoint.every(path, Duration.ZERO);
+
+        try {
+            HRPP.run(instance, new Crash(3), checkpoint);
+            fail("expected the solve to crash");
+        } catch (IllegalStateException expected) {
+            assertThat(Files.exists(path)).isTrue();
+        }
+        SolverMetrics metrics = new SolverMetrics();
+        Matching resumed = HRPP.run(instance, metrics, checkpoint);
+
+        assertThat(metrics.getPhaseCount(SolverListener.Phase.INITIAL_HRP)).isEqualTo(0);
+        for (int r = 0; r < instance.numResidents(); r++) {
+            assertThat(resumed.getAssignedHospital(r)).isEqualTo(uninterrupted.getAssignedHospital(r));
+        }
+        assertThat(Files.exists(path)).isFalse();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void run_shouldRejectCheckpointOfOtherInstance() throws IOException {
+        Instance instance = FileImporter.importInstance(
+                "resources/test_hos50_loc50_res150_coup20_hospitals.csv",
+                "resources/test_hos50_loc50_res150_coup20_residents.csv");
+        Path path = folder.getRoot().toPath().resolve("hrpp.checkpoint");
+        HRPPCheckpoint checkpoint = HRPPCheckpoint.every(path, Duration.ZERO);
+        try {
+            HRPP.run(instance, new Crash(1), checkpoint);
+        } catch (IllegalStateException expected) {
+            // leaves the checkpoint behind
+        }
+
+        HRPP.run(FileImporter.importInstance(
+                "resources/test_hos100_loc10_res200_coup50_hospitals.csv",
+                "resources/test_hos100_loc10_res200_coup50_residents.csv"), SolverListener.NONE, checkpoint);
+    }
+
+    // fails the solve in the given iteration of the repair loop, after that iteration's checkpoint
+    private static final class Crash implements SolverListener {
+        private int iterationsLeft;
+
+        Crash(int iteration) {
+            this.iterationsLeft = iteration;
+        }
+
+        @Override
+        public void proximityViolations(int count) {
+            if (--iterationsLeft == 0) {
+                throw new IllegalStateException("crash");
+            }
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package edu.texas.social_computing.hospitals;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.google.common.truth.Truth.assertThat;
+
+@RunWith(JUnit4.class)
+public class HRPPLimitsTest {
+
+    // HRPP's repair loop goes round a cycle on this instance
+    private static final GeneratorConfig CYCLING = GeneratorConfig.builder()
+            .setSeed(77)
+            .setNumHospitals(10)
+            .setNumLocations(5)
+            .setNumResidents(60)
+            .setNumCouples(30)
+            .build();
+
+    @Test
+    public void run_shouldStopOnCycle() {
+        List<Termination> stops = new ArrayList<>();
+        SolverListener listener = new SolverListener() {
+            @Override
+            public void repairStopped(Termination termination, long iterations, int count) {
+                stops.add(termination);
+            }
+        };
+
+        Matching matching = HRPP.run(new InstanceGenerator(CYCLING).generate(), listener);
+
+        assertThat(matching.getTermination()).isEqualTo(Termination.CYCLE);
+        assertThat(matching.getProximityViolationCount()).isGreaterThan(0);
+        assertThat(stops).containsExactly(Termination.CYCLE);
+    }
+
+    @Test
+    public void run_shouldStopAtIterationBudgetWithoutCycleDetection() {
+        SolverMetrics metrics = new SolverMetrics();
+        HRPPLimits limits = HRPPLimits.builder().setMaxIterations(1000).setDetectingCycles(false).build();
+
+        Matching matching = HRPP.run(new InstanceGenerator(CYCLING).generate(), metrics, HRPPCheckpoint.NONE, limits);
+
+        assertThat(matching.getTermination()).isEqualTo(Termination.ITERATION_BUDGET);
+        assertThat(metrics.getPhaseCount(SolverListener.Phase.RESTRICTED_HRP)).isEqualTo(1000);
+    }
+
+    @Test
+    public void run_shouldStopAtProposalBudget() throws IOException {
+        Instance instance = FileImporter.importInstance(
+                "resources/test_hos50_loc50_res150_coup20_hospitals.csv",
+                "resources/test_hos50_loc50_res150_coup20_residents.csv");
+        HRPPLimits limits = HRPPLimits.builder().setMaxProposals(0).build();
+
+        Matching matching = HRPP.run(instance, SolverListener.NONE, HRPPCheckpoint.NONE, limits);
+
+        assertThat(matching.getTermination()).isEqualTo(Termination.PROPOSAL_BUDGET);
+        assertThat(HRPP.run(instance).getTermination()).isEqualTo(Termination.CONVERGED);
+    }
+}
@@ -56,6 +56,57 @@ public class HRPTest {
         assertThat(m.getAllUnassigned(residentTable.getAll())).contains(r2);
     }
 
+    @Test
+    public void parallel_shouldMatchSequential() {
+        Instance instance = new InstanceGenerator(GeneratorConfig.builder()
+                .setSeed(7)
+                .setNumHospitals(200)
+                .setNumResidents(5000)
+                .setMinCapacity(0)
+                .setMaxCapacity(20)
+                .setCorrelation(0.9)
+                .build()).generate();
+        Matching sequential = HRP.run(new Matching(instance), ResidentQueue.allOf(instance));
+
+        for (int workers : new int[]{1, 2, 8}) {
+            Matching parallel = ParallelHRP.run(instance, workers);
+            for (int r = 0; r < instance.numResidents(); r++) {
+                assertThat(parallel.getAssignedHospital(r)).isEqualTo(sequential.getAssignedHospital(r));
+            }
+        }
+    }
+
+    @Test
+    public void secondRun_shouldMatchRunWithFreshSession() {
+        Instance instance = new InstanceGenerator(GeneratorConfig.builder()
+                .setSeed(3)
+                .setNumHospitals(50)
+                .setNumResidents(1000)
+                .setMaxCapacity(10)
+                .build()).generate();
+        Matching reused = HRP.run(new Matching(instance), ResidentQueue.allOf(instance));
+        // the same assignments, with a session no HRP run has touched yet
+        Matching fresh = Matching.copyOfAssignments(reused);
+
+        // free every third assigned resident, whose next choices and hospital cutoffs the first run moved
+        ResidentQueue reusedQueue = ResidentQueue.fifo(instance.numResidents());
+        ResidentQueue freshQueue = ResidentQueue.fifo(instance.numResidents());
+        for (int r = 0; r < instance.numResidents(); r += 3) {
+            if (reused.hasAssignment(r)) {
+                reused.unassign(r);
+                fresh.unassign(r);
+                reusedQueue.add(r);
+                freshQueue.add(r);
+            }
+        }
+        HRP.run(reused, reusedQueue);
+        HRP.run(fresh, freshQueue);
+
+        for (int r = 0; r < instance.numResidents(); r++) {
+            assertThat(reused.getAssignedHospital(r)).isEqualTo(fresh.getAssignedHospital(r));
+        }
+    }
+
     private Matching runWithAllResidents(ResidentTable residentTable, HospitalTable hospitalTable) {
         Queue<Resident> freeResidents = new ArrayDeque<>();
         freeResidents.addAll(residentTable.getAll());
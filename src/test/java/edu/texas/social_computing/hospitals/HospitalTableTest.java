@@ -0,0 +1,46 @@
+package edu.texas.social_computing.hospitals;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import static com.google.common.truth.Truth.assertThat;
+
+@RunWith(JUnit4.class)
+public class HospitalTableTest {
+
+    private final ImmutableList<Hospital> hospitals = ImmutableList.of(
+            Hospital.create("h2", 1, 1, ImmutableList.of("r1")),
+            Hospital.create("h1", 2, 3, ImmutableList.of()),
+            Hospital.create("h3", 1, 2, ImmutableList.of("r2", "r1")));
+
+    @Test
+    public void indexOf_shouldRoundTripThroughGetHospital() {
+        HospitalTable table = HospitalTable.create(hospitals);
+
+        assertThat(table.size()).isEqualTo(3);
+        for (int h = 0; h < hospitals.size(); h++) {
+            Hospital hospital = hospitals.get(h);
+            assertThat(table.indexOf(hospital.getId())).isEqualTo(h);
+            assertThat(table.getHospital(h)).isEqualTo(hospital);
+            assertThat(table.getHospitalById(hospital.getId())).isEqualTo(hospital);
+        }
+        assertThat(table.getAll()).containsExactlyElementsIn(hospitals).inOrder();
+    }
+
+    @Test
+    public void indexOf_shouldReturnNoneForUnknownId() {
+        HospitalTable table = HospitalTable.create(hospitals);
+
+        assertThat(table.indexOf("h4")).isEqualTo(Instance.NONE);
+        assertThat(table.getHospitalById("h4")).isNull();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void create_shouldRejectDuplicateIds() {
+        HospitalTable.create(ImmutableList.of(
+                Hospital.create("h1", 1, 1, ImmutableList.of()),
+                Hospital.create("h1", 2, 1, ImmutableList.of())));
+    }
+}
@@ -0,0 +1,34 @@
+package edu.texas.social_computing.hospitals;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import static com.google.common.truth.Truth.assertThat;
+
+@RunWith(JUnit4.class)
+public class IdInternerTest {
+
+    @Test
+    public void intern_shouldHandOutDenseIndicesInInsertionOrder() {
+        IdInterner interner = new IdInterner();
+
+        assertThat(interner.intern("b")).isEqualTo(0);
+        assertThat(interner.intern("a")).isEqualTo(1);
+        assertThat(interner.intern("b")).isEqualTo(0);
+        assertThat(interner.intern("c")).isEqualTo(2);
+
+        assertThat(interner.size()).isEqualTo(3);
+        assertThat(interner.idOf(1)).isEqualTo("a");
+        assertThat(interner.indexOf("c")).isEqualTo(2);
+    }
+
+    @Test
+    public void indexOf_shouldReturnNoneForUnknownId() {
+        IdInterner interner = new IdInterner();
+        interner.intern("a");
+
+        assertThat(interner.indexOf("b")).isEqualTo(Instance.NONE);
+        assertThat(interner.size()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,85 @@
+package edu.texas.social_computing.hospitals;
+
+import com.google.common.collect.Range;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static com.google.common.truth.Truth.assertThat;
+
+@RunWith(JUnit4.class)
+public class InstanceGeneratorTest {
+
+    private static final GeneratorConfig CONFIG = GeneratorConfig.builder()
+            .setSeed(42)
+            .setNumHospitals(20)
+            .setNumLocations(4)
+            .setNumResidents(300)
+            .setNumCouples(30)
+            .setListLength(6)
+            .build();
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void generate_shouldOnlyDependOnConfig() {
+        Instance first = new InstanceGenerator(CONFIG).generate();
+        Instance second = new InstanceGenerator(CONFIG).generate();
+
+        assertThat(second.getHospitalTable().getAll()).isEqualTo(first.getHospitalTable().getAll());
+        assertThat(second.getResidentTable().getAll()).isEqualTo(first.getResidentTable().getAll());
+        assertThat(first.residentPreferences().length(7)).isEqualTo(6);
+        assertThat(first.partnerOf(7)).isEqualTo(6);
+        assertThat(first.hasPartner(60)).isFalse();
+    }
+
+    @Test
+    public void generate_shouldSkewZipfCapacitiesTowardsMinCapacity() {
+        GeneratorConfig.Builder builder = GeneratorConfig.builder()
+                .setSeed(42)
+                .setNumHospitals(2000)
+                .setNumResidents(0)
+                .setListLength(0)
+                .setMinCapacity(2)
+                .setMaxCapacity(11);
+        Instance uniform = new InstanceGenerator(builder.build()).generate();
+        Instance zipf = new InstanceGenerator(builder
+                .setCapacityDistribution(GeneratorConfig.CapacityDistribution.ZIPF)
+                .build()).generate();
+
+        int[] counts = new int[12];
+        long uniformTotal = 0;
+        long zipfTotal = 0;
+        for (int h = 0; h < zipf.numHospitals(); h++) {
+            assertThat(zipf.capacityOf(h)).isIn(Range.closed(2, 11));
+            counts[zipf.capacityOf(h)]++;
+            uniformTotal += uniform.capacityOf(h);
+            zipfTotal += zipf.capacityOf(h);
+        }
+        // weights 1, 1/2, ..., 1/10 put about a third of the hospitals at the smallest capacity
+        assertThat(counts[2]).isGreaterThan(counts[3]);
+        assertThat(counts[3]).isGreaterThan(counts[11]);
+        assertThat(counts[2]).isGreaterThan(2000 / 4);
+        assertThat(zipfTotal).isLessThan(uniformTotal);
+    }
+
+    @Test
+    public void writeCsv_shouldMatchGenerate() throws IOException {
+        Path hospitalsFile = folder.newFile("hospitals.csv").toPath();
+        Path residentsFile = folder.newFile("residents.csv").toPath();
+
+        // a tiny buffer forces a pass over the residents per hospital
+        new InstanceGenerator(CONFIG, 1).writeCsv(hospitalsFile, residentsFile);
+        Instance imported = FileImporter.importInstance(hospitalsFile.toString(), residentsFile.toString());
+        Instance generated = new InstanceGenerator(CONFIG).generate();
+
+        assertThat(imported.getHospitalTable().getAll()).isEqualTo(generated.getHospitalTable().getAll());
+        assertThat(imported.getResidentTable().getAll()).isEqualTo(generated.getResidentTable().getAll());
+    }
+}
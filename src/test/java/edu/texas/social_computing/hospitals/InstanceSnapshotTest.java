@@ -0,0 +1,101 @@
+package edu.texas.social_computing.hospitals;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static com.google.common.truth.Truth.assertThat;
+
+@RunWith(JUnit4.class)
+public class InstanceSnapshotTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void load_shouldRestoreWrittenInstance() throws IOException {
+        Instance instance = Instance.create(
+                HospitalTable.create(ImmutableList.of(
+                        Hospital.create("h1", 3, 2, ImmutableList.of("r2", "r1")),
+                        Hospital.create("hôpital", 7, 1, ImmutableList.of()))),
+                ResidentTable.create(ImmutableList.of(
+                        Resident.create("r1", "r2", ImmutableList.of("hôpital", "h1")),
+                        Resident.create("r2", "r1", ImmutableList.of("h1")),
+                        Resident.create("r3", ImmutableList.of()))));
+        Path path = folder.newFile("instance.snapshot").toPath();
+
+        InstanceSnapshot.write(instance, path);
+        Instance loaded = InstanceSnapshot.load(path);
+
+        assertThat(loaded.getHospitalTable().getAll()).isEqualTo(instance.getHospitalTable().getAll());
+        assertThat(loaded.getResidentTable().getAll()).isEqualTo(instance.getResidentTable().getAll());
+        assertThat(loaded.locationOf(1)).isEqualTo(7);
+        assertThat(loaded.partnerOf(1)).isEqualTo(0);
+        assertThat(loaded.hasPartner(2)).isFalse();
+        assertThat(loaded.hospitalRankOf(0, 0)).isEqualTo(1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void load_shouldRejectCorruptIdOffsets() throws IOException {
+        Instance instance = Instance.create(
+                HospitalTable.create(ImmutableList.of(Hospital.create("h1", 1, 1, ImmutableList.of("r1")))),
+                ResidentTable.create(ImmutableList.of(Resident.create("r1", ImmutableList.of("h1")))));
+        Path path = folder.newFile("instance.snapshot").toPath();
+        InstanceSnapshot.write(instance, path);
+        byte[] bytes = Files.readAllBytes(path);
+        // the end offset of the first hospital id, right after the 8 int header and the leading 0 offset
+        ByteBuffer.wrap(bytes).putInt(9 * Integer.BYTES, 1000);
+        Files.write(path, bytes);
+
+        InstanceSnapshot.load(path);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void load_shouldRejectNegativeCounts() throws IOException {
+        Instance instance = Instance.create(
+                HospitalTable.create(ImmutableList.of(Hospital.create("h1", 1, 1, ImmutableList.of("r1")))),
+                ResidentTable.create(ImmutableList.of(Resident.create("r1", ImmutableList.of("h1")))));
+        Path path = folder.newFile("instance.snapshot").toPath();
+        InstanceSnapshot.write(instance, path);
+        byte[] bytes = Files.readAllBytes(path);
+        // numHospitals
+        ByteBuffer.wrap(bytes).putInt(2 * Integer.BYTES, -5);
+        Files.write(path, bytes);
+
+        InstanceSnapshot.load(path);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void load_shouldRejectOneSidedPartners() throws IOException {
+        Instance instance = Instance.create(
+                HospitalTable.create(ImmutableList.of(Hospital.create("h1", 1, 1, ImmutableList.of("r1")))),
+                ResidentTable.create(ImmutableList.of(
+                        Resident.create("r1", "r2", ImmutableList.of("h1")),
+                        Resident.create("r2", "r1", ImmutableList.of()),
+                        Resident.create("r3", ImmutableList.of()))));
+        Path path = folder.newFile("instance.snapshot").toPath();
+        InstanceSnapshot.write(instance, path);
+        byte[] bytes = Files.readAllBytes(path);
+        // the partners are the last ints of the file: make r3 claim r1
+        ByteBuffer.wrap(bytes).putInt(bytes.length - Integer.BYTES, 0);
+        Files.write(path, bytes);
+
+        InstanceSnapshot.load(path);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void load_shouldRejectOtherFiles() throws IOException {
+        Path path = folder.newFile("not-a-snapshot").toPath();
+        Files.write(path, new byte[64]);
+
+        InstanceSnapshot.load(path);
+    }
+}
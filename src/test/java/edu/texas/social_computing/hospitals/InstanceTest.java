@@ -0,0 +1,111 @@
+package edu.texas.social_computing.hospitals;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static com.google.common.truth.Truth.assertThat;
+
+@RunWith(JUnit4.class)
+public class InstanceTest {
+
+    @Test
+    public void indices_shouldFollowTableOrder() {
+        Instance instance = Instance.create(
+                HospitalTable.create(ImmutableList.of(
+                        Hospital.create("h1", 1, 1, ImmutableList.of("r2", "r1")),
+                        Hospital.create("h2", 2, 3, ImmutableList.of("r1")))),
+                ResidentTable.create(ImmutableList.of(
+                        Resident.create("r1", "r2", ImmutableList.of("h2", "h1")),
+                        Resident.create("r2", "r1", ImmutableList.of("h1")))));
+
+        assertThat(instance.numHospitals()).isEqualTo(2);
+        assertThat(instance.numResidents()).isEqualTo(2);
+        assertThat(instance.hospital(1).getId()).isEqualTo("h2");
+        assertThat(instance.capacityOf(1)).isEqualTo(3);
+        assertThat(instance.locationOf(0)).isEqualTo(1);
+        assertThat(instance.partnerOf(0)).isEqualTo(1);
+        assertThat(instance.partnerOf(1)).isEqualTo(0);
+    }
+
+    @Test
+    public void ranks_shouldBePreferencePositions() {
+        Instance instance = Instance.create(
+                HospitalTable.create(ImmutableList.of(
+                        Hospital.create("h1", 1, 1, ImmutableList.of("r2", "r1")),
+                        Hospital.create("h2", 1, 1, ImmutableList.of("r1")))),
+                ResidentTable.create(ImmutableList.of(
+                        Resident.create("r1", ImmutableList.of("h2", "h1")),
+                        Resident.create("r2", ImmutableList.of("h1", "h2")))));
+
+        assertThat(instance.hospitalRankOf(0, 1)).isEqualTo(0);
+        assertThat(instance.hospitalRankOf(0, 0)).isEqualTo(1);
+        assertThat(instance.residentRankOf(0, 0)).isEqualTo(1);
+        assertThat(instance.residentRankOf(1, 1)).isEqualTo(1);
+        assertThat(instance.isRanked(1, 1)).isFalse();
+        assertThat(instance.hospitalRankOf(1, 1)).isEqualTo(Instance.UNRANKED);
+    }
+
+    @Test
+    public void acceptable_shouldOnlyKeepMutuallyRankedPairs() {
+        Instance instance = Instance.create(
+                HospitalTable.create(ImmutableList.of(
+                        Hospital.create("h1", 1, 1, ImmutableList.of("r2", "r1")),
+                        Hospital.create("h2", 1, 1, ImmutableList.of("r1", "r2")))),
+                ResidentTable.create(ImmutableList.of(
+                        Resident.create("r1", ImmutableList.of("h2", "h1")),
+                        Resident.create("r2", ImmutableList.of("h1")))));
+
+        assertThat(instance.acceptableHospitals().toArray(0)).asList().containsExactly(1, 0).inOrder();
+        assertThat(instance.acceptableHospitals().toArray(1)).asList().containsExactly(0);
+        assertThat(instance.acceptableResidents().toArray(0)).asList().containsExactly(1, 0).inOrder();
+        assertThat(instance.acceptableResidents().toArray(1)).asList().containsExactly(0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownPartner_shouldThrow() {
+        Instance.create(
+                HospitalTable.create(ImmutableList.of()),
+                ResidentTable.create(ImmutableList.of(Resident.create("r1", "r9", ImmutableList.of()))));
+    }
+
+    @Test
+    public void sharedInstance_shouldSolveConcurrentlyLikeSequentially() throws Exception {
+        Instance instance = FileImporter.importInstance(
+                "resources/test_hos100_loc10_res200_coup50_hospitals.csv",
+                "resources/test_hos100_loc10_res200_coup50_residents.csv");
+        List<Callable<Matching>> solves = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            solves.add(() -> HRPP.run(instance));
+            solves.add(() -> RHRP.run(new Matching(instance), ResidentQueue.allOf(instance)));
+        }
+        int[] hrpp = assignments(HRPP.run(instance));
+        int[] rhrp = assignments(RHRP.run(new Matching(instance), ResidentQueue.allOf(instance)));
+
+        ExecutorService executor = Executors.newFixedThreadPool(solves.size());
+        try {
+            List<Future<Matching>> matchings = executor.invokeAll(solves);
+            for (int i = 0; i < matchings.size(); i++) {
+                assertThat(assignments(matchings.get(i).get())).isEqualTo(i % 2 == 0 ? hrpp : rhrp);
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static int[] assignments(Matching m) {
+        int[] assignments = new int[m.getInstance().numResidents()];
+        for (int r = 0; r < assignments.length; r++) {
+            assignments[r] = m.getAssignedHospital(r);
+        }
+        return assignments;
+    }
+}
@@ -0,0 +1,45 @@
+package edu.texas.social_computing.hospitals;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.primitives.ImmutableLongArray;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.concurrent.ForkJoinPool;
+
+import static com.google.common.truth.Truth.assertThat;
+
+@RunWith(JUnit4.class)
+public class MatchingEvaluatorTest {
+
+    @Test
+    public void evaluate_shouldComputeHospitalEvalMetricsAndOutcomes() {
+        Instance instance = Instance.create(
+                HospitalTable.create(ImmutableList.of(
+                        Hospital.create("h1", 1, 2, ImmutableList.of("r1", "r2", "r3")),
+                        Hospital.create("h2", 2, 1, ImmutableList.of("r3")))),
+                ResidentTable.create(ImmutableList.of(
+                        Resident.create("r1", ImmutableList.of("h1")),
+                        Resident.create("r2", "r3", ImmutableList.of("h1")),
+                        Resident.create("r3", "r2", ImmutableList.of("h2", "h1")))));
+        Matching matching = new Matching(instance);
+        matching.assign(0, 0);
+        matching.assign(1, 0);
+
+        MatchingEvaluation evaluation = MatchingEvaluator.evaluate(matching, new ForkJoinPool(2));
+
+        // h1 holds its ranks 0 and 1, h2's empty seat counts as rank 2 (the number of hospitals)
+        assertThat(evaluation.getAverageHappiness()).isWithin(1e-9).of(1.25);
+        assertThat(evaluation.getHappinessStandardDeviation()).isWithin(1e-9).of(0.75);
+        assertThat(evaluation.getAverageFilledPercentage()).isWithin(1e-9).of(0.5);
+        assertThat(evaluation.getEmptySeats()).isEqualTo(1);
+        assertThat(evaluation.getHospitalRankHistogram()).isEqualTo(ImmutableLongArray.of(1, 1));
+        assertThat(evaluation.getResidentRankHistogram()).isEqualTo(ImmutableLongArray.of(2));
+        assertThat(evaluation.getUnmatchedResidents()).isEqualTo(1);
+        assertThat(evaluation.getUnmatchedSingles()).isEqualTo(0);
+        assertThat(evaluation.getCouplesHalfMatched()).isEqualTo(1);
+        assertThat(evaluation.getCouplesTogether() + evaluation.getCouplesApart() + evaluation.getCouplesUnmatched())
+                .isEqualTo(0);
+    }
+}
@@ -0,0 +1,74 @@
+package edu.texas.social_computing.hospitals;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static com.google.common.truth.Truth.assertThat;
+
+@RunWith(JUnit4.class)
+public class MatchingExporterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final Instance instance = Instance.create(
+            HospitalTable.create(ImmutableList.of(
+                    Hospital.create("h1", 1, 2, ImmutableList.of("r2", "r1")),
+                    Hospital.create("hôpital", 2, 1, ImmutableList.of("r1")))),
+            ResidentTable.create(ImmutableList.of(
+                    Resident.create("r1", "r2", ImmutableList.of("hôpital", "h1")),
+                    Resident.create("r2", "r1", ImmutableList.of("h1")),
+                    Resident.create("r3", ImmutableList.of("h1")))));
+
+    @Test
+    public void write_shouldFormatEveryColumn() throws IOException {
+        Matching m = new Matching(instance);
+        m.assign(0, 0);
+        m.assign(1, 0);
+        Path directory = folder.getRoot().toPath();
+
+        MatchingExporter.create(m).write(directory, "out");
+
+        assertThat(Files.readAllLines(directory.resolve("out_residents.csv"), StandardCharsets.UTF_8)).containsExactly(
+                "residentId, residentAssignment, partnerId, partnerAssignment, residentAssignmentLocation, "
+                        + "residentAssignmentRank, residentInitialPreferences, residentFinalPreferences, hasPartner, "
+                        + "isAnchorPartner, partnerAssignmentLocation, partnerAssignmentRank, "
+                        + "partnerInitialPreferences, partnerFinalPreferences",
+                "r1, h1, r2, h1, 1, 1, hôpital h1, hôpital h1, true, false, 1, 0, h1, h1",
+                "r2, h1, r1, h1, 1, 0, h1, h1, true, true, 1, 1, hôpital h1, hôpital h1",
+                "r3, NO_MATCH, NA, NA, -1, 2147483647, h1, h1, false, NA, NA, NA, NA, NA").inOrder();
+        assertThat(Files.readAllLines(directory.resolve("out_hospitals.csv"), StandardCharsets.UTF_8)).containsExactly(
+                "hospitalId, hospitalLocation, capacity, assignmentCount, filledPercentage, preferences, "
+                        + "assignments, assignmentRanks",
+                "h1, 1, 2, 2, 1.0, r2 r1, r1 r2, 1 0",
+                "hôpital, 2, 1, 0, 0.0, r1, , ").inOrder();
+    }
+
+    @Test
+    public void without_shouldDropPreferenceColumns() throws IOException {
+        Matching m = new Matching(instance);
+        m.assign(2, 0);
+        Path directory = folder.getRoot().toPath();
+
+        MatchingExporter.create(m)
+                .without(MatchingExporter.OptionalColumn.values())
+                .write(directory, "out");
+
+        assertThat(Files.readAllLines(directory.resolve("out_residents.csv"), StandardCharsets.UTF_8).get(3))
+                .isEqualTo("r3, h1, NA, NA, 1, 0, false, NA, NA, NA");
+        assertThat(Files.readAllLines(directory.resolve("out_hospitals.csv"), StandardCharsets.UTF_8)).containsExactly(
+                "hospitalId, hospitalLocation, capacity, assignmentCount, filledPercentage, assignments, "
+                        + "assignmentRanks",
+                "h1, 1, 2, 1, 0.5, r3, -1",
+                "hôpital, 2, 1, 0, 0.0, , ").inOrder();
+    }
+}
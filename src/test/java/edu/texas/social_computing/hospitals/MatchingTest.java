@@ -0,0 +1,110 @@
+package edu.texas.social_computing.hospitals;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static com.google.common.truth.Truth.assertThat;
+
+@RunWith(JUnit4.class)
+public class MatchingTest {
+
+    @Test
+    public void worstAndKthWorst_shouldFollowHospitalRanks() {
+        Instance instance = Instance.create(
+                HospitalTable.create(ImmutableList.of(
+                        Hospital.create("h1", 1, 3, ImmutableList.of("r1", "r2", "r3", "r4")))),
+                ResidentTable.create(ImmutableList.of(
+                        Resident.create("r1", ImmutableList.of("h1")),
+                        Resident.create("r2", ImmutableList.of("h1")),
+                        Resident.create("r3", ImmutableList.of("h1")),
+                        Resident.create("r4", ImmutableList.of("h1")))));
+        Matching m = new Matching(instance);
+
+        m.assign(1, 0);
+        m.assign(3, 0);
+        m.assign(0, 0);
+
+        assertThat(m.isFull(0)).isTrue();
+        assertThat(m.getWorstAssignedResident(0)).isEqualTo(3);
+        assertThat(m.getKthWorstAssignedResident(0, 2)).isEqualTo(1);
+        assertThat(m.getKthWorstAssignedResident(0, 3)).isEqualTo(0);
+        assertThat(m.getKthWorstAssignedResident(0, 4)).isEqualTo(Matching.UNASSIGNED);
+        assertThat(m.fitsAboveWorst(0, 2)).isTrue();
+        assertThat(m.fitsAboveWorst(0, 2, 2)).isFalse();
+
+        m.unassign(3);
+
+        assertThat(m.getAssignmentCount(0)).isEqualTo(2);
+        assertThat(m.getWorstAssignedResident(0)).isEqualTo(1);
+    }
+
+    @Test
+    public void proximityViolations_shouldFollowAssignments() {
+        Instance instance = Instance.create(
+                HospitalTable.create(ImmutableList.of(
+                        Hospital.create("h1", 1, 2, ImmutableList.of("r1", "r2")),
+                        Hospital.create("h2", 2, 2, ImmutableList.of("r1", "r2")))),
+                ResidentTable.create(ImmutableList.of(
+                        Resident.create("r1", "r2", ImmutableList.of("h1", "h2")),
+                        Resident.create("r2", "r1", ImmutableList.of("h1", "h2")))));
+        Matching m = new Matching(instance);
+
+        assertThat(m.getNextNDProximityViolator()).isEqualTo(Instance.NONE);
+
+        m.assign(0, 0);
+        assertThat(m.getNextNDProximityViolator()).isEqualTo(1);
+
+        m.assign(1, 1);
+        assertThat(m.getNextNDProximityViolator()).isEqualTo(1);
+        assertThat(m.getNDProximityViolators()).containsExactly(1);
+        assertThat(m.hasAssignment(1)).isTrue();
+
+        m.assign(1, 0);
+        assertThat(m.getProximityViolationCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void randomAssignments_shouldMatchSortedOrder() {
+        int numResidents = 200;
+        List<String> residentIds = new ArrayList<>();
+        List<Resident> residents = new ArrayList<>();
+        for (int i = 0; i < numResidents; i++) {
+            residentIds.add("r" + i);
+            residents.add(Resident.create("r" + i, ImmutableList.of("h1")));
+        }
+        Random random = new Random(42);
+        List<String> hospitalPrefs = new ArrayList<>(residentIds.subList(0, numResidents / 2));
+        Collections.shuffle(hospitalPrefs, random);
+        Instance instance = Instance.create(
+                HospitalTable.create(ImmutableList.of(Hospital.create("h1", 1, 10, hospitalPrefs))),
+                ResidentTable.create(residents));
+        Matching m = new Matching(instance);
+
+        List<Integer> assigned = new ArrayList<>();
+        Comparator<Integer> worstFirst = Comparator
+                .comparing((Integer r) -> instance.hospitalRankOf(0, r)).reversed()
+                .thenComparing(r -> r);
+        for (int step = 0; step < 2000; step++) {
+            int r = random.nextInt(numResidents);
+            if (assigned.contains(r)) {
+                m.unassign(r);
+                assigned.remove(Integer.valueOf(r));
+            } else {
+                m.assign(r, 0);
+                assigned.add(r);
+            }
+            assigned.sort(worstFirst);
+            for (int k = 1; k <= Math.min(3, assigned.size()); k++) {
+                assertThat(m.getKthWorstAssignedResident(0, k)).isEqualTo(assigned.get(k - 1));
+            }
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package edu.texas.social_computing.hospitals;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.FileNotFoundException;
+
+import static com.google.common.truth.Truth.assertThat;
+
+@RunWith(JUnit4.class)
+public class PortfolioSolverTest {
+
+    @Test
+    public void run_shouldReturnBestRunAndItsSeed() throws FileNotFoundException {
+        Instance instance = FileImporter.importInstance(
+                "resources/test_hos50_loc50_res150_coup20_hospitals.csv",
+                "resources/test_hos50_loc50_res150_coup20_residents.csv");
+
+        PortfolioSolver.Result result = PortfolioSolver.run(instance, PortfolioSolver.Solver.HRPP, 10, 4, 1000);
+
+        assertThat(result.getFinishedRuns() + result.getCancelledRuns()).isEqualTo(4);
+        assertThat(result.getSeed()).isAtLeast(10L);
+        assertThat(result.getSeed()).isLessThan(14L);
+        assertThat(result.getMatching().getProximityViolationCount()).isEqualTo(0);
+        // the best run is reproducible from its seed
+        Matching again = HRPP.run(instance, SolverListener.NONE, HRPPCheckpoint.NONE, HRPPLimits.DEFAULT,
+                () -> ResidentQueue.shuffled(instance.numResidents(), result.getSeed()));
+        for (int r = 0; r < instance.numResidents(); r++) {
+            assertThat(again.getAssignedHospital(r)).isEqualTo(result.getMatching().getAssignedHospital(r));
+        }
+        assertThat(MatchingScore.of(again)).isEqualTo(result.getScore());
+    }
+
+    @Test
+    public void run_shouldCancelRunsSlowerThanFastest() throws FileNotFoundException {
+        // the seeds' solves take from about 27 to 42ms here when run alone
+        Instance instance = FileImporter.importInstance(
+                "resources/test_hos300_loc50_res500_coup100_hospitals.csv",
+                "resources/test_hos300_loc50_res500_coup100_residents.csv");
+
+        PortfolioSolver.Result result = PortfolioSolver.run(instance, PortfolioSolver.Solver.HRPP, 0, 6, 1);
+
+        assertThat(result.getFinishedRuns() + result.getCancelledRuns()).isEqualTo(6);
+        assertThat(result.getCancelledRuns()).isGreaterThan(0);
+        // the best is a finished run: a complete solve from its seed
+        Matching again = HRPP.run(instance, SolverListener.NONE, HRPPCheckpoint.NONE, HRPPLimits.DEFAULT,
+                () -> ResidentQueue.shuffled(instance.numResidents(), result.getSeed()));
+        assertThat(result.getMatching().getProximityViolationCount()).isEqualTo(0);
+        for (int r = 0; r < instance.numResidents(); r++) {
+            assertThat(result.getMatching().getAssignedHospital(r)).isEqualTo(again.getAssignedHospital(r));
+        }
+    }
+
+    @Test
+    public void run_shouldScoreRhrpRuns() throws FileNotFoundException {
+        Instance instance = FileImporter.importInstance(
+                "resources/test_hos5_loc2_res16_coup3_hospitals.csv",
+                "resources/test_hos5_loc2_res16_coup3_residents.csv");
+
+        PortfolioSolver.Result result = PortfolioSolver.run(instance, PortfolioSolver.Solver.RHRP, 0, 3, 1000);
+
+        assertThat(result.getFinishedRuns()).isEqualTo(3);
+        assertThat(result.getScore().getAverageFilledPercentage()).isGreaterThan(0.0);
+        assertThat(result.getScore()).isEqualTo(MatchingScore.of(result.getMatching()));
+    }
+}
@@ -0,0 +1,116 @@
+package edu.texas.social_computing.hospitals;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.primitives.Ints;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.Random;
+
+import static com.google.common.truth.Truth.assertThat;
+
+@RunWith(JUnit4.class)
+public class PreferenceViewsTest {
+
+    private final Instance instance = new InstanceGenerator(GeneratorConfig.builder()
+            .setSeed(5)
+            .setNumHospitals(40)
+            .setNumLocations(6)
+            .setNumResidents(100)
+            .setNumCouples(0)
+            .build()).generate();
+
+    @Test
+    public void lookups_shouldAgreeWithToArrayThroughRestrictAndReset() {
+        PreferenceViews views = new PreferenceViews(instance);
+        Random random = new Random(1);
+
+        for (int step = 0; step < 5000; step++) {
+            int r = random.nextInt(instance.numResidents());
+            switch (random.nextInt(3)) {
+                case 0:
+                    views.restrictToLocation(r, randomLocation(random));
+                    break;
+                case 1:
+                    views.resetToProgress(r, random.nextInt(instance.residentPreferences().length(r) + 2));
+                    break;
+                default:
+                    // narrow again without widening first, as the repair loop does for a partner
+                    views.resetToProgress(r, random.nextInt(instance.residentPreferences().length(r) + 1));
+                    views.restrictToLocation(r, randomLocation(random));
+            }
+            assertAgrees(views, r);
+        }
+    }
+
+    @Test
+    public void restore_shouldBringBackSavedView() {
+        PreferenceViews views = new PreferenceViews(instance);
+        Random random = new Random(2);
+
+        for (int r = 0; r < instance.numResidents(); r++) {
+            views.resetToProgress(r, random.nextInt(instance.residentPreferences().length(r) + 1));
+            if (random.nextBoolean()) {
+                views.restrictToLocation(r, randomLocation(random));
+            }
+            int[] saved = views.toArray(r);
+            int start = views.start(r);
+            int locationFilter = views.locationFilter(r);
+            views.reset(r);
+            views.restrictToLocation(r, randomLocation(random));
+
+            views.restore(r, start, locationFilter);
+
+            assertThat(views.toArray(r)).isEqualTo(saved);
+            assertAgrees(views, r);
+        }
+    }
+
+    @Test
+    public void rebase_shouldReindexRestrictedViews() {
+        PreferenceViews views = new PreferenceViews(instance);
+        Random random = new Random(3);
+        for (int r = 0; r < instance.numResidents(); r++) {
+            views.resetToProgress(r, random.nextInt(3));
+            if (r % 2 == 0) {
+                views.restrictToLocation(r, randomLocation(random));
+            }
+        }
+        // give every third resident its list backwards
+        ImmutableMap.Builder<Integer, int[]> edits = ImmutableMap.builder();
+        for (int r = 0; r < instance.numResidents(); r += 3) {
+            int[] reversed = instance.residentPreferences().toArray(r);
+            Ints.reverse(reversed);
+            edits.put(r, reversed);
+        }
+        Instance changed = instance.withChanges(ImmutableMap.of(), edits.build(), ImmutableMap.of());
+
+        views.rebase(changed);
+
+        for (int r = 0; r < instance.numResidents(); r++) {
+            assertAgrees(views, r);
+        }
+    }
+
+    private int randomLocation(Random random) {
+        // now and then the location of an unassigned partner, which empties the view
+        return random.nextInt(10) == 0 ? Instance.NONE : instance.locationOf(random.nextInt(instance.numHospitals()));
+    }
+
+    private void assertAgrees(PreferenceViews views, int r) {
+        int[] view = views.toArray(r);
+        assertThat(views.size(r)).isEqualTo(view.length);
+        for (int i = 0; i < view.length; i++) {
+            assertThat(views.hospitalAt(r, i)).isEqualTo(view[i]);
+            assertThat(views.rankOf(r, view[i])).isEqualTo(i);
+        }
+        for (int h = 0; h < instance.numHospitals(); h++) {
+            boolean inView = Ints.contains(view, h);
+            assertThat(views.contains(r, h)).isEqualTo(inView);
+            if (!inView) {
+                assertThat(views.rankOf(r, h)).isEqualTo(Instance.UNRANKED);
+            }
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package edu.texas.social_computing.hospitals;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.FileNotFoundException;
+
+import static com.google.common.truth.Truth.assertThat;
+
+@RunWith(JUnit4.class)
+public class RematcherTest {
+
+    private final Instance instance = Instance.create(
+            HospitalTable.create(ImmutableList.of(
+                    Hospital.create("h1", 1, 1, ImmutableList.of("r1", "r2", "r3")),
+                    Hospital.create("h2", 1, 1, ImmutableList.of("r3", "r2")))),
+            ResidentTable.create(ImmutableList.of(
+                    Resident.create("r1", ImmutableList.of("h1")),
+                    Resident.create("r2", ImmutableList.of("h1", "h2")),
+                    Resident.create("r3", ImmutableList.of("h1", "h2")))));
+
+    // RHRP places r1 and c1 at h1, c2 at h2 and r2 at h3
+    private final Instance withCouple = Instance.create(
+            HospitalTable.create(ImmutableList.of(
+                    Hospital.create("h1", 1, 2, ImmutableList.of("c1", "r1", "r2")),
+                    Hospital.create("h2", 1, 1, ImmutableList.of("c2", "r2")),
+                    Hospital.create("h3", 1, 1, ImmutableList.of("c2", "r2", "r1")))),
+            ResidentTable.create(ImmutableList.of(
+                    Resident.create("r1", ImmutableList.of("h1", "h3")),
+                    Resident.create("r2", ImmutableList.of("h1", "h2", "h3")),
+                    Resident.create("c1", "c2", ImmutableList.of("h1")),
+                    Resident.create("c2", "c1", ImmutableList.of("h2")))));
+
+    @Test
+    public void withHRPP_shouldFillNewSeats() {
+        Matching m = HRPP.run(instance);
+        assertThat(m.getAssignedHospital(1)).isEqualTo(Matching.UNASSIGNED);
+
+        Rematcher.withHRPP(m, ChangeSet.builder().setCapacity("h1", 2).build());
+
+        assertThat(m.getInstance().capacityOf(0)).isEqualTo(2);
+        assertThat(m.getAssignedHospital(0)).isEqualTo(0);
+        assertThat(m.getAssignedHospital(1)).isEqualTo(0);
+        assertThat(m.getAssignedHospital(2)).isEqualTo(1);
+        assertThat(StabilityValidator.validate(m).isStable()).isTrue();
+    }
+
+    @Test
+    public void withHRPP_shouldPassFreedSeatDown() {
+        Matching m = HRPP.run(instance);
+
+        Rematcher.withHRPP(m, ChangeSet.builder().withdraw("r1").build());
+
+        // r2 takes r1's seat, and r3 stays at h2 because h1 prefers r2
+        assertThat(m.getAssignedHospital(0)).isEqualTo(Matching.UNASSIGNED);
+        assertThat(m.getAssignedHospital(1)).isEqualTo(0);
+        assertThat(m.getAssignedHospital(2)).isEqualTo(1);
+        assertThat(StabilityValidator.validate(m).isStable()).isTrue();
+    }
+
+    @Test
+    public void withHRPP_shouldEvictWhenCapacityShrinksAndFollowEdits() {
+        Matching m = HRPP.run(instance);
+
+        Rematcher.withHRPP(m, ChangeSet.builder()
+                .setCapacity("h1", 0)
+                .editPreferences("r2", ImmutableList.of("h2"))
+                .build());
+
+        assertThat(m.getAssignedHospital(0)).isEqualTo(Matching.UNASSIGNED);
+        assertThat(m.getAssignedHospital(2)).isEqualTo(1);
+        assertThat(m.getInstance().resident(1).getInitialPreferences()).containsExactly("h2");
+        assertThat(StabilityValidator.validate(m).isStable()).isTrue();
+    }
+
+    @Test
+    public void withHRPP_shouldBeAsGoodAsSolvingTheChangedInstance() throws FileNotFoundException {
+        Instance bundled = FileImporter.importInstance(
+                "resources/test_hos50_loc50_res150_coup20_hospitals.csv",
+                "resources/test_hos50_loc50_res150_coup20_residents.csv");
+        Matching m = HRPP.run(bundled);
+        SolverMetrics metrics = new SolverMetrics();
+        m.setListener(metrics);
+
+        ChangeSet changes = ChangeSet.builder()
+                .withdraw(bundled.resident(0).getId())
+                .withdraw(bundled.resident(100).getId())
+                .setCapacity(bundled.hospital(3).getId(), bundled.capacityOf(3) + 2)
+                .setCapacity(bundled.hospital(7).getId(), 0)
+                .build();
+        Rematcher.withHRPP(m, changes);
+        Matching solved = HRPP.run(m.getInstance());
+
+        assertThat(m.hasAssignment(0)).isFalse();
+        assertThat(m.hasAssignment(100)).isFalse();
+        assertThat(m.getAssignmentCount(7)).isEqualTo(0);
+        assertThat(m.getProximityViolationCount()).isEqualTo(solved.getProximityViolationCount());
+        assertThat(StabilityValidator.validate(m).getUnstableSingleCount())
+                .isEqualTo(StabilityValidator.validate(solved).getUnstableSingleCount());
+        assertThat(metrics.getProposals()).isLessThan((long) bundled.numResidents());
+    }
+
+    @Test
+    public void withRHRP_shouldPassWithdrawnPartnersSeatDown() {
+        Matching m = RHRP.run(new Matching(withCouple), ResidentQueue.allOf(withCouple));
+
+        Rematcher.withRHRP(m, ChangeSet.builder().withdraw("c2").build());
+
+        // c1 keeps its seat as a single, and r2 moves up to the seat c2 left at h2
+        assertThat(m.getInstance().hasPartner(2)).isFalse();
+        assertThat(m.getAssignedHospital(0)).isEqualTo(0);
+        assertThat(m.getAssignedHospital(1)).isEqualTo(1);
+        assertThat(m.getAssignedHospital(2)).isEqualTo(0);
+        assertThat(m.getAssignedHospital(3)).isEqualTo(Matching.UNASSIGNED);
+        assertThat(StabilityValidator.validate(m).isStable()).isTrue();
+    }
+
+    @Test
+    public void withRHRP_shouldEvictBothPartnersWhenCapacityShrinks() {
+        Matching m = RHRP.run(new Matching(withCouple), ResidentQueue.allOf(withCouple));
+
+        Rematcher.withRHRP(m, ChangeSet.builder().setCapacity("h2", 0).build());
+
+        // c2 loses its seat at h2, so c1 gives up h1 as well
+        assertThat(m.getAssignedHospital(0)).isEqualTo(0);
+        assertThat(m.getAssignedHospital(2)).isEqualTo(Matching.UNASSIGNED);
+        assertThat(m.getAssignedHospital(3)).isEqualTo(Matching.UNASSIGNED);
+        assertThat(m.getAssignmentCount(1)).isEqualTo(0);
+        assertThat(StabilityValidator.validate(m).isStable()).isTrue();
+    }
+
+    @Test
+    public void withRHRP_shouldRestartBothPartnersOnEdit() {
+        Matching m = RHRP.run(new Matching(withCouple), ResidentQueue.allOf(withCouple));
+
+        Rematcher.withRHRP(m, ChangeSet.builder().editPreferences("c2", ImmutableList.of("h3")).build());
+
+        // c1 gets h1 back next to c2 at h3, and r2 moves up to the seat c2 left at h2
+        assertThat(m.getAssignedHospital(0)).isEqualTo(0);
+        assertThat(m.getAssignedHospital(1)).isEqualTo(1);
+        assertThat(m.getAssignedHospital(2)).isEqualTo(0);
+        assertThat(m.getAssignedHospital(3)).isEqualTo(2);
+        assertThat(StabilityValidator.validate(m).isStable()).isTrue();
+    }
+}
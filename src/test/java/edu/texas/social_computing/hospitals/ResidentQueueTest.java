@@ -0,0 +1,49 @@
+package edu.texas.social_computing.hospitals;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import static com.google.common.truth.Truth.assertThat;
+
+@RunWith(JUnit4.class)
+public class ResidentQueueTest {
+
+    @Test
+    public void fifo_shouldDeduplicateAndKeepOrder() {
+        ResidentQueue queue = ResidentQueue.fifo(4);
+
+        assertThat(queue.add(2)).isTrue();
+        assertThat(queue.add(0)).isTrue();
+        assertThat(queue.add(2)).isFalse();
+        assertThat(queue.size()).isEqualTo(2);
+
+        assertThat(queue.poll()).isEqualTo(2);
+        assertThat(queue.contains(2)).isFalse();
+        queue.add(3);
+        queue.add(2);
+        queue.add(1);
+
+        assertThat(queue.poll()).isEqualTo(0);
+        assertThat(queue.poll()).isEqualTo(3);
+        assertThat(queue.poll()).isEqualTo(2);
+        assertThat(queue.poll()).isEqualTo(1);
+        assertThat(queue.poll()).isEqualTo(Instance.NONE);
+    }
+
+    @Test
+    public void prioritized_shouldPollLowestPriorityFirst() {
+        int[] priorities = {5, 1, 5, 0};
+        ResidentQueue queue = ResidentQueue.prioritized(4, r -> priorities[r]);
+        for (int r = 0; r < 4; r++) {
+            queue.add(r);
+        }
+        queue.add(1);
+
+        assertThat(queue.poll()).isEqualTo(3);
+        assertThat(queue.poll()).isEqualTo(1);
+        assertThat(queue.poll()).isEqualTo(0);
+        assertThat(queue.poll()).isEqualTo(2);
+        assertThat(queue.isEmpty()).isTrue();
+    }
+}
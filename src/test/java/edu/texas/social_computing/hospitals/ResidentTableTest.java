@@ -0,0 +1,46 @@
+package edu.texas.social_computing.hospitals;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import static com.google.common.truth.Truth.assertThat;
+
+@RunWith(JUnit4.class)
+public class ResidentTableTest {
+
+    private final ImmutableList<Resident> residents = ImmutableList.of(
+            Resident.create("r3", ImmutableList.of("h1")),
+            Resident.create("r1", "r2", ImmutableList.of("h2", "h1")),
+            Resident.create("r2", "r1", ImmutableList.of("h1")));
+
+    @Test
+    public void indexOf_shouldRoundTripThroughGetResident() {
+        ResidentTable table = ResidentTable.create(residents);
+
+        assertThat(table.size()).isEqualTo(3);
+        for (int r = 0; r < residents.size(); r++) {
+            Resident resident = residents.get(r);
+            assertThat(table.indexOf(resident.getId())).isEqualTo(r);
+            assertThat(table.getResident(r)).isEqualTo(resident);
+            assertThat(table.getResidentById(resident.getId())).isEqualTo(resident);
+        }
+        assertThat(table.getAll()).containsExactlyElementsIn(residents).inOrder();
+    }
+
+    @Test
+    public void indexOf_shouldReturnNoneForUnknownId() {
+        ResidentTable table = ResidentTable.create(residents);
+
+        assertThat(table.indexOf("r4")).isEqualTo(Instance.NONE);
+        assertThat(table.getResidentById("r4")).isNull();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void create_shouldRejectDuplicateIds() {
+        ResidentTable.create(ImmutableList.of(
+                Resident.create("r1", ImmutableList.of("h1")),
+                Resident.create("r1", ImmutableList.of())));
+    }
+}
@@ -0,0 +1,83 @@
+package edu.texas.social_computing.hospitals;
+
+import com.google.common.primitives.Ints;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.Truth.assertWithMessage;
+
+@RunWith(JUnit4.class)
+public class SinglesToRecheckTest {
+
+    private static final int SEEDS = 5;
+
+    @Test
+    public void hrpp_shouldTrackEverySingleThatCanDoBetter() {
+        for (long seed = 1; seed <= SEEDS; seed++) {
+            Instance instance = generate(seed);
+            FullScan scan = new FullScan();
+
+            HRPP.run(instance, scan);
+
+            assertThat(scan.steps).isGreaterThan(0);
+        }
+    }
+
+    @Test
+    public void rhrp_shouldTrackEverySingleThatCanDoBetter() {
+        for (long seed = 1; seed <= SEEDS; seed++) {
+            Instance instance = generate(seed);
+            FullScan scan = new FullScan();
+            Matching matching = new Matching(instance);
+            matching.setListener(scan);
+
+            RHRP.run(matching, ResidentQueue.allOf(instance));
+
+            assertThat(scan.steps).isGreaterThan(0);
+        }
+    }
+
+    private static Instance generate(long seed) {
+        return new InstanceGenerator(GeneratorConfig.builder()
+                .setSeed(seed)
+                .setNumHospitals(30)
+                .setNumLocations(5)
+                .setNumResidents(300)
+                .setNumCouples(40)
+                .setMaxCapacity(8)
+                .build()).generate();
+    }
+
+    // after every step of a solve, compares the tracked singles with a scan of every assigned single
+    private static final class FullScan implements SolverListener {
+        private Matching matching;
+        int steps;
+
+        @Override
+        public void phaseFinished(Phase phase, long nanos) {
+            if (matching != null && phase != Phase.SOLVE) {
+                check();
+            }
+        }
+
+        @Override
+        public boolean shouldStop(Matching current) {
+            matching = current;
+            check();
+            return false;
+        }
+
+        private void check() {
+            steps++;
+            Instance instance = matching.getInstance();
+            int[] tracked = matching.peekSinglesToRecheck();
+            for (int r = 0; r < instance.numResidents(); r++) {
+                if (!instance.hasPartner(r) && matching.hasAssignment(r) && HRPP.canDoBetter(matching, r)) {
+                    assertWithMessage("single %s in step %s", r, steps).that(Ints.contains(tracked, r)).isTrue();
+                }
+            }
+        }
+    }
+}
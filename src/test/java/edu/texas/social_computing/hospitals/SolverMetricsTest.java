@@ -0,0 +1,81 @@
+package edu.texas.social_computing.hospitals;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.FileNotFoundException;
+
+import static com.google.common.truth.Truth.assertThat;
+
+@RunWith(JUnit4.class)
+public class SolverMetricsTest {
+
+    @Test
+    public void hrp_shouldCountProposalsEvictionsAndDeletions() {
+        Instance instance = Instance.create(
+                HospitalTable.create(ImmutableList.of(
+                        Hospital.create("h1", 1, 1, ImmutableList.of("r1", "r2", "r3")))),
+                ResidentTable.create(ImmutableList.of(
+                        Resident.create("r1", ImmutableList.of("h1")),
+                        Resident.create("r2", ImmutableList.of("h1")),
+                        Resident.create("r3", ImmutableList.of("h1")))));
+        Matching m = new Matching(instance);
+        SolverMetrics metrics = new SolverMetrics();
+        m.setListener(metrics);
+        ResidentQueue queue = ResidentQueue.fifo(3);
+        queue.add(1);
+        queue.add(0);
+        queue.add(2);
+
+        HRP.run(m, queue);
+
+        assertThat(metrics.getProposals()).isEqualTo(2);
+        assertThat(metrics.getEvictions()).isEqualTo(1);
+        assertThat(metrics.getRejections()).isEqualTo(0);
+        // r3 when r2 fills h1, then r2 when r1 takes its place
+        assertThat(metrics.getPairDeletions()).isEqualTo(2);
+    }
+
+    @Test
+    public void hrp_shouldNotDeletePairsOfHospitalWithoutSeats() {
+        Instance instance = Instance.create(
+                HospitalTable.create(ImmutableList.of(
+                        Hospital.create("h1", 1, 0, ImmutableList.of("r1", "r2")),
+                        Hospital.create("h2", 1, 1, ImmutableList.of("r1", "r2")))),
+                ResidentTable.create(ImmutableList.of(
+                        Resident.create("r1", ImmutableList.of("h1", "h2")),
+                        Resident.create("r2", ImmutableList.of("h1", "h2")))));
+        Matching m = new Matching(instance);
+        SolverMetrics metrics = new SolverMetrics();
+        m.setListener(metrics);
+
+        HRP.run(m, ResidentQueue.allOf(instance));
+
+        assertThat(m.getAssignedHospital(0)).isEqualTo(1);
+        assertThat(m.getAssignedHospital(1)).isEqualTo(Matching.UNASSIGNED);
+        assertThat(metrics.getRejections()).isEqualTo(2);
+        // r2 when r1 fills h2
+        assertThat(metrics.getPairDeletions()).isEqualTo(1);
+    }
+
+    @Test
+    public void hrpp_shouldReportRunsAndPhases() throws FileNotFoundException {
+        Instance instance = FileImporter.importInstance(
+                "resources/test_hos50_loc50_res100_coup50_hospitals.csv",
+                "resources/test_hos50_loc50_res100_coup50_residents.csv");
+        SolverMetrics metrics = new SolverMetrics();
+
+        HRPP.run(instance, metrics);
+
+        assertThat(metrics.getPhaseCount(SolverListener.Phase.SOLVE)).isEqualTo(1);
+        assertThat(metrics.getPhaseCount(SolverListener.Phase.INITIAL_HRP)).isEqualTo(1);
+        assertThat(metrics.getHrpRuns()).isEqualTo(1
+                + metrics.getPhaseCount(SolverListener.Phase.RESTRICTED_HRP)
+                + metrics.getPhaseCount(SolverListener.Phase.COUPLE_HRP));
+        assertThat(metrics.getProposals()).isAtLeast((long) instance.numResidents() - 2);
+        assertThat(metrics.toJson()).startsWith("{\"proposals\": " + metrics.getProposals() + ", ");
+        assertThat(metrics.toJson()).contains("\"phases\": {\"solve\": {\"count\": 1, ");
+    }
+}
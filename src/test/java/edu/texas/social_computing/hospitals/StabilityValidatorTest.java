@@ -0,0 +1,62 @@
+package edu.texas.social_computing.hospitals;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import static com.google.common.truth.Truth.assertThat;
+
+@RunWith(JUnit4.class)
+public class StabilityValidatorTest {
+
+    @Test
+    public void validate_shouldFindSingleBlockingPair() {
+        Instance instance = Instance.create(
+                HospitalTable.create(ImmutableList.of(
+                        Hospital.create("h1", 1, 1, ImmutableList.of("r1", "r2")),
+                        Hospital.create("h2", 1, 1, ImmutableList.of("r1", "r2")))),
+                ResidentTable.create(ImmutableList.of(
+                        Resident.create("r1", ImmutableList.of("h1", "h2")),
+                        Resident.create("r2", ImmutableList.of("h1")))));
+        Matching m = new Matching(instance);
+        m.assign(1, 0);
+        m.assign(0, 1);
+
+        StabilityReport report = StabilityValidator.validate(m);
+
+        assertThat(report.isStable()).isFalse();
+        assertThat(report.getSingleBlockingPairCount()).isEqualTo(1);
+        assertThat(report.getUnstableSingleCount()).isEqualTo(1);
+        assertThat(report.getCoupleBlockingPairCount()).isEqualTo(0);
+        assertThat(report.getSamples()).containsExactly(StabilityReport.BlockingPair.single(0, 0));
+    }
+
+    @Test
+    public void validate_shouldJoinPartnersOnLocation() {
+        Instance instance = Instance.create(
+                HospitalTable.create(ImmutableList.of(
+                        Hospital.create("h1", 1, 2, ImmutableList.of("r1", "r2", "r3", "r4")),
+                        Hospital.create("h2", 2, 2, ImmutableList.of("r1", "r2", "r3", "r4")))),
+                ResidentTable.create(ImmutableList.of(
+                        Resident.create("r1", "r2", ImmutableList.of("h1", "h2")),
+                        Resident.create("r2", "r1", ImmutableList.of("h1", "h2")),
+                        Resident.create("r3", ImmutableList.of("h1")),
+                        Resident.create("r4", ImmutableList.of("h1")))));
+        Matching m = new Matching(instance);
+        m.assign(2, 0);
+        m.assign(3, 0);
+        m.assign(0, 1);
+        m.assign(1, 1);
+
+        StabilityReport report = StabilityValidator.validate(m);
+        StabilityReport unsampled = StabilityValidator.validate(m, 0);
+
+        assertThat(report.getSingleBlockingPairCount()).isEqualTo(0);
+        assertThat(report.getCoupleBlockingPairCount()).isEqualTo(1);
+        assertThat(report.getUnstableCoupleCount()).isEqualTo(1);
+        assertThat(report.getSamples()).containsExactly(StabilityReport.BlockingPair.couple(0, 0, 1, 0));
+        assertThat(unsampled.getCoupleBlockingPairCount()).isEqualTo(1);
+        assertThat(unsampled.getSamples()).isEmpty();
+    }
+}